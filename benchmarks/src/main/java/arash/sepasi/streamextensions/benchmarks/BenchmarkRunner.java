@@ -0,0 +1,20 @@
+package arash.sepasi.streamextensions.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks with the {@link GCProfiler} enabled, so that the allocation rate per operation is reported.<br/>
+ * Accepts the usual JMH command line options, e.g. {@code java -jar target/benchmarks.jar StreamMapperBenchmark -p parallel=true}.
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build()
+        ).run();
+    }
+}
@@ -0,0 +1,52 @@
+package arash.sepasi.streamextensions.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Shared setup for the benchmarks: a deterministic pattern of failing inputs and the slf4j-simple logging configuration.
+ */
+final class Failures {
+    static final int PATTERN_SIZE = 1 << 12;
+    static final int PATTERN_MASK = PATTERN_SIZE - 1;
+
+    private Failures() {
+    }
+
+    /**
+     * @return a pattern in which a {@code failureRate} fraction of the entries are {@code true}, spread evenly at random.
+     */
+    static boolean[] pattern(double failureRate) {
+        final boolean[] pattern = new boolean[PATTERN_SIZE];
+        final Random random = new Random(42);
+        final int failures = (int) Math.round(failureRate * PATTERN_SIZE);
+        for(int set = 0; set < failures; ) {
+            final int index = random.nextInt(PATTERN_SIZE);
+            if(!pattern[index]) {
+                pattern[index] = true;
+                set++;
+            }
+        }
+        return pattern;
+    }
+
+    /**
+     * Configures slf4j-simple; must be called before the library's logger is created, i.e. in a trial-level setup of a forked run.<br/>
+     * With logging on, WARN lines are written to a temporary file so the console is not flooded.
+     */
+    static void configureLogging(boolean logging) throws IOException {
+        if(logging) {
+            final File logFile = File.createTempFile("stream-extensions-benchmark", ".log");
+            logFile.deleteOnExit();
+            System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "warn");
+            System.setProperty("org.slf4j.simpleLogger.logFile", logFile.getAbsolutePath());
+        } else {
+            System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "error");
+        }
+    }
+
+    static Exception failure(int i) {
+        return new Exception("Benchmark failure for " + i);
+    }
+}
@@ -0,0 +1,94 @@
+package arash.sepasi.streamextensions.benchmarks;
+
+import arash.sepasi.streamextensions.FunctionExtensions.ExceptionThrowingTriConsumer;
+import arash.sepasi.streamextensions.FunctionExtensions.ExceptionThrowingTriFunction;
+import arash.sepasi.streamextensions.FunctionExtensions.PolyConsumer;
+import arash.sepasi.streamextensions.FunctionExtensions.PolyFunction;
+import arash.sepasi.streamextensions.StreamExtensions;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the three-input {@code handleException(...)} overloads taking a varargs {@link PolyFunction}/{@link PolyConsumer}
+ * handler with those taking a typed {@code QuadFunction}/{@code QuadConsumer} handler.<br/>
+ * The GC profiler shows the array allocated per failure by the varargs path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HandlerArityBenchmark {
+
+    @Param({"0.0", "0.01", "0.5"})
+    public double failureRate;
+
+    @Param({"false", "true"})
+    public boolean logging;
+
+    private boolean[] failures;
+    private int index;
+
+    private ExceptionThrowingTriConsumer<Integer, String, Long> consumer;
+    private ExceptionThrowingTriFunction<Integer, String, Long, Integer> function;
+    private Exception failure;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Failures.configureLogging(logging);
+        failures = Failures.pattern(failureRate);
+        // A preallocated failure, so the cost of filling in stack traces does not hide the cost of the handler call
+        failure = new Exception("Benchmark failure");
+        consumer = (i, s, l) -> {
+            if(failures[i])
+                throw failure;
+        };
+        function = (i, s, l) -> {
+            if(failures[i])
+                throw failure;
+            return i;
+        };
+    }
+
+    private Integer next() {
+        index = (index + 1) & Failures.PATTERN_MASK;
+        return index;
+    }
+
+    @Benchmark
+    public void triConsumer_polyHandler(Blackhole bh) {
+        StreamExtensions.ConsumerExtensions.handleException(consumer, next(), "input", 42L, (PolyConsumer<Object>) inputs -> {
+            bh.consume((Exception) inputs[0]);
+            bh.consume((Integer) inputs[1]);
+        });
+    }
+
+    @Benchmark
+    public void triConsumer_quadHandler(Blackhole bh) {
+        StreamExtensions.ConsumerExtensions.handleException(consumer, next(), "input", 42L, (e, i, s, l) -> {
+            bh.consume(e);
+            bh.consume(i);
+        });
+    }
+
+    @Benchmark
+    public Integer triFunction_polyHandler() {
+        return StreamExtensions.FunctionExtensions.handleException(function, next(), "input", 42L,
+                (PolyFunction<Object, Integer>) inputs -> -(Integer) inputs[1]);
+    }
+
+    @Benchmark
+    public Integer triFunction_quadHandler() {
+        return StreamExtensions.FunctionExtensions.handleException(function, next(), "input", 42L, (e, i, s, l) -> -i);
+    }
+
+    @Benchmark
+    public Optional<Integer> triFunction_returnOptional() {
+        return StreamExtensions.FunctionExtensions.returnOptional(function, next(), "input", 42L);
+    }
+}
@@ -0,0 +1,90 @@
+package arash.sepasi.streamextensions.benchmarks;
+
+import arash.sepasi.streamextensions.FunctionExtensions.ExceptionThrowingFunction;
+import arash.sepasi.streamextensions.Ordering;
+import arash.sepasi.streamextensions.StreamExtensions;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Measures how {@link StreamExtensions#removeExceptionsFromStream} scales with the number of cores, running parallel Streams in a
+ * {@link ForkJoinPool} of 1 to 32 threads, with each {@link Ordering}.<br/>
+ * The mapper burns a fixed amount of CPU per element, so the scaling is not bounded by memory bandwidth; {@code limit} and
+ * {@code toList} are the terminal operations which pay for keeping the encounter order.<br/>
+ * Pool sizes above the number of available processors only measure oversubscription, so the results are meaningful on a
+ * machine with at least 32 cores; no such run has been recorded yet.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelScalingBenchmark {
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    public int threads;
+
+    @Param({"ORDERED", "UNORDERED", "BEST_EFFORT"})
+    public Ordering ordering;
+
+    @Param({"0.01"})
+    public double failureRate;
+
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"64"})
+    public long cpuTokensPerElement;
+
+    private Integer[] inputs;
+    private ExceptionThrowingFunction<Integer, Integer> mapper;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Failures.configureLogging(false);
+        final boolean[] failures = Failures.pattern(failureRate);
+        inputs = new Integer[size];
+        Arrays.setAll(inputs, i -> i);
+        final long tokens = cpuTokensPerElement;
+        mapper = i -> {
+            Blackhole.consumeCPU(tokens);
+            if(failures[i & Failures.PATTERN_MASK])
+                throw Failures.failure(i);
+            return i;
+        };
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public long count() throws ExecutionException, InterruptedException {
+        return pool.submit(() -> StreamExtensions.removeExceptionsFromStream(Arrays.stream(inputs).parallel(), mapper, ordering).count()).get();
+    }
+
+    @Benchmark
+    public long limit() throws ExecutionException, InterruptedException {
+        return pool.submit(() -> StreamExtensions.removeExceptionsFromStream(Arrays.stream(inputs).parallel(), mapper, ordering)
+                .limit(size / 2)
+                .count()).get();
+    }
+
+    @Benchmark
+    public List<Integer> toList() throws ExecutionException, InterruptedException {
+        return pool.submit(() -> StreamExtensions.removeExceptionsFromStream(Arrays.stream(inputs).parallel(), mapper, ordering)
+                .collect(Collectors.toList())).get();
+    }
+}
@@ -0,0 +1,103 @@
+package arash.sepasi.streamextensions.benchmarks;
+
+import arash.sepasi.streamextensions.FunctionExtensions.ExceptionThrowingFunction;
+import arash.sepasi.streamextensions.SplitResult;
+import arash.sepasi.streamextensions.StreamExtensions;
+import arash.sepasi.streamextensions.TryStream;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures {@link StreamExtensions#removeExceptionsFromStream}, {@link StreamExtensions#splitExceptionsFromStream} and
+ * {@link StreamExtensions#splitExceptions} against a hand-written try/catch mapper, per whole stream.<br/>
+ * The {@code chained*} benchmarks compare two nested {@link StreamExtensions#removeExceptionsFromStream} calls with the same two
+ * stages fused by a {@link TryStream}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StreamMapperBenchmark {
+
+    @Param({"0.0", "0.01", "0.5"})
+    public double failureRate;
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    @Param({"false", "true"})
+    public boolean logging;
+
+    private Integer[] inputs;
+    private ExceptionThrowingFunction<Integer, Integer> mapper;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Failures.configureLogging(logging);
+        final boolean[] failures = Failures.pattern(failureRate);
+        inputs = new Integer[size];
+        Arrays.setAll(inputs, i -> i);
+        mapper = i -> {
+            if(failures[i & Failures.PATTERN_MASK])
+                throw Failures.failure(i);
+            return i;
+        };
+    }
+
+    private Stream<Integer> source() {
+        final Stream<Integer> stream = Arrays.stream(inputs);
+        return parallel ? stream.parallel() : stream;
+    }
+
+    @Benchmark
+    public long baseline_tryCatch() {
+        return source()
+                .map(i -> {
+                    try {
+                        return mapper.apply(i);
+                    } catch(Exception e) {
+                        return null;
+                    }
+                })
+                .filter(Objects::nonNull)
+                .count();
+    }
+
+    @Benchmark
+    public long removeExceptionsFromStream() {
+        return StreamExtensions.removeExceptionsFromStream(source(), mapper).count();
+    }
+
+    @Benchmark
+    public void splitExceptionsFromStream(Blackhole bh) {
+        final StreamExtensions.Tuple<Stream<Integer>, Stream<Integer>> split = StreamExtensions.splitExceptionsFromStream(source(), mapper);
+        bh.consume(split.getFirst().count());
+        bh.consume(split.getSecond().count());
+    }
+
+    @Benchmark
+    public SplitResult<Integer, Integer> splitExceptions() {
+        return source().collect(StreamExtensions.splitExceptions(mapper));
+    }
+
+    @Benchmark
+    public long chained_removeExceptionsFromStream() {
+        return StreamExtensions.removeExceptionsFromStream(StreamExtensions.removeExceptionsFromStream(source(), mapper), i -> i + 1).count();
+    }
+
+    @Benchmark
+    public long chained_tryStream() {
+        return TryStream.of(source()).map(mapper).map(i -> i + 1).stream().count();
+    }
+}
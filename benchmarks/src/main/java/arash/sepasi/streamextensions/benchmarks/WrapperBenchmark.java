@@ -0,0 +1,149 @@
+package arash.sepasi.streamextensions.benchmarks;
+
+import arash.sepasi.streamextensions.FunctionExtensions.ExceptionThrowingConsumer;
+import arash.sepasi.streamextensions.FunctionExtensions.ExceptionThrowingFunction;
+import arash.sepasi.streamextensions.FunctionExtensions.ExceptionThrowingRunnable;
+import arash.sepasi.streamextensions.FunctionExtensions.ExceptionThrowingSupplier;
+import arash.sepasi.streamextensions.StreamExtensions;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of the single call wrappers in {@link StreamExtensions} against a hand-written try/catch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WrapperBenchmark {
+
+    @Param({"0.0", "0.01", "0.5"})
+    public double failureRate;
+
+    @Param({"false", "true"})
+    public boolean logging;
+
+    private boolean[] failures;
+    private int index;
+
+    private ExceptionThrowingRunnable runnable;
+    private ExceptionThrowingConsumer<Integer> consumer;
+    private ExceptionThrowingSupplier<Integer> supplier;
+    private ExceptionThrowingFunction<Integer, Integer> function;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Failures.configureLogging(logging);
+        failures = Failures.pattern(failureRate);
+        runnable = () -> {
+            if(failures[index])
+                throw Failures.failure(index);
+        };
+        consumer = i -> {
+            if(failures[i])
+                throw Failures.failure(i);
+        };
+        supplier = () -> {
+            if(failures[index])
+                throw Failures.failure(index);
+            return index;
+        };
+        function = i -> {
+            if(failures[i])
+                throw Failures.failure(i);
+            return i;
+        };
+    }
+
+    private Integer next() {
+        index = (index + 1) & Failures.PATTERN_MASK;
+        return index;
+    }
+
+    @Benchmark
+    public Integer baseline_tryCatch() {
+        final Integer i = next();
+        try {
+            return function.apply(i);
+        } catch(Exception e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public void runnable_handleException(Blackhole bh) {
+        next();
+        StreamExtensions.RunnableExtensions.handleException(runnable, bh::consume);
+    }
+
+    @Benchmark
+    public void runnable_throwRuntimeException(Blackhole bh) {
+        next();
+        try {
+            StreamExtensions.RunnableExtensions.throwRuntimeException(runnable);
+        } catch(RuntimeException e) {
+            bh.consume(e);
+        }
+    }
+
+    @Benchmark
+    public void consumer_handleException(Blackhole bh) {
+        StreamExtensions.ConsumerExtensions.handleException(consumer, next(), (e, i) -> bh.consume(e));
+    }
+
+    @Benchmark
+    public void consumer_throwRuntimeException(Blackhole bh) {
+        try {
+            StreamExtensions.ConsumerExtensions.throwRuntimeException(consumer, next());
+        } catch(RuntimeException e) {
+            bh.consume(e);
+        }
+    }
+
+    @Benchmark
+    public Integer supplier_handleException() {
+        next();
+        return StreamExtensions.SupplierExtensions.handleException(supplier, e -> null);
+    }
+
+    @Benchmark
+    public Integer supplier_throwRuntimeException() {
+        next();
+        try {
+            return StreamExtensions.SupplierExtensions.throwRuntimeException(supplier);
+        } catch(RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public Optional<Integer> supplier_returnOptional() {
+        next();
+        return StreamExtensions.SupplierExtensions.returnOptional(supplier);
+    }
+
+    @Benchmark
+    public Integer function_handleException() {
+        return StreamExtensions.FunctionExtensions.handleException(function, next(), (e, i) -> null);
+    }
+
+    @Benchmark
+    public Integer function_throwRuntimeException() {
+        try {
+            return StreamExtensions.FunctionExtensions.throwRuntimeException(function, next());
+        } catch(RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public Optional<Integer> function_returnOptional() {
+        return StreamExtensions.FunctionExtensions.returnOptional(function, next());
+    }
+}
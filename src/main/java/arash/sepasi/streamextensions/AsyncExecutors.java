@@ -0,0 +1,45 @@
+package arash.sepasi.streamextensions;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The shared Executors used by the asynchronous stages when the caller does not supply one.
+ */
+final class AsyncExecutors {
+
+    private AsyncExecutors() {
+    }
+
+    private static class DefaultExecutorHolder {
+        static final ExecutorService EXECUTOR = createDefaultExecutor();
+    }
+
+    /**
+     * @return a virtual-thread-per-task Executor when the runtime supports it, otherwise a cached pool of daemon threads.
+     */
+    static Executor defaultExecutor() {
+        return DefaultExecutorHolder.EXECUTOR;
+    }
+
+    private static ExecutorService createDefaultExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch(ReflectiveOperationException | RuntimeException e) {
+            // Virtual threads are missing, or a preview feature which is not enabled
+            return Executors.newCachedThreadPool(daemonThreadFactory("stream-extensions-async"));
+        }
+    }
+
+    static ThreadFactory daemonThreadFactory(String prefix) {
+        final AtomicInteger count = new AtomicInteger();
+        return r -> {
+            final Thread t = new Thread(r, prefix + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
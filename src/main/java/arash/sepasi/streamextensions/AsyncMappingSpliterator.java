@@ -0,0 +1,146 @@
+package arash.sepasi.streamextensions;
+
+import java.util.ArrayDeque;
+import java.util.Spliterator;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+import static arash.sepasi.streamextensions.FunctionExtensions.*;
+
+/**
+ * A sequential {@link Spliterator} which maps the elements of a source Spliterator on an {@link Executor}, with at most
+ * {@code maxConcurrency} mappings outstanding at a time.<br/>
+ * In ordered mode the outputs are emitted in encounter order, and completed mappings wait behind slower earlier ones;
+ * the outstanding mappings include those waiting, which bounds the reorder buffer. In unordered mode the outputs are
+ * emitted as they complete.<br/>
+ * Elements which caused an Exception or were mapped to {@code null} are skipped, and passed to the failure handler on the consuming thread.
+ */
+class AsyncMappingSpliterator<I, O> implements Spliterator<O>, Consumer<I> {
+
+    private final Spliterator<I> source;
+    private final ExceptionThrowingFunction<I, O> mapper;
+    private final int maxConcurrency;
+    private final Executor executor;
+    private final boolean ordered;
+    private final DiConsumer<Exception, I> failureHandler;
+
+    private final ArrayDeque<Task> outstanding = new ArrayDeque<>();
+    private final LinkedBlockingQueue<Task> completed = new LinkedBlockingQueue<>();
+    private boolean sourceDone;
+
+    private class Task extends FutureTask<O> {
+        private final I input;
+
+        Task(I input) {
+            super(() -> mapper.apply(input));
+            this.input = input;
+        }
+
+        @Override
+        protected void done() {
+            if(!ordered)
+                completed.add(this);
+        }
+    }
+
+    AsyncMappingSpliterator(Spliterator<I> source, ExceptionThrowingFunction<I, O> mapper, int maxConcurrency, Executor executor,
+                            boolean ordered, DiConsumer<Exception, I> failureHandler) {
+        if(maxConcurrency < 1)
+            throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency);
+        this.source = source;
+        this.mapper = mapper;
+        this.maxConcurrency = maxConcurrency;
+        this.executor = executor;
+        this.ordered = ordered;
+        this.failureHandler = failureHandler;
+    }
+
+    @Override
+    public void accept(I i) {
+        final Task task = new Task(i);
+        outstanding.add(task);
+        executor.execute(task);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super O> action) {
+        while(true) {
+            while(!sourceDone && outstanding.size() < maxConcurrency)
+                sourceDone = !source.tryAdvance(this);
+            if(outstanding.isEmpty())
+                return false;
+            final Task task = nextCompleted();
+            final O o = result(task);
+            if(o != null) {
+                action.accept(o);
+                return true;
+            }
+        }
+    }
+
+    private Task nextCompleted() {
+        if(ordered)
+            return outstanding.poll();
+        try {
+            final Task task = completed.take();
+            outstanding.remove(task);
+            return task;
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+            throw new CancellationException("Interrupted while waiting for an asynchronous mapping");
+        }
+    }
+
+    private O result(Task task) {
+        try {
+            final O o = task.get();
+            if(o == null)
+                failureHandler.accept(null, task.input);
+            return o;
+        } catch(ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if(cause instanceof Exception)
+                failureHandler.accept((Exception) cause, task.input);
+            else if(cause instanceof Error)
+                throw (Error) cause;
+            else
+                throw new IllegalStateException(cause);
+            return null;
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+            throw new CancellationException("Interrupted while waiting for an asynchronous mapping");
+        }
+    }
+
+    /**
+     * Cancels the outstanding mappings, interrupting those which are running.
+     */
+    void cancel() {
+        Task task;
+        while((task = outstanding.poll()) != null)
+            task.cancel(true);
+        sourceDone = true;
+    }
+
+    @Override
+    public Spliterator<O> trySplit() {
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        final long size = source.estimateSize();
+        return size == Long.MAX_VALUE ? size : size + outstanding.size();
+    }
+
+    @Override
+    public int characteristics() {
+        return (ordered ? source.characteristics() & ORDERED : 0) | NONNULL;
+    }
+}
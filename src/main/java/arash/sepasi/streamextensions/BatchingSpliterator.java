@@ -0,0 +1,122 @@
+package arash.sepasi.streamextensions;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import static arash.sepasi.streamextensions.FunctionExtensions.*;
+
+/**
+ * A {@link Spliterator} which maps the elements of a source Spliterator in batches, using an {@link ExceptionThrowingFunction}
+ * from a List of inputs to the List of their outputs, in the same order.<br/>
+ * A batch is closed when it holds {@code batchSize} elements, or when {@code maxLingerNanos} elapsed since its first element was
+ * taken from the source. The deadline is checked before taking each further element; a source blocking in {@code tryAdvance}
+ * cannot be interrupted, so a batch waiting on it is closed only once the element arrives, and includes it. When the mapping of
+ * a batch throws an Exception, or returns a List of the wrong size, the batch is bisected and both halves are mapped again,
+ * until the elements which fail on their own are isolated and passed to the failure handler, like the elements mapped to
+ * {@code null}. Every split maps its own batches.
+ */
+class BatchingSpliterator<I, O> implements Spliterator<O>, Consumer<I> {
+
+    private final Spliterator<I> source;
+    private final int batchSize;
+    private final long maxLingerNanos;
+    private final ExceptionThrowingFunction<List<I>, List<O>> mapper;
+    private final DiConsumer<Exception, I> failureHandler;
+
+    private final ArrayDeque<O> outputs = new ArrayDeque<>();
+    private List<I> batch;
+    private boolean sourceDone;
+
+    BatchingSpliterator(Spliterator<I> source, int batchSize, long maxLingerNanos, ExceptionThrowingFunction<List<I>, List<O>> mapper,
+                        DiConsumer<Exception, I> failureHandler) {
+        if(batchSize < 1)
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        this.source = source;
+        this.batchSize = batchSize;
+        this.maxLingerNanos = maxLingerNanos;
+        this.mapper = mapper;
+        this.failureHandler = failureHandler;
+    }
+
+    @Override
+    public void accept(I i) {
+        batch.add(i);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super O> action) {
+        while(outputs.isEmpty()) {
+            if(sourceDone)
+                return false;
+            nextBatch();
+        }
+        action.accept(outputs.poll());
+        return true;
+    }
+
+    private void nextBatch() {
+        batch = new ArrayList<>(Math.min(batchSize, 1024));
+        final boolean lingers = maxLingerNanos != Long.MAX_VALUE;
+        long opened = 0;
+        while(batch.size() < batchSize) {
+            if(lingers && !batch.isEmpty() && System.nanoTime() - opened >= maxLingerNanos)
+                break;
+            if(!source.tryAdvance(this)) {
+                sourceDone = true;
+                break;
+            }
+            if(lingers && batch.size() == 1)
+                opened = System.nanoTime();
+        }
+        if(!batch.isEmpty())
+            map(batch);
+        batch = null;
+    }
+
+    private void map(List<I> inputs) {
+        final List<O> mapped;
+        try {
+            mapped = mapper.apply(inputs);
+            if(mapped == null || mapped.size() != inputs.size())
+                throw new IllegalStateException("Mapping " + inputs.size() + " inputs returned " + (mapped == null ? null : mapped.size()) + " outputs");
+        } catch(Exception e) {
+            if(inputs.size() == 1) {
+                failureHandler.accept(e, inputs.get(0));
+            } else {
+                final int half = inputs.size() / 2;
+                map(inputs.subList(0, half));
+                map(inputs.subList(half, inputs.size()));
+            }
+            return;
+        }
+        for(int n = 0; n < mapped.size(); n++) {
+            final O o = mapped.get(n);
+            if(o != null)
+                outputs.add(o);
+            else
+                failureHandler.accept(null, inputs.get(n));
+        }
+    }
+
+    @Override
+    public Spliterator<O> trySplit() {
+        if(!outputs.isEmpty())
+            return null;
+        final Spliterator<I> split = source.trySplit();
+        return split == null ? null : new BatchingSpliterator<>(split, batchSize, maxLingerNanos, mapper, failureHandler);
+    }
+
+    @Override
+    public long estimateSize() {
+        final long size = source.estimateSize();
+        return size == Long.MAX_VALUE ? size : size + outputs.size();
+    }
+
+    @Override
+    public int characteristics() {
+        return (source.characteristics() & (ORDERED | IMMUTABLE | CONCURRENT)) | NONNULL;
+    }
+}
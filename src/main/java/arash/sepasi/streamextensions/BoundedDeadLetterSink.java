@@ -0,0 +1,392 @@
+package arash.sepasi.streamextensions;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A {@link DeadLetterSink} keeping the dead letters in a bounded in-memory ring, with a configurable behaviour once it is full:
+ * <ul>
+ * <li>{@link OverflowPolicy#DROP} drops the new dead letter, and counts it.</li>
+ * <li>{@link OverflowPolicy#BLOCK} blocks the failing thread until a consumer makes room with {@link #poll()} or {@link #drainTo(Consumer)}.</li>
+ * <li>{@link OverflowPolicy#SPILL} moves the whole ring to an append-only spill file, written through a {@link FileChannel}
+ * in buffered batches.</li>
+ * </ul>
+ * {@link #replay()} returns the spilled dead letters followed by those still in memory, in the order they were accepted, and
+ * {@link #read(Path, DeadLetterSink.Codec)} reads a spill file back later, e.g. after a restart.<br/>
+ * A spill file holds one record per dead letter: its length, then the length and bytes of the encoded input, of the Exception class
+ * name and of the Exception message, a length of -1 standing for {@code null}. A record cut short by a crash ends the file when it is
+ * read, and is truncated when the sink appends to the file again.<br/>
+ * The dead letters of a spill are all encoded before any is written; if the codec fails, they are put back in memory, those which
+ * no longer fit being dropped, and its Exception is thrown to the failing thread.
+ */
+public class BoundedDeadLetterSink<I> implements DeadLetterSink<I>, Closeable {
+
+    public enum OverflowPolicy { DROP, BLOCK, SPILL }
+
+    private static final int SPILL_BUFFER_SIZE = 64 * 1024;
+    private static final int MIN_RECORD_LENGTH = 12;
+
+    private final ArrayBlockingQueue<DeadLetter<I>> ring;
+    private final OverflowPolicy overflowPolicy;
+    private final Path spillFile;
+    private final Codec<I> codec;
+    private final LongAdder dropped = new LongAdder();
+
+    private final Object spillLock = new Object();
+    private FileChannel spillChannel;
+    private ByteBuffer spillBuffer;
+    private long spilled;
+
+    /**
+     * Creates a sink which drops or blocks once it holds {@code capacity} dead letters.
+     */
+    public BoundedDeadLetterSink(int capacity, OverflowPolicy overflowPolicy) {
+        this(capacity, overflowPolicy, null, null);
+        if(overflowPolicy == OverflowPolicy.SPILL)
+            throw new IllegalArgumentException("Spilling needs a spill file and a codec");
+    }
+
+    /**
+     * Creates a sink which spills to {@code spillFile} once it holds {@code capacity} dead letters, appending to the file if it exists.
+     */
+    public BoundedDeadLetterSink(int capacity, Path spillFile, Codec<I> codec) {
+        this(capacity, OverflowPolicy.SPILL, spillFile, codec);
+    }
+
+    private BoundedDeadLetterSink(int capacity, OverflowPolicy overflowPolicy, Path spillFile, Codec<I> codec) {
+        this.ring = new ArrayBlockingQueue<>(capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.spillFile = spillFile;
+        this.codec = codec;
+    }
+
+    @Override
+    public void accept(Exception e, I input) {
+        final DeadLetter<I> deadLetter = new DeadLetter<>(input, e);
+        if(ring.offer(deadLetter))
+            return;
+        switch(overflowPolicy) {
+            case DROP:
+                dropped.increment();
+                break;
+            case BLOCK:
+                try {
+                    ring.put(deadLetter);
+                } catch(InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    dropped.increment();
+                }
+                break;
+            case SPILL:
+                synchronized(spillLock) {
+                    if(ring.offer(deadLetter))
+                        return;
+                    final ArrayList<DeadLetter<I>> batch = new ArrayList<>(ring.size());
+                    ring.drainTo(batch);
+                    batch.add(deadLetter);
+                    spill(batch);
+                }
+                break;
+        }
+    }
+
+    private void spill(List<DeadLetter<I>> deadLetters) {
+        try {
+            final byte[][] inputs = encode(deadLetters);
+            if(spillChannel == null) {
+                spillChannel = FileChannel.open(spillFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                spillChannel.truncate(completeLength(spillFile));
+                spillBuffer = ByteBuffer.allocateDirect(SPILL_BUFFER_SIZE);
+            }
+            for(int n = 0; n < inputs.length; n++) {
+                final DeadLetter<I> deadLetter = deadLetters.get(n);
+                final byte[] input = inputs[n];
+                final byte[] exceptionClass = bytes(deadLetter.getExceptionClass());
+                final byte[] message = bytes(deadLetter.getMessage());
+                final int length = MIN_RECORD_LENGTH + length(input) + length(exceptionClass) + length(message);
+                if(spillBuffer.remaining() < 4 + length)
+                    writeSpillBuffer();
+                final ByteBuffer target = spillBuffer.remaining() < 4 + length ? ByteBuffer.allocate(4 + length) : spillBuffer;
+                target.putInt(length);
+                put(target, input);
+                put(target, exceptionClass);
+                put(target, message);
+                if(target != spillBuffer) {
+                    target.flip();
+                    while(target.hasRemaining())
+                        spillChannel.write(target);
+                }
+                spilled++;
+            }
+        } catch(IOException e) {
+            throw new UncheckedIOException("Could not spill dead letters to " + spillFile, e);
+        }
+    }
+
+    /**
+     * @return the encoded inputs of the dead letters; if the codec fails, puts them back in the ring before throwing.
+     */
+    private byte[][] encode(List<DeadLetter<I>> deadLetters) throws IOException {
+        final byte[][] inputs = new byte[deadLetters.size()][];
+        try {
+            for(int n = 0; n < inputs.length; n++) {
+                final I input = deadLetters.get(n).getInput();
+                inputs[n] = input == null ? null : codec.encode(input);
+            }
+        } catch(Throwable t) {
+            for(DeadLetter<I> deadLetter : deadLetters)
+                if(!ring.offer(deadLetter))
+                    dropped.increment();
+            throw t;
+        }
+        return inputs;
+    }
+
+    /**
+     * @return the length of the complete records at the start of a spill file, without the record a crash may have cut short.
+     */
+    private static long completeLength(Path spillFile) throws IOException {
+        if(!Files.exists(spillFile))
+            return 0;
+        long complete = 0;
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(spillFile), SPILL_BUFFER_SIZE))) {
+            while(true) {
+                final int length = in.readInt();
+                if(length < MIN_RECORD_LENGTH || in.skipBytes(length) < length)
+                    break;
+                complete += 4 + length;
+            }
+        } catch(EOFException e) {
+            // The last record is complete, or cut short in its length
+        }
+        return complete;
+    }
+
+    private void writeSpillBuffer() throws IOException {
+        spillBuffer.flip();
+        while(spillBuffer.hasRemaining())
+            spillChannel.write(spillBuffer);
+        spillBuffer.clear();
+    }
+
+    private static byte[] bytes(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static void put(ByteBuffer buffer, byte[] bytes) {
+        if(bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    /**
+     * Writes the buffered spilled dead letters to the spill file.
+     */
+    public void flush() {
+        synchronized(spillLock) {
+            if(spillChannel == null)
+                return;
+            try {
+                writeSpillBuffer();
+            } catch(IOException e) {
+                throw new UncheckedIOException("Could not spill dead letters to " + spillFile, e);
+            }
+        }
+    }
+
+    /**
+     * Moves the dead letters in memory to the spill file and flushes it, so that they survive a crash, e.g. before recording a
+     * checkpoint. Does nothing for a sink which does not spill.
+     */
+    public void spillAll() {
+        if(overflowPolicy != OverflowPolicy.SPILL)
+            return;
+        synchronized(spillLock) {
+            final ArrayList<DeadLetter<I>> batch = new ArrayList<>(ring.size());
+            ring.drainTo(batch);
+            if(!batch.isEmpty())
+                spill(batch);
+            flush();
+        }
+    }
+
+    /**
+     * Flushes, and closes the spill file. The dead letters in memory are kept.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized(spillLock) {
+            if(spillChannel == null)
+                return;
+            try {
+                writeSpillBuffer();
+            } finally {
+                spillChannel.close();
+                spillChannel = null;
+            }
+        }
+    }
+
+    /**
+     * @return the oldest dead letter in memory, or {@code null} if there is none.
+     */
+    public DeadLetter<I> poll() {
+        return ring.poll();
+    }
+
+    /**
+     * Removes all dead letters in memory, passing them to {@code consumer}.
+     * @return the number of dead letters removed
+     */
+    public int drainTo(Consumer<? super DeadLetter<I>> consumer) {
+        int count = 0;
+        DeadLetter<I> deadLetter;
+        while((deadLetter = ring.poll()) != null) {
+            consumer.accept(deadLetter);
+            count++;
+        }
+        return count;
+    }
+
+    public int size() {
+        return ring.size();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getSpilledCount() {
+        synchronized(spillLock) {
+            return spilled;
+        }
+    }
+
+    public Path getSpillFile() {
+        return spillFile;
+    }
+
+    /**
+     * @return the spilled dead letters, after flushing them, followed by a snapshot of those in memory.
+     */
+    public Stream<DeadLetter<I>> replay() {
+        final Stream<DeadLetter<I>> inMemory = new ArrayList<>(ring).stream();
+        if(spillFile == null || getSpilledCount() == 0)
+            return inMemory;
+        flush();
+        return Stream.concat(read(spillFile, codec), inMemory);
+    }
+
+    public Stream<I> replayInputs() {
+        return replay().map(DeadLetter::getInput);
+    }
+
+    /**
+     * @return the dead letters of a spill file, read lazily; the returned Stream must be closed.
+     */
+    public static <I> Stream<DeadLetter<I>> read(Path spillFile, Codec<I> codec) {
+        final DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(spillFile), SPILL_BUFFER_SIZE));
+        } catch(IOException e) {
+            throw new UncheckedIOException("Could not read dead letters from " + spillFile, e);
+        }
+        final Iterator<DeadLetter<I>> iterator = new Iterator<DeadLetter<I>>() {
+            private DeadLetter<I> next;
+
+            @Override
+            public boolean hasNext() {
+                if(next == null)
+                    next = readNext();
+                return next != null;
+            }
+
+            @Override
+            public DeadLetter<I> next() {
+                if(!hasNext())
+                    throw new NoSuchElementException();
+                final DeadLetter<I> deadLetter = next;
+                next = null;
+                return deadLetter;
+            }
+
+            /**
+             * @return the next record, or {@code null} at the end of the file or at a record cut short by a crash.
+             */
+            private DeadLetter<I> readNext() {
+                try {
+                    final byte[] record;
+                    try {
+                        final int length = in.readInt();
+                        if(length < MIN_RECORD_LENGTH)
+                            return null;
+                        record = new byte[length];
+                        in.readFully(record);
+                    } catch(EOFException e) {
+                        return null;
+                    }
+                    final ByteBuffer buffer = ByteBuffer.wrap(record);
+                    final byte[] input = readBytes(buffer);
+                    final byte[] exceptionClass = readBytes(buffer);
+                    final byte[] message = readBytes(buffer);
+                    return new DeadLetter<>(input == null ? null : codec.decode(input), string(exceptionClass), string(message));
+                } catch(IOException e) {
+                    throw new UncheckedIOException("Could not read dead letters from " + spillFile, e);
+                }
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        in.close();
+                    } catch(IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    private static byte[] readBytes(ByteBuffer record) throws IOException {
+        if(record.remaining() < 4)
+            throw new IOException("Corrupt dead letter record: " + record.remaining() + " bytes left for a field length");
+        final int length = record.getInt();
+        if(length < 0)
+            return null;
+        if(length > record.remaining())
+            throw new IOException("Corrupt dead letter record: field of " + length + " bytes in " + record.remaining() + " remaining bytes");
+        final byte[] bytes = new byte[length];
+        record.get(bytes);
+        return bytes;
+    }
+
+    private static String string(byte[] bytes) {
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+}
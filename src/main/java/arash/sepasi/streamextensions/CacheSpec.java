@@ -0,0 +1,54 @@
+package arash.sepasi.streamextensions;
+
+import java.time.Duration;
+
+/**
+ * An immutable specification of a {@link CachedFunction}: its maximum size, how long results are kept, and how long
+ * Exceptions are kept (negative caching).<br/>
+ * A specification is created with {@link #maximumSize(long)} and refined with {@link #expireAfterWrite(Duration)} and
+ * {@link #cacheFailuresFor(Duration)}. By default results never expire and Exceptions are not cached.
+ */
+public class CacheSpec {
+    private final long maximumSize;
+    private final long expireAfterWriteNanos;
+    private final long failureExpiryNanos;
+
+    private CacheSpec(long maximumSize, long expireAfterWriteNanos, long failureExpiryNanos) {
+        if(maximumSize < 1)
+            throw new IllegalArgumentException("maximumSize must be positive: " + maximumSize);
+        this.maximumSize = maximumSize;
+        this.expireAfterWriteNanos = expireAfterWriteNanos;
+        this.failureExpiryNanos = failureExpiryNanos;
+    }
+
+    public static CacheSpec maximumSize(long maximumSize) {
+        return new CacheSpec(maximumSize, Long.MAX_VALUE, 0);
+    }
+
+    /**
+     * @return a copy of this specification whose results expire {@code ttl} after they were computed.
+     */
+    public CacheSpec expireAfterWrite(Duration ttl) {
+        return new CacheSpec(maximumSize, ttl.toNanos(), failureExpiryNanos);
+    }
+
+    /**
+     * @return a copy of this specification which keeps an Exception for {@code ttl}, rethrowing it to every call for the same
+     * input in the meantime instead of calling the Function again.
+     */
+    public CacheSpec cacheFailuresFor(Duration ttl) {
+        return new CacheSpec(maximumSize, expireAfterWriteNanos, ttl.toNanos());
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    long getExpireAfterWriteNanos() {
+        return expireAfterWriteNanos;
+    }
+
+    long getFailureExpiryNanos() {
+        return failureExpiryNanos;
+    }
+}
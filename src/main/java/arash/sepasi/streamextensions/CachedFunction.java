@@ -0,0 +1,169 @@
+package arash.sepasi.streamextensions;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static arash.sepasi.streamextensions.FunctionExtensions.*;
+
+/**
+ * A concurrent, size-bounded cache in front of an {@link ExceptionThrowingFunction}, configured by a {@link CacheSpec}.<br/>
+ * Concurrent calls for the same input are collapsed into a single call of the Function, whose result (or, with negative
+ * caching, Exception) is shared. When the cache is full, entries are evicted in approximate least-recently-used order using
+ * the CLOCK algorithm: every entry has a referenced bit set on hits, and eviction skips (and clears) referenced entries once.<br/>
+ * {@code null} inputs are never cached. A CachedFunction is itself an ExceptionThrowingFunction, so it can be used with
+ * {@code returnOptional(...)} and the Stream mappers of {@link StreamExtensions}.
+ */
+public class CachedFunction<I, O> implements ExceptionThrowingFunction<I, O> {
+
+    private final ExceptionThrowingFunction<I, O> f;
+    private final CacheSpec spec;
+
+    private final ConcurrentHashMap<I, Entry<I, O>> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry<I, O>> clock = new ConcurrentLinkedQueue<>();
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicLong queued = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private static class Entry<I, O> {
+        private final I key;
+        private final CompletableFuture<O> value = new CompletableFuture<>();
+        private volatile long loadedAtNanos;
+        private volatile long ttlNanos = Long.MAX_VALUE;
+        private volatile boolean referenced;
+
+        Entry(I key) {
+            this.key = key;
+        }
+
+        boolean isExpired(long now) {
+            return value.isDone() && now - loadedAtNanos >= ttlNanos;
+        }
+    }
+
+    CachedFunction(ExceptionThrowingFunction<I, O> f, CacheSpec spec) {
+        this.f = f;
+        this.spec = spec;
+    }
+
+    @Override
+    public O apply(I i) throws Exception {
+        if(i == null)
+            return f.apply(null);
+        while(true) {
+            final Entry<I, O> cached = entries.get(i);
+            if(cached != null) {
+                if(cached.isExpired(System.nanoTime())) {
+                    remove(cached);
+                    continue;
+                }
+                cached.referenced = true;
+                hits.increment();
+                return await(cached);
+            }
+            final Entry<I, O> created = new Entry<>(i);
+            if(entries.putIfAbsent(i, created) == null) {
+                misses.increment();
+                size.incrementAndGet();
+                queued.incrementAndGet();
+                clock.add(created);
+                evictIfNeeded();
+                return load(created);
+            }
+        }
+    }
+
+    private O load(Entry<I, O> entry) throws Exception {
+        final O o;
+        try {
+            o = f.apply(entry.key);
+        } catch(Exception e) {
+            entry.loadedAtNanos = System.nanoTime();
+            entry.ttlNanos = spec.getFailureExpiryNanos();
+            if(entry.ttlNanos <= 0)
+                remove(entry);
+            entry.value.completeExceptionally(e);
+            throw e;
+        } catch(Throwable t) {
+            // Errors are never cached, but the waiting callers must still be released
+            remove(entry);
+            entry.value.completeExceptionally(t);
+            throw t;
+        }
+        entry.loadedAtNanos = System.nanoTime();
+        entry.ttlNanos = spec.getExpireAfterWriteNanos();
+        entry.value.complete(o);
+        return o;
+    }
+
+    private O await(Entry<I, O> entry) throws Exception {
+        try {
+            return entry.value.get();
+        } catch(ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if(cause instanceof Exception)
+                throw (Exception) cause;
+            throw (Error) cause;
+        }
+    }
+
+    private boolean remove(Entry<I, O> entry) {
+        if(!entries.remove(entry.key, entry))
+            return false;
+        size.decrementAndGet();
+        return true;
+    }
+
+    /**
+     * Runs the CLOCK hand until the cache fits its maximum size, dropping queued entries which were already removed on the way.
+     */
+    private void evictIfNeeded() {
+        final long maximumSize = spec.getMaximumSize();
+        while(size.get() > maximumSize || queued.get() > 2 * maximumSize) {
+            final Entry<I, O> entry = clock.poll();
+            if(entry == null)
+                return;
+            if(entries.get(entry.key) != entry) {
+                queued.decrementAndGet();
+            } else if(entry.referenced || size.get() <= maximumSize) {
+                entry.referenced = false;
+                clock.add(entry);
+            } else {
+                queued.decrementAndGet();
+                if(remove(entry))
+                    evictions.increment();
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        entries.values().forEach(this::remove);
+    }
+
+    public long size() {
+        return size.get();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "CachedFunction(" + f + ")";
+    }
+}
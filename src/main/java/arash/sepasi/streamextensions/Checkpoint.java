@@ -0,0 +1,135 @@
+package arash.sepasi.streamextensions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * The progress of a {@link StreamExtensions#mapCheckpointed(java.util.function.LongFunction, FunctionExtensions.ExceptionThrowingFunction, CheckpointSpec)}
+ * Stream: the position of the next element to process in its source, the numbers of elements which succeeded and failed so far,
+ * and the spill file of its {@link BoundedDeadLetterSink}, if any.<br/>
+ * A checkpoint is saved as a properties file, written to a temporary file which is then atomically renamed over the previous
+ * checkpoint, so a crash leaves either the previous or the new checkpoint, never a partial one.
+ */
+public class Checkpoint {
+    static final Checkpoint START = new Checkpoint(0, 0, 0, null, false);
+
+    private static final String POSITION = "position";
+    private static final String SUCCEEDED = "succeeded";
+    private static final String FAILED = "failed";
+    private static final String DEAD_LETTER_FILE = "deadLetterFile";
+    private static final String COMPLETE = "complete";
+
+    private final long position;
+    private final long succeeded;
+    private final long failed;
+    private final Path deadLetterFile;
+    private final boolean complete;
+
+    Checkpoint(long position, long succeeded, long failed, Path deadLetterFile, boolean complete) {
+        this.position = position;
+        this.succeeded = succeeded;
+        this.failed = failed;
+        this.deadLetterFile = deadLetterFile;
+        this.complete = complete;
+    }
+
+    /**
+     * @return the checkpoint saved in {@code file}, or {@link Optional#empty()} if there is none yet.
+     */
+    public static Optional<Checkpoint> read(Path file) throws IOException {
+        final Properties properties = new Properties();
+        try(InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        } catch(NoSuchFileException e) {
+            return Optional.empty();
+        }
+        try {
+            final String deadLetterFile = properties.getProperty(DEAD_LETTER_FILE);
+            return Optional.of(new Checkpoint(
+                    Long.parseLong(properties.getProperty(POSITION)),
+                    Long.parseLong(properties.getProperty(SUCCEEDED)),
+                    Long.parseLong(properties.getProperty(FAILED)),
+                    deadLetterFile == null ? null : Paths.get(deadLetterFile),
+                    Boolean.parseBoolean(properties.getProperty(COMPLETE))));
+        } catch(NumberFormatException e) {
+            throw new IOException("Invalid checkpoint " + file + ": " + properties, e);
+        }
+    }
+
+    /**
+     * Saves this checkpoint to {@code file} through a temporary file in the same directory, forced to disk and renamed atomically
+     * where the file system supports it.
+     */
+    void write(Path file) throws IOException {
+        final Properties properties = new Properties();
+        properties.setProperty(POSITION, Long.toString(position));
+        properties.setProperty(SUCCEEDED, Long.toString(succeeded));
+        properties.setProperty(FAILED, Long.toString(failed));
+        if(deadLetterFile != null)
+            properties.setProperty(DEAD_LETTER_FILE, deadLetterFile.toString());
+        properties.setProperty(COMPLETE, Boolean.toString(complete));
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        properties.store(bytes, null);
+
+        final Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while(buffer.hasRemaining())
+                channel.write(buffer);
+            channel.force(true);
+        }
+        try {
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch(AtomicMoveNotSupportedException e) {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * @return the position in the source of the next element to process, i.e. the number of elements processed.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    public long getSucceeded() {
+        return succeeded;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return the spill file of the {@link BoundedDeadLetterSink} receiving the failed elements, or {@code null} if there is none.
+     */
+    public Path getDeadLetterFile() {
+        return deadLetterFile;
+    }
+
+    /**
+     * @return whether the source was processed to its end.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public String toString() {
+        return "Checkpoint{position=" + position + ", succeeded=" + succeeded + ", failed=" + failed
+                + ", deadLetterFile=" + deadLetterFile + ", complete=" + complete + "}";
+    }
+}
@@ -0,0 +1,43 @@
+package arash.sepasi.streamextensions;
+
+import java.nio.file.Path;
+
+/**
+ * An immutable specification of the checkpoints of
+ * {@link StreamExtensions#mapCheckpointed(java.util.function.LongFunction, FunctionExtensions.ExceptionThrowingFunction, CheckpointSpec)}:
+ * the file they are saved to, and how many elements are processed between two checkpoints.<br/>
+ * A specification is created with {@link #to(Path)} and refined with {@link #every(long)}. By default a checkpoint is saved every
+ * 10000 elements.
+ */
+public class CheckpointSpec {
+    private static final long DEFAULT_INTERVAL = 10_000;
+
+    private final Path file;
+    private final long interval;
+
+    private CheckpointSpec(Path file, long interval) {
+        if(file == null || interval < 1)
+            throw new IllegalArgumentException("A checkpoint file and a positive interval are needed: " + file + ", " + interval);
+        this.file = file;
+        this.interval = interval;
+    }
+
+    public static CheckpointSpec to(Path file) {
+        return new CheckpointSpec(file, DEFAULT_INTERVAL);
+    }
+
+    /**
+     * @return a copy of this specification which saves a checkpoint every {@code elements} processed elements.
+     */
+    public CheckpointSpec every(long elements) {
+        return new CheckpointSpec(file, elements);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+}
@@ -0,0 +1,172 @@
+package arash.sepasi.streamextensions;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Spliterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static arash.sepasi.streamextensions.FunctionExtensions.*;
+
+/**
+ * A sequential {@link Spliterator} which maps the elements of a source Spliterator like {@link ExceptionFilteringSpliterator}, and
+ * saves a {@link Checkpoint} of its progress every {@link CheckpointSpec#getInterval()} elements.<br/>
+ * An element counts as processed once its output was passed downstream, or its failure to the failure handler. The checkpoints
+ * are written asynchronously on the supplied Executor: the traversing thread only publishes a snapshot, and a snapshot published
+ * while the previous one is still being written replaces it. The last checkpoint is written synchronously when the source ends
+ * or the Spliterator is closed.<br/>
+ * When the failure handler is a spilling {@link BoundedDeadLetterSink}, its dead letters are spilled before every checkpoint is
+ * written, and its spill file is recorded in the checkpoint.
+ */
+class CheckpointingSpliterator<I, O> implements Spliterator<O>, Consumer<I> {
+
+    private final Spliterator<I> source;
+    private final ExceptionThrowingFunction<I, O> mapper;
+    private final DiConsumer<Exception, I> failureHandler;
+    private final StreamExtensionsMetrics metrics;
+    private final boolean timed;
+    private final Path file;
+    private final long interval;
+    private final Executor executor;
+    private final BoundedDeadLetterSink<?> deadLetterSink;
+
+    private final AtomicReference<Checkpoint> pending = new AtomicReference<>();
+    private final Object writeLock = new Object();
+    private long written;
+    private IOException writeFailure;
+
+    private long position;
+    private long succeeded;
+    private long failed;
+    private long nextCheckpoint;
+    private boolean finished;
+    private O current;
+
+    CheckpointingSpliterator(Spliterator<I> source, Checkpoint start, ExceptionThrowingFunction<I, O> mapper, DiConsumer<Exception, I> failureHandler,
+                             CheckpointSpec spec, Executor executor, StreamExtensionsMetrics metrics) {
+        this.source = source;
+        this.mapper = mapper;
+        this.failureHandler = failureHandler;
+        this.metrics = metrics;
+        this.timed = metrics.isEnabled();
+        this.file = spec.getFile();
+        this.interval = spec.getInterval();
+        this.executor = executor;
+        this.deadLetterSink = failureHandler instanceof BoundedDeadLetterSink && ((BoundedDeadLetterSink<?>) failureHandler).getSpillFile() != null
+                ? (BoundedDeadLetterSink<?>) failureHandler : null;
+        this.position = start.getPosition();
+        this.succeeded = start.getSucceeded();
+        this.failed = start.getFailed();
+        this.written = start.getPosition();
+        this.nextCheckpoint = position + interval;
+    }
+
+    @Override
+    public void accept(I i) {
+        final long start = timed ? System.nanoTime() : 0;
+        try {
+            current = mapper.apply(i);
+        } catch(Exception e) {
+            if(timed)
+                metrics.recordFailure(mapper, e, System.nanoTime() - start);
+            failed++;
+            failureHandler.accept(e, i);
+            return;
+        }
+        if(current != null) {
+            if(timed)
+                metrics.recordSuccess(mapper, System.nanoTime() - start);
+        } else {
+            if(timed)
+                metrics.recordFailure(mapper, null, System.nanoTime() - start);
+            failed++;
+            failureHandler.accept(null, i);
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super O> action) {
+        while(!finished && source.tryAdvance(this)) {
+            final O o = current;
+            if(o != null) {
+                current = null;
+                action.accept(o);
+                succeeded++;
+            }
+            if(++position >= nextCheckpoint) {
+                nextCheckpoint = position + interval;
+                publish(snapshot(false));
+            }
+            if(o != null)
+                return true;
+        }
+        finish(true);
+        return false;
+    }
+
+    /**
+     * Writes the last checkpoint, marked as complete if the source ended, unless it was already written.
+     * @throws UncheckedIOException if this or an earlier asynchronous checkpoint could not be written.
+     */
+    void finish(boolean complete) {
+        if(finished)
+            return;
+        finished = true;
+        pending.set(null);
+        write(snapshot(complete));
+        synchronized(writeLock) {
+            if(writeFailure != null)
+                throw new UncheckedIOException("Could not save checkpoint to " + file, writeFailure);
+        }
+    }
+
+    private Checkpoint snapshot(boolean complete) {
+        return new Checkpoint(position, succeeded, failed, deadLetterSink == null ? null : deadLetterSink.getSpillFile(), complete);
+    }
+
+    private void publish(Checkpoint checkpoint) {
+        if(pending.getAndSet(checkpoint) == null)
+            executor.execute(() -> {
+                final Checkpoint latest = pending.getAndSet(null);
+                if(latest != null)
+                    write(latest);
+            });
+    }
+
+    private void write(Checkpoint checkpoint) {
+        synchronized(writeLock) {
+            // An asynchronous write may run after a later one: never move a checkpoint backwards
+            if(checkpoint.getPosition() < written)
+                return;
+            try {
+                if(deadLetterSink != null)
+                    deadLetterSink.spillAll();
+                checkpoint.write(file);
+                written = checkpoint.getPosition();
+            } catch(IOException e) {
+                if(writeFailure == null)
+                    writeFailure = e;
+            } catch(UncheckedIOException e) {
+                if(writeFailure == null)
+                    writeFailure = e.getCause();
+            }
+        }
+    }
+
+    @Override
+    public Spliterator<O> trySplit() {
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return source.estimateSize();
+    }
+
+    @Override
+    public int characteristics() {
+        return (source.characteristics() & (ORDERED | IMMUTABLE)) | NONNULL;
+    }
+}
@@ -0,0 +1,205 @@
+package arash.sepasi.streamextensions;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static arash.sepasi.streamextensions.FunctionExtensions.*;
+
+/**
+ * A circuit breaker for exception-throwing Functions and Suppliers, e.g. calls to a remote dependency made from a Stream.<br/>
+ * While {@link State#CLOSED}, the outcomes of the last {@code windowSize} calls are recorded in a lock-free ring. Once at least
+ * {@code minimumCalls} were recorded and the failure rate reaches {@code failureRateThreshold}, the breaker opens.<br/>
+ * While {@link State#OPEN}, calls fail fast without being made: the wrapped Functions throw a shared, stackless
+ * {@link CircuitBreakerOpenException}, or return the configured fallback. After {@code openDuration}, the breaker turns
+ * {@link State#HALF_OPEN} and lets {@code halfOpenCalls} trial calls through; it closes if they all succeed, and opens again otherwise.<br/>
+ * The wrapped Functions are ordinary exception-throwing Functions, so they can be used with {@code handleException(...)},
+ * {@code returnOptional(...)} and the Stream mappers of {@link StreamExtensions}.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * Thrown by the wrapped Functions and Suppliers instead of calling them while the breaker is open.
+     */
+    public static class CircuitBreakerOpenException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        CircuitBreakerOpenException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    private final double failureRateThreshold;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final long openDurationNanos;
+    private final int halfOpenCalls;
+    private final CircuitBreakerOpenException openException;
+
+    private final AtomicInteger state = new AtomicInteger(State.CLOSED.ordinal());
+    private volatile Window window;
+    private volatile long openedAtNanos;
+    private final AtomicInteger halfOpenPermits = new AtomicInteger();
+    private final AtomicInteger halfOpenSuccesses = new AtomicInteger();
+
+    /**
+     * The outcomes of the last calls, as a ring of 0 (empty), 1 (success) or 2 (failure) slots.
+     */
+    private static class Window {
+        private final AtomicIntegerArray outcomes;
+        private final AtomicLong next = new AtomicLong();
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+
+        Window(int size) {
+            outcomes = new AtomicIntegerArray(size);
+        }
+
+        void record(boolean failed) {
+            final int slot = (int) (next.getAndIncrement() % outcomes.length());
+            final int previous = outcomes.getAndSet(slot, failed ? 2 : 1);
+            if(previous == 0)
+                calls.incrementAndGet();
+            else if(previous == 2)
+                failures.decrementAndGet();
+            if(failed)
+                failures.incrementAndGet();
+        }
+    }
+
+    /**
+     * Creates a breaker which needs a full window of calls to open, and one successful trial call to close again.
+     */
+    public CircuitBreaker(double failureRateThreshold, int windowSize, Duration openDuration) {
+        this(failureRateThreshold, windowSize, windowSize, openDuration, 1);
+    }
+
+    public CircuitBreaker(double failureRateThreshold, int windowSize, int minimumCalls, Duration openDuration, int halfOpenCalls) {
+        if(failureRateThreshold <= 0 || failureRateThreshold > 1)
+            throw new IllegalArgumentException("failureRateThreshold must be in (0, 1]: " + failureRateThreshold);
+        if(windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize)
+            throw new IllegalArgumentException("minimumCalls must be between 1 and windowSize: " + minimumCalls + ", " + windowSize);
+        if(halfOpenCalls < 1)
+            throw new IllegalArgumentException("halfOpenCalls must be positive: " + halfOpenCalls);
+        this.failureRateThreshold = failureRateThreshold;
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.openDurationNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.openException = new CircuitBreakerOpenException("Circuit breaker " + this + " is open");
+        this.window = new Window(windowSize);
+    }
+
+    public State getState() {
+        return State.values()[state.get()];
+    }
+
+    public <I, O> ExceptionThrowingFunction<I, O> wrap(ExceptionThrowingFunction<I, O> f) {
+        return i -> {
+            if(!acquirePermission())
+                throw openException;
+            return call(() -> f.apply(i));
+        };
+    }
+
+    public <I, O> ExceptionThrowingFunction<I, O> wrap(ExceptionThrowingFunction<I, O> f, Function<I, O> fallback) {
+        return i -> acquirePermission() ? call(() -> f.apply(i)) : fallback.apply(i);
+    }
+
+    public <O> ExceptionThrowingSupplier<O> wrap(ExceptionThrowingSupplier<O> s) {
+        return () -> {
+            if(!acquirePermission())
+                throw openException;
+            return call(s);
+        };
+    }
+
+    public <O> ExceptionThrowingSupplier<O> wrap(ExceptionThrowingSupplier<O> s, Supplier<O> fallback) {
+        return () -> acquirePermission() ? call(s) : fallback.get();
+    }
+
+    private <O> O call(ExceptionThrowingSupplier<O> s) throws Exception {
+        final O o;
+        try {
+            o = s.get();
+        } catch(Throwable t) {
+            onFailure();
+            throw t;
+        }
+        onSuccess();
+        return o;
+    }
+
+    private boolean acquirePermission() {
+        switch(getState()) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if(System.nanoTime() - openedAtNanos < openDurationNanos || !transition(State.OPEN, State.HALF_OPEN))
+                    return false;
+                // This call is the first trial call
+                halfOpenSuccesses.set(0);
+                halfOpenPermits.set(halfOpenCalls - 1);
+                return true;
+            default:
+                return takeHalfOpenPermit();
+        }
+    }
+
+    /**
+     * Takes one of the remaining trial calls, stopping at zero so that rejected calls cannot drive the count below it.
+     */
+    private boolean takeHalfOpenPermit() {
+        int permits;
+        do {
+            permits = halfOpenPermits.get();
+            if(permits <= 0)
+                return false;
+        } while(!halfOpenPermits.compareAndSet(permits, permits - 1));
+        return true;
+    }
+
+    private void onSuccess() {
+        switch(getState()) {
+            case CLOSED:
+                window.record(false);
+                break;
+            case HALF_OPEN:
+                if(halfOpenSuccesses.incrementAndGet() >= halfOpenCalls && transition(State.HALF_OPEN, State.CLOSED))
+                    window = new Window(windowSize);
+                break;
+            default:
+        }
+    }
+
+    private void onFailure() {
+        switch(getState()) {
+            case CLOSED:
+                final Window w = window;
+                w.record(true);
+                final int calls = w.calls.get();
+                if(calls >= minimumCalls && w.failures.get() >= failureRateThreshold * calls)
+                    open(State.CLOSED);
+                break;
+            case HALF_OPEN:
+                open(State.HALF_OPEN);
+                break;
+            default:
+        }
+    }
+
+    private void open(State from) {
+        halfOpenPermits.set(0);
+        openedAtNanos = System.nanoTime();
+        transition(from, State.OPEN);
+    }
+
+    private boolean transition(State from, State to) {
+        return state.compareAndSet(from.ordinal(), to.ordinal());
+    }
+}
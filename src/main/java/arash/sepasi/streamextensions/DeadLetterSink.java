@@ -0,0 +1,106 @@
+package arash.sepasi.streamextensions;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+
+import static arash.sepasi.streamextensions.FunctionExtensions.*;
+
+/**
+ * A destination for the inputs which caused Exceptions in a Stream, along with their Exception.<br/>
+ * A DeadLetterSink is a failure handler, so it can be passed to every Stream mapper of {@link StreamExtensions} taking one,
+ * and to {@link StreamExtensions#splitExceptionsFromStream(java.util.stream.Stream, ExceptionThrowingFunction, DeadLetterSink)}.
+ * {@link BoundedDeadLetterSink} keeps them in bounded memory, and spills them to a file when full.
+ */
+@FunctionalInterface
+public interface DeadLetterSink<I> extends DiConsumer<Exception, I> {
+
+    /**
+     * An input which caused an Exception, with the class and message of the Exception.
+     */
+    class DeadLetter<I> {
+        private final I input;
+        private final String exceptionClass;
+        private final String message;
+
+        public DeadLetter(I input, String exceptionClass, String message) {
+            this.input = input;
+            this.exceptionClass = exceptionClass;
+            this.message = message;
+        }
+
+        DeadLetter(I input, Exception e) {
+            this(input, e == null ? null : e.getClass().getName(), e == null ? null : e.getMessage());
+        }
+
+        public I getInput() {
+            return input;
+        }
+
+        /**
+         * @return the class name of the Exception, or {@code null} if the input was mapped to {@code null}.
+         */
+        public String getExceptionClass() {
+            return exceptionClass;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return input + " (" + exceptionClass + ": " + message + ")";
+        }
+    }
+
+    /**
+     * Converts the inputs to and from the bytes written to a spill file.
+     */
+    interface Codec<I> {
+        byte[] encode(I input) throws IOException;
+
+        I decode(byte[] bytes) throws IOException;
+
+        static Codec<String> utf8() {
+            return new Codec<String>() {
+                @Override
+                public byte[] encode(String input) {
+                    return input.getBytes(StandardCharsets.UTF_8);
+                }
+
+                @Override
+                public String decode(byte[] bytes) {
+                    return new String(bytes, StandardCharsets.UTF_8);
+                }
+            };
+        }
+
+        static <I extends Serializable> Codec<I> javaSerialization() {
+            return new Codec<I>() {
+                @Override
+                public byte[] encode(I input) throws IOException {
+                    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    try(ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                        out.writeObject(input);
+                    }
+                    return bytes.toByteArray();
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public I decode(byte[] bytes) throws IOException {
+                    try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                        return (I) in.readObject();
+                    } catch(ClassNotFoundException e) {
+                        throw new IOException(e);
+                    }
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package arash.sepasi.streamextensions;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import static arash.sepasi.streamextensions.FunctionExtensions.*;
+
+/**
+ * A {@link Spliterator} which maps the elements of a source Spliterator using an {@link ExceptionThrowingFunction},
+ * skipping in place any element which caused an Exception (or was mapped to {@code null}).<br/>
+ * Skipped elements are passed to the supplied failure handler; the Exception is {@code null} for elements mapped to {@code null}.<br/>
+ * The Spliterator is used as its own source {@link Consumer}, so no objects are allocated per successfully mapped element.<br/>
+ * Every call is reported to the supplied {@link StreamExtensionsMetrics}, unless they are disabled.<br/>
+ * The Spliterator is ordered only if its source is and it was asked to keep the order; see {@link Ordering}.
+ */
+class ExceptionFilteringSpliterator<I, O> implements Spliterator<O>, Consumer<I> {
+
+    private final Spliterator<I> source;
+    private final ExceptionThrowingFunction<I, O> mapper;
+    private final DiConsumer<Exception, I> failureHandler;
+    private final StreamExtensionsMetrics metrics;
+    private final boolean timed;
+    private final boolean ordered;
+
+    private O current;
+
+    ExceptionFilteringSpliterator(Spliterator<I> source, ExceptionThrowingFunction<I, O> mapper, DiConsumer<Exception, I> failureHandler,
+                                  StreamExtensionsMetrics metrics) {
+        this(source, mapper, failureHandler, metrics, true);
+    }
+
+    ExceptionFilteringSpliterator(Spliterator<I> source, ExceptionThrowingFunction<I, O> mapper, DiConsumer<Exception, I> failureHandler,
+                                  StreamExtensionsMetrics metrics, boolean ordered) {
+        this.source = source;
+        this.mapper = mapper;
+        this.failureHandler = failureHandler;
+        this.metrics = metrics;
+        this.timed = metrics.isEnabled();
+        this.ordered = ordered;
+    }
+
+    @Override
+    public void accept(I i) {
+        final long start = timed ? System.nanoTime() : 0;
+        try {
+            current = mapper.apply(i);
+        } catch(Exception e) {
+            if(timed)
+                metrics.recordFailure(mapper, e, System.nanoTime() - start);
+            failureHandler.accept(e, i);
+            return;
+        }
+        if(current != null) {
+            if(timed)
+                metrics.recordSuccess(mapper, System.nanoTime() - start);
+        } else {
+            if(timed)
+                metrics.recordFailure(mapper, null, System.nanoTime() - start);
+            failureHandler.accept(null, i);
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super O> action) {
+        while(source.tryAdvance(this)) {
+            if(current != null) {
+                final O o = current;
+                current = null;
+                action.accept(o);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super O> action) {
+        source.forEachRemaining(i -> {
+            accept(i);
+            if(current != null) {
+                final O o = current;
+                current = null;
+                action.accept(o);
+            }
+        });
+    }
+
+    @Override
+    public Spliterator<O> trySplit() {
+        final Spliterator<I> split = source.trySplit();
+        return split == null ? null : new ExceptionFilteringSpliterator<>(split, mapper, failureHandler, metrics, ordered);
+    }
+
+    @Override
+    public long estimateSize() {
+        return source.estimateSize();
+    }
+
+    @Override
+    public int characteristics() {
+        return (source.characteristics() & ((ordered ? ORDERED : 0) | IMMUTABLE | CONCURRENT)) | NONNULL;
+    }
+}
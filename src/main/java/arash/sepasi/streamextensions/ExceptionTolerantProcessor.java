@@ -0,0 +1,341 @@
+package arash.sepasi.streamextensions;
+
+import org.reactivestreams.Processor;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static arash.sepasi.streamextensions.FunctionExtensions.*;
+
+/**
+ * A Reactive Streams {@link Processor} which maps the elements of a push-based source using an {@link ExceptionThrowingFunction},
+ * removing any elements which caused Exceptions, like {@link StreamExtensions#removeExceptionsFromStream(java.util.stream.Stream, ExceptionThrowingFunction)}.<br/>
+ * Elements which caused an Exception or were mapped to {@code null} are passed to the failure handler, which by default counts them
+ * as dropped and logs them; they do not consume the demand of the Subscriber. An Exception never cancels the stream, and an error
+ * of the source is only signalled after the elements already received are emitted.<br/>
+ * Backpressure: at most {@code prefetch} elements are requested from the source ahead of their mapping, and requested again
+ * in batches as they are mapped, so the input queue is bounded by {@code prefetch}. At most {@code parallelism} elements are mapped or
+ * waiting to be emitted at a time; outputs are emitted in order, only as requested by the Subscriber.<br/>
+ * With a parallelism of 1 and no Executor, elements are mapped on the thread signalling the Processor; otherwise they are mapped on
+ * the Executor, by default a shared one running every call on a virtual thread when the runtime supports it.<br/>
+ * The Processor supports a single Subscriber; the others are rejected with an {@link IllegalStateException}.
+ */
+public class ExceptionTolerantProcessor<I, O> implements Processor<I, O> {
+
+    private static final int DEFAULT_PREFETCH = 256;
+
+    private final ExceptionThrowingFunction<I, O> mapper;
+    private final DiConsumer<Exception, I> failureHandler;
+    private final int parallelism;
+    private final int prefetch;
+    private final int replenishThreshold;
+    private final Executor executor;
+    private final StreamExtensionsMetrics metrics;
+    private final boolean timed;
+
+    private final ArrayBlockingQueue<I> inputs;
+    private final ArrayDeque<Slot<I, O>> inFlight;
+    private final AtomicReference<Subscription> upstream = new AtomicReference<>();
+    private final AtomicReference<Subscriber<? super O>> downstream = new AtomicReference<>();
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private volatile boolean upstreamDone;
+    private volatile Throwable upstreamError;
+    private volatile boolean cancelled;
+    private volatile IllegalArgumentException invalidRequest;
+    private boolean terminated;
+    private int consumed;
+
+    public ExceptionTolerantProcessor(ExceptionThrowingFunction<I, O> mapper) {
+        this(mapper, 1, DEFAULT_PREFETCH);
+    }
+
+    public ExceptionTolerantProcessor(ExceptionThrowingFunction<I, O> mapper, int parallelism, int prefetch) {
+        this(mapper, parallelism, prefetch, parallelism == 1 ? null : AsyncExecutors.defaultExecutor(), null);
+    }
+
+    /**
+     * @param executor the Executor mapping the elements, or {@code null} to map them on the signalling thread.
+     * @param failureHandler the handler of the elements which caused Exceptions, or {@code null} to count them as dropped and log them.
+     */
+    public ExceptionTolerantProcessor(ExceptionThrowingFunction<I, O> mapper, int parallelism, int prefetch, Executor executor,
+                                      DiConsumer<Exception, I> failureHandler) {
+        if(parallelism < 1 || prefetch < 1)
+            throw new IllegalArgumentException("Parallelism and prefetch must be positive");
+        if(executor == null && parallelism > 1)
+            throw new IllegalArgumentException("Mapping more than one element at a time needs an Executor");
+        this.mapper = mapper;
+        this.metrics = StreamExtensions.getMetrics();
+        this.timed = metrics.isEnabled();
+        this.failureHandler = failureHandler != null ? failureHandler : (e, i) -> {
+            metrics.recordDropped(mapper);
+            StreamExtensions.logRemovedElement(e, i, mapper);
+        };
+        this.parallelism = parallelism;
+        this.prefetch = prefetch;
+        this.replenishThreshold = prefetch - (prefetch >> 2);
+        this.executor = executor;
+        this.inputs = new ArrayBlockingQueue<>(prefetch);
+        this.inFlight = new ArrayDeque<>(parallelism);
+    }
+
+    // ===== Subscriber side ===== //
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        if(subscription == null)
+            throw new NullPointerException("Subscription");
+        if(!upstream.compareAndSet(null, subscription)) {
+            subscription.cancel();
+            return;
+        }
+        if(cancelled)
+            subscription.cancel();
+        else
+            subscription.request(prefetch);
+    }
+
+    @Override
+    public void onNext(I input) {
+        if(input == null)
+            throw new NullPointerException("Element");
+        if(upstreamDone)
+            return;
+        if(!inputs.offer(input)) {
+            upstream.get().cancel();
+            onError(new IllegalStateException("The source sent more elements than the " + prefetch + " requested"));
+            return;
+        }
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        if(t == null)
+            throw new NullPointerException("Throwable");
+        upstreamError = t;
+        upstreamDone = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        upstreamDone = true;
+        drain();
+    }
+
+    // ===== Publisher side ===== //
+
+    @Override
+    public void subscribe(Subscriber<? super O> subscriber) {
+        if(subscriber == null)
+            throw new NullPointerException("Subscriber");
+        if(!downstream.compareAndSet(null, subscriber)) {
+            subscriber.onSubscribe(CancelledSubscription.INSTANCE);
+            subscriber.onError(new IllegalStateException("This Processor supports a single Subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new Subscription() {
+            @Override
+            public void request(long n) {
+                if(n <= 0) {
+                    invalidRequest = new IllegalArgumentException("Rule 3.9: the number of requested elements must be positive, was " + n);
+                    final Subscription subscription = upstream.get();
+                    if(subscription != null)
+                        subscription.cancel();
+                    drain();
+                    return;
+                }
+                long r, u;
+                do {
+                    r = requested.get();
+                    u = r + n < 0 ? Long.MAX_VALUE : r + n;
+                } while(!requested.compareAndSet(r, u));
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                if(cancelled)
+                    return;
+                cancelled = true;
+                final Subscription subscription = upstream.get();
+                if(subscription != null)
+                    subscription.cancel();
+                drain();
+            }
+        });
+        drain();
+    }
+
+    // ===== Drain loop ===== //
+
+    /**
+     * Starts mappings, emits the completed ones in order and signals termination, on one thread at a time: a thread finding
+     * the loop busy only makes the busy thread loop again.
+     */
+    private void drain() {
+        if(wip.getAndIncrement() != 0)
+            return;
+        int missed = 1;
+        do {
+            if(cancelled) {
+                inputs.clear();
+                inFlight.clear();
+            } else if(!terminated) {
+                try {
+                    drainOnce();
+                } catch(Throwable t) {
+                    // A failure handler or the Subscriber threw: stop the loop for good instead of leaving it busy
+                    fail(t);
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while(missed != 0);
+    }
+
+    private void drainOnce() {
+        final Subscriber<? super O> subscriber = downstream.get();
+        if(subscriber != null && invalidRequest != null) {
+            terminated = true;
+            inputs.clear();
+            inFlight.clear();
+            subscriber.onError(invalidRequest);
+            return;
+        }
+        boolean progress = true;
+        while(progress && !cancelled) {
+            progress = false;
+            I input;
+            while(inFlight.size() < parallelism && (input = inputs.poll()) != null) {
+                start(input);
+                progress = true;
+            }
+            Slot<I, O> slot;
+            while(subscriber != null && (slot = inFlight.peek()) != null && slot.done && (slot.output == null || requested.get() > 0)) {
+                inFlight.poll();
+                if(slot.error != null) {
+                    fail(slot.error);
+                    return;
+                }
+                if(slot.output != null) {
+                    requested.decrementAndGet();
+                    subscriber.onNext(slot.output);
+                } else {
+                    failureHandler.accept(slot.failure, slot.input);
+                }
+                replenish();
+                progress = true;
+            }
+        }
+        if(subscriber != null && !cancelled && upstreamDone && inputs.isEmpty() && inFlight.isEmpty()) {
+            terminated = true;
+            final Throwable error = upstreamError;
+            if(error != null)
+                subscriber.onError(error);
+            else
+                subscriber.onComplete();
+        }
+    }
+
+    private void start(I input) {
+        final Slot<I, O> slot = new Slot<>(input);
+        inFlight.add(slot);
+        if(executor == null) {
+            map(slot);
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                map(slot);
+                drain();
+            });
+        } catch(RuntimeException e) {
+            slot.failure = e;
+            slot.done = true;
+        }
+    }
+
+    private void map(Slot<I, O> slot) {
+        final long start = timed ? System.nanoTime() : 0;
+        try {
+            slot.output = mapper.apply(slot.input);
+            if(timed) {
+                if(slot.output != null)
+                    metrics.recordSuccess(mapper, System.nanoTime() - start);
+                else
+                    metrics.recordFailure(mapper, null, System.nanoTime() - start);
+            }
+        } catch(Exception e) {
+            if(timed)
+                metrics.recordFailure(mapper, e, System.nanoTime() - start);
+            slot.failure = e;
+        } catch(Throwable t) {
+            // Not an element failure: the slot still completes, so the loop reaches it and terminates downstream
+            slot.error = t;
+        }
+        slot.done = true;
+    }
+
+    /**
+     * Terminates after an Error or a throwing callback: cancels upstream, and signals {@code t} downstream unless a terminal
+     * signal was already sent.
+     */
+    private void fail(Throwable t) {
+        final boolean signalled = terminated;
+        terminated = true;
+        inputs.clear();
+        inFlight.clear();
+        final Subscription subscription = upstream.get();
+        if(subscription != null)
+            subscription.cancel();
+        final Subscriber<? super O> subscriber = downstream.get();
+        if(!signalled && subscriber != null) {
+            try {
+                subscriber.onError(t);
+            } catch(Throwable ignored) {
+                // Rule 2.13: onError must not throw, and there is nothing left to signal
+            }
+        }
+    }
+
+    private void replenish() {
+        if(++consumed >= replenishThreshold && !upstreamDone) {
+            final Subscription subscription = upstream.get();
+            if(subscription != null)
+                subscription.request(consumed);
+            consumed = 0;
+        }
+    }
+
+    private static final class Slot<I, O> {
+        final I input;
+        O output;
+        Exception failure;
+        Throwable error;
+        volatile boolean done;
+
+        Slot(I input) {
+            this.input = input;
+        }
+    }
+
+    private enum CancelledSubscription implements Subscription {
+        INSTANCE;
+
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package arash.sepasi.streamextensions;
+
+import java.time.Duration;
+
+/**
+ * An immutable policy deciding which failures the Stream mappers and {@code returnOptional(...)} methods of
+ * {@link StreamExtensions} log, installed with {@link StreamExtensions#setFailureLogPolicy(FailureLogPolicy)}.<br/>
+ * Starting from {@link #ALL}, a policy can log only 1 in N failures of every mapper ({@link #sampled(int)}), only the first
+ * failure of every Exception class of a mapper within a window ({@link #deduplicated(Duration)}), and at most a given rate of
+ * failures of every mapper ({@link #rateLimited(double, int)}).<br/>
+ * The failures which are not logged are counted, and a summary of them is logged per mapper at most once every summary interval,
+ * when that mapper fails again. No message is formatted for a failure which is not logged.
+ */
+public class FailureLogPolicy {
+
+    /**
+     * Logs every failure, which is the default.
+     */
+    public static final FailureLogPolicy ALL = new FailureLogPolicy(true, true, 1, 0, 0, 0, Duration.ofSeconds(10).toNanos());
+
+    /**
+     * Logs no failures at all.
+     */
+    public static final FailureLogPolicy OFF = new FailureLogPolicy(false, false, 1, 0, 0, 0, Duration.ofSeconds(10).toNanos());
+
+    private final boolean enabled;
+    private final boolean logReturnOptional;
+    private final int sampleEvery;
+    private final long deduplicationNanos;
+    private final double permitsPerSecond;
+    private final int burst;
+    private final long summaryIntervalNanos;
+
+    private FailureLogPolicy(boolean enabled, boolean logReturnOptional, int sampleEvery, long deduplicationNanos,
+                             double permitsPerSecond, int burst, long summaryIntervalNanos) {
+        this.enabled = enabled;
+        this.logReturnOptional = logReturnOptional;
+        this.sampleEvery = sampleEvery;
+        this.deduplicationNanos = deduplicationNanos;
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.summaryIntervalNanos = summaryIntervalNanos;
+    }
+
+    /**
+     * @return a copy of this policy logging only every {@code oneInN}th failure of every mapper.
+     */
+    public FailureLogPolicy sampled(int oneInN) {
+        if(oneInN < 1)
+            throw new IllegalArgumentException("oneInN must be positive: " + oneInN);
+        return new FailureLogPolicy(enabled, logReturnOptional, oneInN, deduplicationNanos, permitsPerSecond, burst, summaryIntervalNanos);
+    }
+
+    /**
+     * @return a copy of this policy logging, for every mapper, a single failure per Exception class within every {@code window}.
+     */
+    public FailureLogPolicy deduplicated(Duration window) {
+        return new FailureLogPolicy(enabled, logReturnOptional, sampleEvery, window.toNanos(), permitsPerSecond, burst, summaryIntervalNanos);
+    }
+
+    /**
+     * @return a copy of this policy logging, for every mapper, at most {@code permitsPerSecond} failures per second on average,
+     * with bursts of up to {@code burst} failures.
+     */
+    public FailureLogPolicy rateLimited(double permitsPerSecond, int burst) {
+        if(permitsPerSecond <= 0 || burst < 1)
+            throw new IllegalArgumentException("permitsPerSecond and burst must be positive: " + permitsPerSecond + ", " + burst);
+        return new FailureLogPolicy(enabled, logReturnOptional, sampleEvery, deduplicationNanos, permitsPerSecond, burst, summaryIntervalNanos);
+    }
+
+    /**
+     * @return a copy of this policy logging the summaries of the failures which were not logged at most once every {@code interval}.
+     */
+    public FailureLogPolicy withSummaryInterval(Duration interval) {
+        return new FailureLogPolicy(enabled, logReturnOptional, sampleEvery, deduplicationNanos, permitsPerSecond, burst, interval.toNanos());
+    }
+
+    /**
+     * @return a copy of this policy which does not log the failures of the {@code returnOptional(...)} methods.
+     */
+    public FailureLogPolicy withoutReturnOptionalLogging() {
+        return new FailureLogPolicy(enabled, false, sampleEvery, deduplicationNanos, permitsPerSecond, burst, summaryIntervalNanos);
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    boolean isLogReturnOptional() {
+        return logReturnOptional;
+    }
+
+    boolean isUnlimited() {
+        return sampleEvery == 1 && deduplicationNanos == 0 && permitsPerSecond == 0;
+    }
+
+    int getSampleEvery() {
+        return sampleEvery;
+    }
+
+    long getDeduplicationNanos() {
+        return deduplicationNanos;
+    }
+
+    double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    int getBurst() {
+        return burst;
+    }
+
+    long getSummaryIntervalNanos() {
+        return summaryIntervalNanos;
+    }
+}
@@ -0,0 +1,123 @@
+package arash.sepasi.streamextensions;
+
+import org.slf4j.Logger;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Applies a {@link FailureLogPolicy}, keeping its per-mapper state: a sampling counter, the last time every Exception class was
+ * logged, a token bucket, and the counts of the failures which were not logged.<br/>
+ * The state is kept per mapper, or per name for the mappers named with {@code named(...)}, so the capturing lambdas created anew
+ * for every call can share a state; see {@link MapperStates}.<br/>
+ * The token bucket is implemented as a lock-free generic cell rate algorithm over the theoretical arrival time of the next permit.
+ */
+final class FailureLogger {
+
+    private final FailureLogPolicy policy;
+    private final Logger log;
+    private final MapperStates<MapperState> states = new MapperStates<>();
+
+    private final long permitNanos;
+    private final long burstToleranceNanos;
+
+    private static class MapperState {
+        private final AtomicLong seen = new AtomicLong();
+        private final AtomicLong nextPermitNanos = new AtomicLong(Long.MIN_VALUE);
+        private final ConcurrentHashMap<Class<?>, AtomicLong> lastLoggedNanos = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<Class<?>, LongAdder> suppressed = new ConcurrentHashMap<>();
+        private final AtomicLong lastSummaryNanos = new AtomicLong(System.nanoTime());
+    }
+
+    FailureLogger(FailureLogPolicy policy, Logger log) {
+        this.policy = policy;
+        this.log = log;
+        this.permitNanos = policy.getPermitsPerSecond() > 0 ? (long) (1e9 / policy.getPermitsPerSecond()) : 0;
+        this.burstToleranceNanos = permitNanos * (policy.getBurst() - 1);
+    }
+
+    /**
+     * @return whether the failure of a Stream mapper should be logged.
+     */
+    boolean shouldLog(Object mapper, Exception e) {
+        if(!policy.isEnabled())
+            return false;
+        if(policy.isUnlimited())
+            return true;
+        final MapperState state = state(mapper);
+        final long now = System.nanoTime();
+        final Class<?> type = e == null ? Void.class : e.getClass();
+        final boolean log = sampled(state) && firstOfType(state, type, now) && permitted(state, now);
+        if(!log)
+            counter(state.suppressed, type).increment();
+        summarize(mapper, state, now);
+        return log;
+    }
+
+    /**
+     * @return whether the failure of a {@code returnOptional(...)} call should be logged.
+     */
+    boolean shouldLogReturnOptional(Object function, Exception e) {
+        return policy.isLogReturnOptional() && shouldLog(function, e);
+    }
+
+    private MapperState state(Object mapper) {
+        return states.get(mapper, m -> new MapperState());
+    }
+
+    private boolean sampled(MapperState state) {
+        return policy.getSampleEvery() == 1 || state.seen.incrementAndGet() % policy.getSampleEvery() == 1;
+    }
+
+    private boolean firstOfType(MapperState state, Class<?> type, long now) {
+        if(policy.getDeduplicationNanos() == 0)
+            return true;
+        AtomicLong last = state.lastLoggedNanos.get(type);
+        if(last == null) {
+            last = state.lastLoggedNanos.putIfAbsent(type, new AtomicLong(now));
+            if(last == null)
+                return true;
+        }
+        final long previous = last.get();
+        return now - previous >= policy.getDeduplicationNanos() && last.compareAndSet(previous, now);
+    }
+
+    private boolean permitted(MapperState state, long now) {
+        if(permitNanos == 0)
+            return true;
+        while(true) {
+            final long next = state.nextPermitNanos.get();
+            final long arrival = next == Long.MIN_VALUE || next - now < 0 ? now : next;
+            if(arrival - now > burstToleranceNanos)
+                return false;
+            if(state.nextPermitNanos.compareAndSet(next, arrival + permitNanos))
+                return true;
+        }
+    }
+
+    private void summarize(Object mapper, MapperState state, long now) {
+        final long last = state.lastSummaryNanos.get();
+        if(now - last < policy.getSummaryIntervalNanos() || state.suppressed.isEmpty() || !state.lastSummaryNanos.compareAndSet(last, now))
+            return;
+        final Map<String, Long> counts = new TreeMap<>();
+        long total = 0;
+        for(Map.Entry<Class<?>, LongAdder> entry : state.suppressed.entrySet()) {
+            final long count = entry.getValue().sumThenReset();
+            if(count > 0) {
+                counts.put(entry.getKey() == Void.class ? "null result" : entry.getKey().getName(), count);
+                total += count;
+            }
+        }
+        if(total > 0 && log.isWarnEnabled())
+            log.warn("{} failures of {} were not logged in the last {} ms: {}", String.format("%,d", total), mapper,
+                    (now - last) / 1_000_000, counts);
+    }
+
+    private static LongAdder counter(ConcurrentHashMap<Class<?>, LongAdder> counters, Class<?> type) {
+        final LongAdder counter = counters.get(type);
+        return counter != null ? counter : counters.computeIfAbsent(type, k -> new LongAdder());
+    }
+}
@@ -0,0 +1,85 @@
+package arash.sepasi.streamextensions;
+
+import java.time.Duration;
+
+/**
+ * The outcome of
+ * {@link StreamExtensions.ConsumerExtensions#forEachTolerant(java.util.stream.Stream, FunctionExtensions.ExceptionThrowingConsumer, ParallelismSpec)}:
+ * how many elements were consumed successfully or caused Exceptions, how the work was spread, and how long it took.
+ */
+public class ForEachSummary {
+    private final long succeeded;
+    private final long failed;
+    private final long chunks;
+    private final long callerRunChunks;
+    private final long elapsedNanos;
+    private final long busyNanos;
+    private final boolean complete;
+
+    ForEachSummary(long succeeded, long failed, long chunks, long callerRunChunks, long elapsedNanos, long busyNanos, boolean complete) {
+        this.succeeded = succeeded;
+        this.failed = failed;
+        this.chunks = chunks;
+        this.callerRunChunks = callerRunChunks;
+        this.elapsedNanos = elapsedNanos;
+        this.busyNanos = busyNanos;
+        this.complete = complete;
+    }
+
+    public long getSucceeded() {
+        return succeeded;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getTotal() {
+        return succeeded + failed;
+    }
+
+    public long getChunks() {
+        return chunks;
+    }
+
+    /**
+     * @return the number of chunks run by the calling thread because the work queue was full.
+     */
+    public long getCallerRunChunks() {
+        return callerRunChunks;
+    }
+
+    /**
+     * @return the wall-clock time from the first element read to the last element consumed.
+     */
+    public Duration getElapsed() {
+        return Duration.ofNanos(elapsedNanos);
+    }
+
+    /**
+     * @return the time spent consuming elements, summed over all threads.
+     */
+    public Duration getBusy() {
+        return Duration.ofNanos(busyNanos);
+    }
+
+    /**
+     * @return the elements consumed per second of wall-clock time.
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : getTotal() * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return {@code false} if the calling thread was interrupted while waiting, leaving elements unconsumed.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public String toString() {
+        return "ForEachSummary{succeeded=" + succeeded + ", failed=" + failed + ", chunks=" + chunks + ", callerRunChunks=" + callerRunChunks
+                + ", elapsed=" + getElapsed() + ", busy=" + getBusy() + ", complete=" + complete + "}";
+    }
+}
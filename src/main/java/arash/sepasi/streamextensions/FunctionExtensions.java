@@ -19,6 +19,11 @@ public class FunctionExtensions {
         void accept(I1 i1, I2 i2, I3 i3);
     }
 
+    @FunctionalInterface
+    public interface QuadConsumer<I1, I2, I3, I4> {
+        void accept(I1 i1, I2 i2, I3 i3, I4 i4);
+    }
+
     @FunctionalInterface
     public interface PolyConsumer<I> {
         void accept(I... inputs);
@@ -34,6 +39,11 @@ public class FunctionExtensions {
         O apply(I1 i1, I2 i2, I3 i3);
     }
 
+    @FunctionalInterface
+    public interface QuadFunction<I1, I2, I3, I4, O> {
+        O apply(I1 i1, I2 i2, I3 i3, I4 i4);
+    }
+
     @FunctionalInterface
     public interface PolyFunction<I, O> {
         O apply(I... inputs);
@@ -97,4 +107,40 @@ public class FunctionExtensions {
     public interface ExceptionThrowingPolyFunction<I, O> {
         O apply(I... inputs) throws Exception;
     }
+
+    @FunctionalInterface
+    public interface ExceptionThrowingPredicate<I> {
+        boolean test(I i) throws Exception;
+    }
+
+    // ===== Exception Throwing Primitive Functions ===== //
+    @FunctionalInterface
+    public interface ExceptionThrowingToIntFunction<I> {
+        int applyAsInt(I i) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface ExceptionThrowingToLongFunction<I> {
+        long applyAsLong(I i) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface ExceptionThrowingToDoubleFunction<I> {
+        double applyAsDouble(I i) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface ExceptionThrowingIntUnaryOperator {
+        int applyAsInt(int i) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface ExceptionThrowingLongUnaryOperator {
+        long applyAsLong(long i) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface ExceptionThrowingDoubleUnaryOperator {
+        double applyAsDouble(double i) throws Exception;
+    }
 }
@@ -0,0 +1,169 @@
+package arash.sepasi.streamextensions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import static arash.sepasi.streamextensions.FunctionExtensions.*;
+
+/**
+ * A {@link Spliterator} which inner-joins the elements of a probe Spliterator with those of a build Spliterator having an equal key,
+ * combining every matching pair in place, and skipping any pair (or element whose key) which caused an Exception.<br/>
+ * Only the build side is held in memory: it is read into a hash table when any split is first traversed (splitting does not read
+ * it), and the table is then shared read-only by all the splits of the probe side, so the join splits like its probe side. Elements
+ * with a {@code null} key match nothing.<br/>
+ * Failures are passed to the supplied failure handler with the pair which caused them; a failed build key is passed with a
+ * {@code null} probe element, and a failed probe key with a {@code null} build element.
+ */
+class HashJoinSpliterator<L, R, K, O> implements Spliterator<O>, Consumer<L> {
+
+    /**
+     * The hash table of the build side, read once by whichever split needs it first.
+     */
+    private static final class BuildSide<R, K> {
+        private Spliterator<R> source;
+        private volatile Map<K, List<R>> table;
+
+        BuildSide(Spliterator<R> source) {
+            this.source = source;
+        }
+
+        Map<K, List<R>> table(ExceptionThrowingFunction<R, K> key, TriConsumer<Exception, ?, R> failureHandler) {
+            Map<K, List<R>> table = this.table;
+            if(table == null) {
+                synchronized(this) {
+                    table = this.table;
+                    if(table == null) {
+                        final Map<K, List<R>> built = new HashMap<>();
+                        source.forEachRemaining(r -> {
+                            final K k;
+                            try {
+                                k = key.apply(r);
+                            } catch(Exception e) {
+                                failureHandler.accept(e, null, r);
+                                return;
+                            }
+                            if(k != null)
+                                built.computeIfAbsent(k, any -> new ArrayList<>(1)).add(r);
+                        });
+                        source = null;
+                        this.table = table = built;
+                    }
+                }
+            }
+            return table;
+        }
+    }
+
+    private final Spliterator<L> probe;
+    private final BuildSide<R, K> build;
+    private final ExceptionThrowingFunction<L, K> probeKey;
+    private final ExceptionThrowingFunction<R, K> buildKey;
+    private final ExceptionThrowingBiFunction<L, R, O> combiner;
+    private final TriConsumer<Exception, L, R> failureHandler;
+    private final StreamExtensionsMetrics metrics;
+    private final boolean timed;
+
+    private Map<K, List<R>> table;
+    private L current;
+    private List<R> matches;
+    private int next;
+
+    HashJoinSpliterator(Spliterator<L> probe, Spliterator<R> build, ExceptionThrowingFunction<L, K> probeKey, ExceptionThrowingFunction<R, K> buildKey,
+                        ExceptionThrowingBiFunction<L, R, O> combiner, TriConsumer<Exception, L, R> failureHandler, StreamExtensionsMetrics metrics) {
+        this(probe, new BuildSide<>(build), probeKey, buildKey, combiner, failureHandler, metrics);
+    }
+
+    private HashJoinSpliterator(Spliterator<L> probe, BuildSide<R, K> build, ExceptionThrowingFunction<L, K> probeKey,
+                                ExceptionThrowingFunction<R, K> buildKey, ExceptionThrowingBiFunction<L, R, O> combiner,
+                                TriConsumer<Exception, L, R> failureHandler, StreamExtensionsMetrics metrics) {
+        this.probe = probe;
+        this.build = build;
+        this.probeKey = probeKey;
+        this.buildKey = buildKey;
+        this.combiner = combiner;
+        this.failureHandler = failureHandler;
+        this.metrics = metrics;
+        this.timed = metrics.isEnabled();
+    }
+
+    private Map<K, List<R>> table() {
+        if(table == null)
+            table = build.table(buildKey, failureHandler);
+        return table;
+    }
+
+    @Override
+    public void accept(L l) {
+        final K k;
+        try {
+            k = probeKey.apply(l);
+        } catch(Exception e) {
+            failureHandler.accept(e, l, null);
+            return;
+        }
+        if(k != null) {
+            current = l;
+            matches = table().get(k);
+            next = 0;
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super O> action) {
+        final Map<K, List<R>> table = table();
+        if(table.isEmpty())
+            return false;
+        while(true) {
+            while(matches != null && next < matches.size()) {
+                final R r = matches.get(next++);
+                final long start = timed ? System.nanoTime() : 0;
+                final O o;
+                try {
+                    o = combiner.apply(current, r);
+                } catch(Exception e) {
+                    if(timed)
+                        metrics.recordFailure(combiner, e, System.nanoTime() - start);
+                    failureHandler.accept(e, current, r);
+                    continue;
+                }
+                if(o != null) {
+                    if(timed)
+                        metrics.recordSuccess(combiner, System.nanoTime() - start);
+                    action.accept(o);
+                    return true;
+                }
+                if(timed)
+                    metrics.recordFailure(combiner, null, System.nanoTime() - start);
+                failureHandler.accept(null, current, r);
+            }
+            matches = null;
+            current = null;
+            if(!probe.tryAdvance(this))
+                return false;
+        }
+    }
+
+    @Override
+    public Spliterator<O> trySplit() {
+        if(matches != null)
+            return null;
+        final Spliterator<L> split = probe.trySplit();
+        if(split == null)
+            return null;
+        return new HashJoinSpliterator<>(split, build, probeKey, buildKey, combiner, failureHandler, metrics);
+    }
+
+    @Override
+    public long estimateSize() {
+        return probe.estimateSize();
+    }
+
+    @Override
+    public int characteristics() {
+        return (probe.characteristics() & (ORDERED | IMMUTABLE | CONCURRENT)) | NONNULL;
+    }
+}
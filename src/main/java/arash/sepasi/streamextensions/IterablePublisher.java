@@ -0,0 +1,106 @@
+package arash.sepasi.streamextensions;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A local, in-memory {@link Publisher} emitting the elements of an {@link Iterable} to each of its Subscribers, as they request them.<br/>
+ * Elements are emitted synchronously on the thread calling {@link Subscription#request(long)}; a request made from within
+ * {@code onNext} only adds to the demand, so the call stack does not grow with the number of elements.
+ */
+public class IterablePublisher<T> implements Publisher<T> {
+
+    private final Iterable<? extends T> elements;
+
+    public IterablePublisher(Iterable<? extends T> elements) {
+        this.elements = elements;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        if(subscriber == null)
+            throw new NullPointerException("Subscriber");
+        final Iterator<? extends T> iterator;
+        try {
+            iterator = elements.iterator();
+        } catch(RuntimeException e) {
+            subscriber.onSubscribe(new IterableSubscription<>(subscriber, null));
+            subscriber.onError(e);
+            return;
+        }
+        subscriber.onSubscribe(new IterableSubscription<>(subscriber, iterator));
+    }
+
+    private static final class IterableSubscription<T> extends AtomicLong implements Subscription {
+        private static final long serialVersionUID = 1L;
+
+        private final Subscriber<? super T> subscriber;
+        private final Iterator<? extends T> iterator;
+        private volatile boolean cancelled;
+
+        IterableSubscription(Subscriber<? super T> subscriber, Iterator<? extends T> iterator) {
+            this.subscriber = subscriber;
+            this.iterator = iterator;
+            this.cancelled = iterator == null;
+        }
+
+        @Override
+        public void request(long n) {
+            if(cancelled)
+                return;
+            if(n <= 0) {
+                cancelled = true;
+                subscriber.onError(new IllegalArgumentException("Rule 3.9: the number of requested elements must be positive, was " + n));
+                return;
+            }
+            long r, u;
+            do {
+                r = get();
+                u = r + n < 0 ? Long.MAX_VALUE : r + n;
+            } while(!compareAndSet(r, u));
+            if(r == 0)
+                emit(u);
+        }
+
+        /**
+         * Emits while there is demand; the thread which raised the demand from 0 is the only one emitting.
+         */
+        private void emit(long demand) {
+            long emitted = 0;
+            while(true) {
+                while(emitted < demand) {
+                    if(cancelled)
+                        return;
+                    final T next;
+                    try {
+                        if(!iterator.hasNext()) {
+                            cancelled = true;
+                            subscriber.onComplete();
+                            return;
+                        }
+                        next = iterator.next();
+                    } catch(RuntimeException e) {
+                        cancelled = true;
+                        subscriber.onError(e);
+                        return;
+                    }
+                    subscriber.onNext(next);
+                    emitted++;
+                }
+                demand = addAndGet(-emitted);
+                if(demand == 0)
+                    return;
+                emitted = 0;
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package arash.sepasi.streamextensions;
+
+import java.util.HashSet;
+import java.util.Spliterator;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Consumer;
+
+import static arash.sepasi.streamextensions.FunctionExtensions.*;
+
+/**
+ * A sequential {@link Spliterator} which maps the elements of a source Spliterator on single-threaded lanes, hashing each element
+ * onto a lane by its key, so the elements of a key are mapped one at a time in encounter order while different keys are mapped in
+ * parallel.<br/>
+ * The consuming thread reads the source and offers each element with its key to the input ring of its lane, and polls the output
+ * rings of the lanes round-robin; both kinds of rings are {@link SpscRing}s, so the lanes need no locks. When an input ring is full,
+ * the consuming thread drains the outputs until it has room. The outputs of a key are emitted in encounter order; outputs of
+ * different keys interleave.<br/>
+ * Elements whose key or mapping caused an Exception, or which were mapped to {@code null}, are skipped, and passed to the failure
+ * handler on the consuming thread. A mapping throwing an Error stops its lane, cancels the others, and is rethrown on the consuming
+ * thread. The lanes are started by the first traversal, and stop when the source is exhausted or the
+ * Stream is closed.
+ */
+class KeyPartitionedSpliterator<I, K, O> implements Spliterator<O>, Consumer<I> {
+
+    private static final ThreadFactory LANE_THREADS = AsyncExecutors.daemonThreadFactory("stream-extensions-lane");
+
+    private final Spliterator<I> source;
+    private final ExceptionThrowingFunction<I, K> key;
+    private final ExceptionThrowingFunction<I, O> mapper;
+    private final Object metricsKey;
+    private final DiConsumer<Exception, I> failureHandler;
+    private final StreamExtensionsMetrics metrics;
+    private final boolean timed;
+    private final boolean pauseKeysOnFailure;
+    private final Lane[] lanes;
+
+    private volatile boolean sourceDone;
+    private volatile boolean cancelled;
+    private boolean started;
+    private int nextLane;
+    private Lane pendingLane;
+    private Object pendingKey;
+    private I pending;
+
+    /**
+     * A failed element, passed from a lane to the consuming thread through its output ring.
+     */
+    private static final class Failure {
+        final Throwable t;
+        final Object input;
+
+        Failure(Throwable t, Object input) {
+            this.t = t;
+            this.input = input;
+        }
+
+        /**
+         * @return whether the mapping threw something other than an Exception, which stops the whole Stream.
+         */
+        boolean isFatal() {
+            return t != null && !(t instanceof Exception);
+        }
+    }
+
+    private final class Lane implements Runnable {
+        final SpscRing in;
+        final SpscRing out;
+        final HashSet<Object> pausedKeys = new HashSet<>();
+        volatile boolean finished;
+
+        Lane(int ringCapacity) {
+            in = new SpscRing(2 * ringCapacity);
+            out = new SpscRing(ringCapacity);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void run() {
+            final Object[] pair = new Object[2];
+            int idle = 0;
+            try {
+                while(!cancelled) {
+                    if(!in.poll(pair)) {
+                        if(sourceDone && in.isEmpty())
+                            return;
+                        idle = SpscRing.idle(idle);
+                        continue;
+                    }
+                    idle = 0;
+                    final Object result = map(pair[0], (I) pair[1]);
+                    int full = 0;
+                    while(!out.offer(result) && !cancelled)
+                        full = SpscRing.idle(full);
+                    if(result instanceof Failure && ((Failure) result).isFatal())
+                        return;
+                }
+            } finally {
+                finished = true;
+            }
+        }
+
+        private Object map(Object k, I i) {
+            if(pauseKeysOnFailure && pausedKeys.contains(k))
+                return new Failure(new LaneSpec.KeyPausedException(k), i);
+            final long start = timed ? System.nanoTime() : 0;
+            Exception failure = null;
+            try {
+                final O o = mapper.apply(i);
+                if(o != null) {
+                    if(timed)
+                        metrics.recordSuccess(metricsKey, System.nanoTime() - start);
+                    return o;
+                }
+            } catch(Exception e) {
+                failure = e;
+            } catch(Throwable t) {
+                return new Failure(t, i);
+            }
+            if(timed)
+                metrics.recordFailure(metricsKey, failure, System.nanoTime() - start);
+            if(pauseKeysOnFailure)
+                pausedKeys.add(k);
+            return new Failure(failure, i);
+        }
+    }
+
+    /**
+     * @param metricsKey the mapper the calls are recorded under in {@code metrics}, e.g. the Consumer {@code mapper} wraps
+     */
+    KeyPartitionedSpliterator(Spliterator<I> source, ExceptionThrowingFunction<I, K> key, ExceptionThrowingFunction<I, O> mapper,
+                              Object metricsKey, LaneSpec spec, DiConsumer<Exception, I> failureHandler, StreamExtensionsMetrics metrics) {
+        this.source = source;
+        this.key = key;
+        this.mapper = mapper;
+        this.metricsKey = metricsKey;
+        this.failureHandler = failureHandler;
+        this.metrics = metrics;
+        this.timed = metrics.isEnabled();
+        this.pauseKeysOnFailure = spec.isPausingKeysOnFailure();
+        this.lanes = newLanes(spec.getLanes());
+        for(int l = 0; l < lanes.length; l++)
+            lanes[l] = new Lane(spec.getRingCapacity());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Lane[] newLanes(int count) {
+        // Lane is an inner class of a generic class, so its arrays can only be created with wildcards
+        return (Lane[]) new KeyPartitionedSpliterator<?, ?, ?>.Lane[count];
+    }
+
+    /**
+     * Reads the key of an element from the source, keeping it pending until its lane has room.
+     */
+    @Override
+    public void accept(I i) {
+        final Object k;
+        try {
+            k = key.apply(i);
+        } catch(Exception e) {
+            failureHandler.accept(e, i);
+            return;
+        }
+        final int h = k == null ? 0 : k.hashCode();
+        pendingLane = lanes[Math.floorMod(h ^ (h >>> 16), lanes.length)];
+        pendingKey = k;
+        pending = i;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean tryAdvance(Consumer<? super O> action) {
+        if(!started) {
+            started = true;
+            for(Lane lane : lanes)
+                LANE_THREADS.newThread(lane).start();
+        }
+        int idle = 0;
+        while(true) {
+            for(int l = 0; l < lanes.length; l++) {
+                final Lane lane = lanes[nextLane];
+                nextLane = nextLane + 1 == lanes.length ? 0 : nextLane + 1;
+                final Object result = lane.out.poll();
+                if(result instanceof Failure) {
+                    final Failure failure = (Failure) result;
+                    if(failure.isFatal()) {
+                        cancel();
+                        if(failure.t instanceof Error)
+                            throw (Error) failure.t;
+                        throw new IllegalStateException(failure.t);
+                    }
+                    failureHandler.accept((Exception) failure.t, (I) failure.input);
+                    idle = 0;
+                } else if(result != null) {
+                    action.accept((O) result);
+                    return true;
+                }
+            }
+            if(pending != null) {
+                if(pendingLane.in.offer(pendingKey, pending)) {
+                    pending = null;
+                    pendingKey = null;
+                    idle = 0;
+                } else {
+                    idle = SpscRing.idle(idle);
+                }
+            } else if(!sourceDone) {
+                if(!source.tryAdvance(this))
+                    sourceDone = true;
+            } else if(allFinished()) {
+                if(allOutputsEmpty())
+                    return false;
+            } else {
+                idle = SpscRing.idle(idle);
+            }
+        }
+    }
+
+    private boolean allFinished() {
+        for(Lane lane : lanes)
+            if(!lane.finished)
+                return false;
+        return true;
+    }
+
+    private boolean allOutputsEmpty() {
+        for(Lane lane : lanes)
+            if(!lane.out.isEmpty())
+                return false;
+        return true;
+    }
+
+    /**
+     * Stops the lanes, for when the Stream is closed before it is exhausted.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    @Override
+    public Spliterator<O> trySplit() {
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return source.estimateSize();
+    }
+
+    @Override
+    public int characteristics() {
+        return NONNULL;
+    }
+}
@@ -0,0 +1,69 @@
+package arash.sepasi.streamextensions;
+
+/**
+ * An immutable specification of the lanes of
+ * {@link StreamExtensions#mapByKey(java.util.stream.Stream, FunctionExtensions.ExceptionThrowingFunction, FunctionExtensions.ExceptionThrowingFunction, LaneSpec)}:
+ * the number of single-threaded lanes the keys are hashed onto, the capacity of their ring buffers, and whether a failure pauses
+ * its key.<br/>
+ * A specification is created with {@link #lanes(int)} and refined with {@link #withRingCapacity(int)} and {@link #pausingKeysOnFailure()}.
+ * By default the rings hold 1024 elements, and failures do not pause their key.
+ */
+public class LaneSpec {
+    private static final int DEFAULT_RING_CAPACITY = 1024;
+
+    /**
+     * Reported instead of mapping the elements of a key which is paused after a failure.
+     */
+    public static class KeyPausedException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        KeyPausedException(Object key) {
+            super("Key " + key + " is paused after a failure", null, false, false);
+        }
+    }
+
+    private final int lanes;
+    private final int ringCapacity;
+    private final boolean pauseKeysOnFailure;
+
+    private LaneSpec(int lanes, int ringCapacity, boolean pauseKeysOnFailure) {
+        if(lanes < 1 || ringCapacity < 2)
+            throw new IllegalArgumentException("Lanes must be positive and ring capacity at least 2: " + lanes + ", " + ringCapacity);
+        this.lanes = lanes;
+        this.ringCapacity = ringCapacity;
+        this.pauseKeysOnFailure = pauseKeysOnFailure;
+    }
+
+    public static LaneSpec lanes(int lanes) {
+        return new LaneSpec(lanes, DEFAULT_RING_CAPACITY, false);
+    }
+
+    /**
+     * @return a copy of this specification whose input and output rings hold {@code capacity} elements per lane, rounded up to a
+     * power of two.
+     */
+    public LaneSpec withRingCapacity(int capacity) {
+        return new LaneSpec(lanes, capacity, pauseKeysOnFailure);
+    }
+
+    /**
+     * @return a copy of this specification which, once an element fails, reports every later element of the same key as failed with a
+     * {@link KeyPausedException} instead of mapping it, so no later update of the key is applied over the failed one. The other keys,
+     * including those of the same lane, are not affected.
+     */
+    public LaneSpec pausingKeysOnFailure() {
+        return new LaneSpec(lanes, ringCapacity, true);
+    }
+
+    public int getLanes() {
+        return lanes;
+    }
+
+    public int getRingCapacity() {
+        return ringCapacity;
+    }
+
+    public boolean isPausingKeysOnFailure() {
+        return pauseKeysOnFailure;
+    }
+}
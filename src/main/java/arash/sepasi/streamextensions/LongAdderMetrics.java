@@ -0,0 +1,171 @@
+package arash.sepasi.streamextensions;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link StreamExtensionsMetrics} keeping per-mapper {@link LongAdder} counters, failure counts by Exception class,
+ * and a latency histogram with power-of-two nanosecond buckets.<br/>
+ * The counters are only read by {@link #snapshot()}, whose result can be logged or exported.<br/>
+ * The counters are kept per mapper, or per name for the mappers named with {@code named(...)}, which suits the capturing lambdas
+ * created anew for every call; the counters do not keep the mappers reachable, and are dropped once the mappers are collected.
+ */
+public class LongAdderMetrics implements StreamExtensionsMetrics {
+
+    private static final String NULL_RESULT = "null result";
+
+    private final MapperStates<MapperMetrics> mappers = new MapperStates<>();
+
+    private static class MapperMetrics {
+        private final String name;
+        private final LongAdder successes = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private final LongAdder split = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder[] latencyBuckets = new LongAdder[64];
+        private final ConcurrentHashMap<String, LongAdder> failuresByType = new ConcurrentHashMap<>();
+
+        MapperMetrics(String name) {
+            this.name = name;
+            for(int b = 0; b < latencyBuckets.length; b++)
+                latencyBuckets[b] = new LongAdder();
+        }
+
+        void recordLatency(long nanos) {
+            totalNanos.add(nanos);
+            latencyBuckets[63 - Long.numberOfLeadingZeros(Math.max(nanos, 1))].increment();
+        }
+    }
+
+    private MapperMetrics metrics(Object mapper) {
+        return mappers.get(mapper, m -> new MapperMetrics(MapperStates.name(m)));
+    }
+
+    @Override
+    public void recordSuccess(Object mapper, long nanos) {
+        final MapperMetrics m = metrics(mapper);
+        m.successes.increment();
+        m.recordLatency(nanos);
+    }
+
+    @Override
+    public void recordFailure(Object mapper, Exception e, long nanos) {
+        final MapperMetrics m = metrics(mapper);
+        m.failures.increment();
+        m.recordLatency(nanos);
+        final String type = e == null ? NULL_RESULT : e.getClass().getName();
+        final LongAdder byType = m.failuresByType.get(type);
+        (byType != null ? byType : m.failuresByType.computeIfAbsent(type, k -> new LongAdder())).increment();
+    }
+
+    @Override
+    public void recordDropped(Object mapper) {
+        metrics(mapper).dropped.increment();
+    }
+
+    @Override
+    public void recordSplit(Object mapper) {
+        metrics(mapper).split.increment();
+    }
+
+    /**
+     * @return a point-in-time copy of the counters of every mapper, keyed by the name of the mapper: the name given with
+     * {@code named(...)}, or its {@code toString()}. The counters of mappers with the same name are summed.
+     */
+    public Map<String, Snapshot> snapshot() {
+        final Map<String, Snapshot> snapshot = new TreeMap<>();
+        for(MapperMetrics m : mappers.values())
+            snapshot.computeIfAbsent(m.name, k -> new Snapshot()).add(m);
+        return snapshot;
+    }
+
+    public void reset() {
+        mappers.clear();
+    }
+
+    /**
+     * The counters of a single mapper. Latency percentiles are the upper bounds of their power-of-two buckets.
+     */
+    public static class Snapshot {
+        private long successes;
+        private long failures;
+        private long dropped;
+        private long split;
+        private long totalNanos;
+        private final long[] latencyBuckets = new long[64];
+        private final Map<String, Long> failuresByType = new LinkedHashMap<>();
+
+        Snapshot() {
+        }
+
+        private void add(MapperMetrics m) {
+            successes += m.successes.sum();
+            failures += m.failures.sum();
+            dropped += m.dropped.sum();
+            split += m.split.sum();
+            totalNanos += m.totalNanos.sum();
+            for(int b = 0; b < latencyBuckets.length; b++)
+                latencyBuckets[b] += m.latencyBuckets[b].sum();
+            m.failuresByType.forEach((type, count) -> failuresByType.merge(type, count.sum(), Long::sum));
+        }
+
+        public long getInvocations() {
+            return successes + failures;
+        }
+
+        public long getSuccesses() {
+            return successes;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public long getDropped() {
+            return dropped;
+        }
+
+        public long getSplit() {
+            return split;
+        }
+
+        public Map<String, Long> getFailuresByType() {
+            return Collections.unmodifiableMap(failuresByType);
+        }
+
+        public double getMeanNanos() {
+            final long invocations = getInvocations();
+            return invocations == 0 ? 0 : (double) totalNanos / invocations;
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         */
+        public long getLatencyPercentileNanos(double percentile) {
+            long total = 0;
+            for(long count : latencyBuckets)
+                total += count;
+            final long rank = (long) Math.ceil(total * percentile / 100);
+            long seen = 0;
+            for(int b = 0; b < latencyBuckets.length; b++) {
+                seen += latencyBuckets[b];
+                if(seen >= rank && seen > 0)
+                    return b == 63 ? Long.MAX_VALUE : (1L << (b + 1)) - 1;
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return "invocations=" + getInvocations() + ", successes=" + successes + ", failures=" + failures
+                    + ", dropped=" + dropped + ", split=" + split + ", failuresByType=" + failuresByType
+                    + ", meanNanos=" + (long) getMeanNanos() + ", p50Nanos=" + getLatencyPercentileNanos(50)
+                    + ", p99Nanos=" + getLatencyPercentileNanos(99);
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package arash.sepasi.streamextensions;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import static arash.sepasi.streamextensions.FunctionExtensions.*;
+import static arash.sepasi.streamextensions.StreamExtensions.Tuple;
+
+/**
+ * A {@link Spliterator} which maps the lines of a memory-mapped file using an {@link ExceptionThrowingFunction}, skipping the lines
+ * which could not be decoded, caused an Exception or were mapped to {@code null}, like {@link ExceptionFilteringSpliterator}.<br/>
+ * Each Spliterator covers a byte range of the file starting and ending on line boundaries, and splits it in two halves at the
+ * line boundary nearest to its middle, so the ranges stay balanced. Its lines are read through memory-mapped windows of at most
+ * {@link #WINDOW_SIZE} bytes, so files larger than 2GB can be read sequentially as well.<br/>
+ * Lines are terminated by {@code \n} or {@code \r\n}, and are passed to the mapper as a {@link CharSequence} view reused for every
+ * line of the Spliterator: ISO-8859-1 lines, and ASCII-only lines in UTF-8 or US-ASCII, are read straight from the mapped bytes,
+ * the others are decoded first. Skipped lines are passed to the failure handler as their byte offset paired with their text.
+ */
+class MappedLinesSpliterator<O> implements Spliterator<O> {
+
+    static final int WINDOW_SIZE = 64 * 1024 * 1024;
+    private static final int MIN_SPLIT_SIZE = 64 * 1024;
+    private static final int BOUNDARY_READ_SIZE = 8 * 1024;
+
+    private static final long NEWLINES = 0x0A0A0A0A0A0A0A0AL;
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private final FileChannel channel;
+    private final Charset charset;
+    private final ExceptionThrowingFunction<CharSequence, O> mapper;
+    private final DiConsumer<Exception, Tuple<Long, String>> failureHandler;
+    private final StreamExtensionsMetrics metrics;
+    private final boolean timed;
+    private final boolean latin1;
+    private final boolean asciiCompatible;
+    private final int windowSize;
+    private final MappedLine line = new MappedLine();
+
+    private CharsetDecoder decoder;
+    private long position;
+    private final long end;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int windowLength;
+
+    MappedLinesSpliterator(FileChannel channel, long start, long end, Charset charset, ExceptionThrowingFunction<CharSequence, O> mapper,
+                           DiConsumer<Exception, Tuple<Long, String>> failureHandler, StreamExtensionsMetrics metrics) {
+        this(channel, start, end, charset, mapper, failureHandler, metrics, WINDOW_SIZE);
+    }
+
+    MappedLinesSpliterator(FileChannel channel, long start, long end, Charset charset, ExceptionThrowingFunction<CharSequence, O> mapper,
+                           DiConsumer<Exception, Tuple<Long, String>> failureHandler, StreamExtensionsMetrics metrics, int windowSize) {
+        this.channel = channel;
+        this.position = start;
+        this.end = end;
+        this.charset = charset;
+        this.mapper = mapper;
+        this.failureHandler = failureHandler;
+        this.metrics = metrics;
+        this.timed = metrics.isEnabled();
+        this.windowSize = windowSize;
+        this.latin1 = charset.equals(StandardCharsets.ISO_8859_1);
+        this.asciiCompatible = charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @throws IllegalArgumentException if a line feed is not always encoded as a single {@code \n} byte in the charset.
+     */
+    static void checkSupported(Charset charset) {
+        final boolean singleByte = charset.equals(StandardCharsets.UTF_8) || charset.newEncoder().maxBytesPerChar() == 1;
+        if(!singleByte || !Arrays.equals("\n".getBytes(charset), new byte[] { '\n' }))
+            throw new IllegalArgumentException("Lines cannot be split on line feed bytes in " + charset);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super O> action) {
+        while(position < end) {
+            nextLine();
+            final O o = mapLine();
+            if(o != null) {
+                action.accept(o);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super O> action) {
+        while(position < end) {
+            nextLine();
+            final O o = mapLine();
+            if(o != null)
+                action.accept(o);
+        }
+    }
+
+    /**
+     * Points {@link #line} to the line starting at {@link #position}, and moves {@link #position} to the start of the next one.
+     */
+    private void nextLine() {
+        if(window == null || position >= windowStart + windowLength)
+            map(position, Math.min(end - position, windowSize));
+        int from = (int) (position - windowStart);
+        int scanned = from;
+        int newline;
+        while((newline = indexOfNewline(scanned, windowLength)) < 0 && windowStart + windowLength < end) {
+            // The line crosses the end of the window: map a window starting at the line, large enough to hold it
+            final long lineLength = windowStart + windowLength - position;
+            if(lineLength >= Integer.MAX_VALUE)
+                throw new UncheckedIOException(new IOException("The line at offset " + position + " is longer than " + Integer.MAX_VALUE + " bytes"));
+            map(position, Math.min(end - position, Math.min(Integer.MAX_VALUE, Math.max(windowSize, 2 * lineLength))));
+            scanned = (int) lineLength;
+            from = 0;
+        }
+        int to = newline < 0 ? windowLength : newline;
+        position = windowStart + (newline < 0 ? windowLength : newline + 1);
+        if(to > from && window.get(to - 1) == '\r')
+            to--;
+        line.reset(window, from, to - from, windowStart + from);
+    }
+
+    private void map(long start, long size) {
+        try {
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        window.order(ByteOrder.LITTLE_ENDIAN);
+        windowStart = start;
+        windowLength = (int) size;
+    }
+
+    /**
+     * Finds the first {@code \n} eight bytes at a time: in little-endian order, the lowest flagged byte is always a true match.
+     */
+    private int indexOfNewline(int from, int to) {
+        int i = from;
+        for(; i + 8 <= to; i += 8) {
+            final long v = window.getLong(i) ^ NEWLINES;
+            final long found = (v - ONES) & ~v & HIGH_BITS;
+            if(found != 0)
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+        }
+        for(; i < to; i++)
+            if(window.get(i) == '\n')
+                return i;
+        return -1;
+    }
+
+    private boolean isAscii(int from, int to) {
+        int i = from;
+        for(; i + 8 <= to; i += 8)
+            if((window.getLong(i) & HIGH_BITS) != 0)
+                return false;
+        for(; i < to; i++)
+            if(window.get(i) < 0)
+                return false;
+        return true;
+    }
+
+    private O mapLine() {
+        final long start = timed ? System.nanoTime() : 0;
+        final O o;
+        try {
+            if(!latin1 && !(asciiCompatible && isAscii(line.from, line.from + line.length)))
+                line.decoded = decode();
+            o = mapper.apply(line);
+        } catch(Exception e) {
+            if(timed)
+                metrics.recordFailure(mapper, e, System.nanoTime() - start);
+            failureHandler.accept(e, new Tuple<>(line.offset, line.text(charset)));
+            return null;
+        }
+        if(o != null) {
+            if(timed)
+                metrics.recordSuccess(mapper, System.nanoTime() - start);
+        } else {
+            if(timed)
+                metrics.recordFailure(mapper, null, System.nanoTime() - start);
+            failureHandler.accept(null, new Tuple<>(line.offset, line.text(charset)));
+        }
+        return o;
+    }
+
+    private CharBuffer decode() throws IOException {
+        if(decoder == null)
+            decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPORT).onUnmappableCharacter(CodingErrorAction.REPORT);
+        return decoder.decode(line.bytes());
+    }
+
+    @Override
+    public Spliterator<O> trySplit() {
+        final long remaining = end - position;
+        if(remaining < 2L * MIN_SPLIT_SIZE)
+            return null;
+        final long boundary = nextLineStart(position + remaining / 2);
+        if(boundary >= end)
+            return null;
+        final MappedLinesSpliterator<O> prefix = new MappedLinesSpliterator<>(channel, position, boundary, charset, mapper, failureHandler, metrics, windowSize);
+        position = boundary;
+        return prefix;
+    }
+
+    /**
+     * @return the start of the first line starting after {@code from}, read without mapping.
+     */
+    private long nextLineStart(long from) {
+        final ByteBuffer buffer = ByteBuffer.allocate(BOUNDARY_READ_SIZE);
+        try {
+            for(long p = from; p < end; ) {
+                buffer.clear();
+                final int read = channel.read(buffer, p);
+                if(read <= 0)
+                    break;
+                for(int i = 0; i < read; i++)
+                    if(buffer.get(i) == '\n')
+                        return p + i + 1;
+                p += read;
+            }
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return end;
+    }
+
+    /**
+     * An estimate in bytes rather than lines, which is enough to balance the splits.
+     */
+    @Override
+    public long estimateSize() {
+        return end - position;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+    /**
+     * A line of the mapped file, viewed as a {@link CharSequence} without copying when its bytes are its chars.
+     */
+    static final class MappedLine implements CharSequence {
+        private ByteBuffer buffer;
+        private int from;
+        private int length;
+        private long offset;
+        private CharBuffer decoded;
+
+        void reset(ByteBuffer buffer, int from, int length, long offset) {
+            this.buffer = buffer;
+            this.from = from;
+            this.length = length;
+            this.offset = offset;
+            this.decoded = null;
+        }
+
+        /**
+         * @return the byte offset of the line in the file.
+         */
+        long getOffset() {
+            return offset;
+        }
+
+        ByteBuffer bytes() {
+            final ByteBuffer bytes = buffer.duplicate();
+            bytes.limit(from + length).position(from);
+            return bytes;
+        }
+
+        String text(Charset charset) {
+            if(decoded != null)
+                return decoded.toString();
+            final byte[] bytes = new byte[length];
+            bytes().get(bytes);
+            return new String(bytes, charset);
+        }
+
+        @Override
+        public int length() {
+            return decoded != null ? decoded.length() : length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if(decoded != null)
+                return decoded.charAt(index);
+            if(index < 0 || index >= length)
+                throw new IndexOutOfBoundsException(String.valueOf(index));
+            return (char) (buffer.get(from + index) & 0xFF);
+        }
+
+        /**
+         * @return an independent view of the same bytes, or a String if the line was decoded.
+         */
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if(decoded != null)
+                return decoded.subSequence(start, end).toString();
+            if(start < 0 || end > length || start > end)
+                throw new IndexOutOfBoundsException("[" + start + ", " + end + ") of " + length);
+            final MappedLine sub = new MappedLine();
+            sub.reset(buffer, from + start, end - start, offset + start);
+            return sub;
+        }
+
+        @Override
+        public String toString() {
+            return text(StandardCharsets.ISO_8859_1);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package arash.sepasi.streamextensions;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Keeps a state per Stream mapper, such as its metrics or its failure logging state.<br/>
+ * Mappers are compared by identity and weakly referenced, so that unrelated mappers of the same class, e.g. every
+ * {@code withTimeout(...)} function, keep separate states, and the states do not keep the mappers reachable; the states of
+ * collected mappers are removed on the following insertions. Mappers named with {@code named(...)} are keyed by their name
+ * instead, so the mappers sharing a name, e.g. the capturing lambdas created anew for every call, share their state.
+ */
+final class MapperStates<V> {
+
+    private final ConcurrentHashMap<Object, V> states = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+
+    /**
+     * A lookup key, compared to the stored {@link WeakKey}s by the identity of its mapper.
+     */
+    private static final class IdentityKey {
+        final Object mapper;
+
+        IdentityKey(Object mapper) {
+            this.mapper = mapper;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(mapper);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof WeakKey && ((WeakKey) o).get() == mapper;
+        }
+    }
+
+    private static final class WeakKey extends WeakReference<Object> {
+        final int hash;
+
+        WeakKey(Object mapper, ReferenceQueue<Object> queue) {
+            super(mapper, queue);
+            this.hash = System.identityHashCode(mapper);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(o == this)
+                return true;
+            final Object mapper = get();
+            if(mapper == null)
+                return false;
+            return o instanceof IdentityKey ? ((IdentityKey) o).mapper == mapper : o instanceof WeakKey && ((WeakKey) o).get() == mapper;
+        }
+    }
+
+    /**
+     * @return the name of a mapper in metrics and logs: the name given with {@code named(...)}, or its {@code toString()}.
+     */
+    static String name(Object mapper) {
+        return mapper instanceof NamedMappers.Named ? ((NamedMappers.Named) mapper).getName() : String.valueOf(mapper);
+    }
+
+    /**
+     * @return the state of the mapper, creating it with {@code factory} on the first call.
+     */
+    V get(Object mapper, Function<Object, V> factory) {
+        if(mapper instanceof NamedMappers.Named) {
+            final String name = ((NamedMappers.Named) mapper).getName();
+            final V state = states.get(name);
+            return state != null ? state : states.computeIfAbsent(name, k -> factory.apply(mapper));
+        }
+        final V state = states.get(new IdentityKey(mapper));
+        if(state != null)
+            return state;
+        expunge();
+        return states.computeIfAbsent(new WeakKey(mapper, collected), k -> factory.apply(mapper));
+    }
+
+    Collection<V> values() {
+        return states.values();
+    }
+
+    void clear() {
+        states.clear();
+    }
+
+    private void expunge() {
+        Reference<?> key;
+        while((key = collected.poll()) != null)
+            states.remove(key);
+    }
+}
@@ -0,0 +1,98 @@
+package arash.sepasi.streamextensions;
+
+import static arash.sepasi.streamextensions.FunctionExtensions.*;
+
+/**
+ * Exception-throwing Functions, Suppliers and Consumers carrying a name, which keys their metrics and failure logging state
+ * instead of their identity, and stands for them in log messages.
+ */
+final class NamedMappers {
+
+    private NamedMappers() {
+    }
+
+    interface Named {
+        String getName();
+    }
+
+    static class NamedFunction<I, O> implements ExceptionThrowingFunction<I, O>, Named {
+        private final String name;
+        private final ExceptionThrowingFunction<I, O> f;
+
+        NamedFunction(String name, ExceptionThrowingFunction<I, O> f) {
+            if(name == null)
+                throw new IllegalArgumentException("name must not be null");
+            this.name = name;
+            this.f = f;
+        }
+
+        @Override
+        public O apply(I i) throws Exception {
+            return f.apply(i);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    static class NamedSupplier<O> implements ExceptionThrowingSupplier<O>, Named {
+        private final String name;
+        private final ExceptionThrowingSupplier<O> s;
+
+        NamedSupplier(String name, ExceptionThrowingSupplier<O> s) {
+            if(name == null)
+                throw new IllegalArgumentException("name must not be null");
+            this.name = name;
+            this.s = s;
+        }
+
+        @Override
+        public O get() throws Exception {
+            return s.get();
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    static class NamedConsumer<I> implements ExceptionThrowingConsumer<I>, Named {
+        private final String name;
+        private final ExceptionThrowingConsumer<I> c;
+
+        NamedConsumer(String name, ExceptionThrowingConsumer<I> c) {
+            if(name == null)
+                throw new IllegalArgumentException("name must not be null");
+            this.name = name;
+            this.c = c;
+        }
+
+        @Override
+        public void accept(I i) throws Exception {
+            c.accept(i);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
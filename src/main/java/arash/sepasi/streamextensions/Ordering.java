@@ -0,0 +1,28 @@
+package arash.sepasi.streamextensions;
+
+import java.util.stream.Stream;
+
+/**
+ * Whether a Stream mapper keeps the encounter order of its source Stream.<br/>
+ * An unordered Stream lets parallel operations such as {@code limit}, {@code distinct}, {@code findFirst} or
+ * {@code skip} take whichever elements finish first instead of buffering them to restore the order.
+ * A mapper never orders a source Stream which is not ordered.
+ */
+public enum Ordering {
+    /**
+     * Keeps the encounter order of the source Stream.
+     */
+    ORDERED,
+    /**
+     * Drops the encounter order.
+     */
+    UNORDERED,
+    /**
+     * Keeps the encounter order of sequential Streams, where it costs nothing, and drops it for parallel Streams.
+     */
+    BEST_EFFORT;
+
+    boolean keepsOrderOf(Stream<?> stream) {
+        return this == ORDERED || (this == BEST_EFFORT && !stream.isParallel());
+    }
+}
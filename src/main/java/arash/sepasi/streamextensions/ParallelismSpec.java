@@ -0,0 +1,60 @@
+package arash.sepasi.streamextensions;
+
+/**
+ * An immutable specification of the dedicated pool used by
+ * {@link StreamExtensions.ConsumerExtensions#forEachTolerant(java.util.stream.Stream, FunctionExtensions.ExceptionThrowingConsumer, ParallelismSpec)}:
+ * its number of threads, the capacity of its work queue, and the number of elements in each unit of work.<br/>
+ * A specification is created with {@link #threads(int)} or {@link #availableProcessors()} and refined with
+ * {@link #withQueueCapacity(int)} and {@link #withChunkSize(int)}. By default the queue holds 4 chunks per thread, of 16 elements each.
+ */
+public class ParallelismSpec {
+    private static final int DEFAULT_CHUNKS_PER_THREAD = 4;
+    private static final int DEFAULT_CHUNK_SIZE = 16;
+
+    private final int threads;
+    private final int queueCapacity;
+    private final int chunkSize;
+
+    private ParallelismSpec(int threads, int queueCapacity, int chunkSize) {
+        if(threads < 1 || queueCapacity < 1 || chunkSize < 1)
+            throw new IllegalArgumentException("Threads, queue capacity and chunk size must be positive: " + threads + ", " + queueCapacity + ", " + chunkSize);
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+        this.chunkSize = chunkSize;
+    }
+
+    public static ParallelismSpec threads(int threads) {
+        return new ParallelismSpec(threads, threads * DEFAULT_CHUNKS_PER_THREAD, DEFAULT_CHUNK_SIZE);
+    }
+
+    public static ParallelismSpec availableProcessors() {
+        return threads(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @return a copy of this specification whose work queue holds at most {@code chunks} chunks; once it is full, the calling
+     * thread runs the next chunk itself, which stops it from reading the Stream further until it is done.
+     */
+    public ParallelismSpec withQueueCapacity(int chunks) {
+        return new ParallelismSpec(threads, chunks, chunkSize);
+    }
+
+    /**
+     * @return a copy of this specification handing the elements to the threads {@code chunkSize} at a time.
+     */
+    public ParallelismSpec withChunkSize(int chunkSize) {
+        return new ParallelismSpec(threads, queueCapacity, chunkSize);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+}
@@ -0,0 +1,384 @@
+package arash.sepasi.streamextensions;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+
+import static arash.sepasi.streamextensions.FunctionExtensions.*;
+
+/**
+ * Primitive specializations of {@link ExceptionFilteringSpliterator}, which map to {@code int}, {@code long} or {@code double}
+ * values without boxing them. Elements which caused an Exception are skipped in place, passed to the supplied failure handler and
+ * reported to the {@link StreamExtensionsMetrics}.<br/>
+ * The specializations only differ in their types: the timing, the reporting, the size and the characteristics are shared by
+ * {@link Filtering}.
+ */
+final class PrimitiveExceptionFilteringSpliterators {
+
+    private static final int CHARACTERISTICS_MASK = Spliterator.ORDERED | Spliterator.IMMUTABLE | Spliterator.CONCURRENT;
+
+    private PrimitiveExceptionFilteringSpliterators() {
+    }
+
+    /**
+     * The state shared by the specializations: the source, the metrics, and whether the last mapped element produced a value.
+     */
+    private abstract static class Filtering<S extends Spliterator<?>> {
+        final S source;
+        final Object function;
+        final StreamExtensionsMetrics metrics;
+        final boolean timed;
+        boolean found;
+
+        Filtering(S source, Object function, StreamExtensionsMetrics metrics) {
+            this.source = source;
+            this.function = function;
+            this.metrics = metrics;
+            this.timed = metrics.isEnabled();
+        }
+
+        final long start() {
+            return timed ? System.nanoTime() : 0;
+        }
+
+        final void succeeded(long start) {
+            found = true;
+            if(timed)
+                metrics.recordSuccess(function, System.nanoTime() - start);
+        }
+
+        final void failed(Exception e, long start) {
+            if(timed)
+                metrics.recordFailure(function, e, System.nanoTime() - start);
+        }
+
+        /**
+         * @return whether the last mapped element produced a value, resetting it.
+         */
+        final boolean takeFound() {
+            final boolean wasFound = found;
+            found = false;
+            return wasFound;
+        }
+
+        public long estimateSize() {
+            return source.estimateSize();
+        }
+
+        public int characteristics() {
+            return (source.characteristics() & CHARACTERISTICS_MASK) | Spliterator.NONNULL;
+        }
+    }
+
+    static class ToInt<I> extends Filtering<Spliterator<I>> implements Spliterator.OfInt, Consumer<I> {
+        private final ExceptionThrowingToIntFunction<I> mapper;
+        private final DiConsumer<Exception, I> failureHandler;
+        private int current;
+
+        ToInt(Spliterator<I> source, ExceptionThrowingToIntFunction<I> mapper, DiConsumer<Exception, I> failureHandler, StreamExtensionsMetrics metrics) {
+            super(source, mapper, metrics);
+            this.mapper = mapper;
+            this.failureHandler = failureHandler;
+        }
+
+        @Override
+        public void accept(I i) {
+            final long start = start();
+            try {
+                current = mapper.applyAsInt(i);
+            } catch(Exception e) {
+                failed(e, start);
+                failureHandler.accept(e, i);
+                return;
+            }
+            succeeded(start);
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            while(source.tryAdvance(this)) {
+                if(takeFound()) {
+                    action.accept(current);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            source.forEachRemaining(i -> {
+                accept(i);
+                if(takeFound())
+                    action.accept(current);
+            });
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            final Spliterator<I> split = source.trySplit();
+            return split == null ? null : new ToInt<>(split, mapper, failureHandler, metrics);
+        }
+    }
+
+    static class ToLong<I> extends Filtering<Spliterator<I>> implements Spliterator.OfLong, Consumer<I> {
+        private final ExceptionThrowingToLongFunction<I> mapper;
+        private final DiConsumer<Exception, I> failureHandler;
+        private long current;
+
+        ToLong(Spliterator<I> source, ExceptionThrowingToLongFunction<I> mapper, DiConsumer<Exception, I> failureHandler, StreamExtensionsMetrics metrics) {
+            super(source, mapper, metrics);
+            this.mapper = mapper;
+            this.failureHandler = failureHandler;
+        }
+
+        @Override
+        public void accept(I i) {
+            final long start = start();
+            try {
+                current = mapper.applyAsLong(i);
+            } catch(Exception e) {
+                failed(e, start);
+                failureHandler.accept(e, i);
+                return;
+            }
+            succeeded(start);
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            while(source.tryAdvance(this)) {
+                if(takeFound()) {
+                    action.accept(current);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            source.forEachRemaining(i -> {
+                accept(i);
+                if(takeFound())
+                    action.accept(current);
+            });
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            final Spliterator<I> split = source.trySplit();
+            return split == null ? null : new ToLong<>(split, mapper, failureHandler, metrics);
+        }
+    }
+
+    static class ToDouble<I> extends Filtering<Spliterator<I>> implements Spliterator.OfDouble, Consumer<I> {
+        private final ExceptionThrowingToDoubleFunction<I> mapper;
+        private final DiConsumer<Exception, I> failureHandler;
+        private double current;
+
+        ToDouble(Spliterator<I> source, ExceptionThrowingToDoubleFunction<I> mapper, DiConsumer<Exception, I> failureHandler, StreamExtensionsMetrics metrics) {
+            super(source, mapper, metrics);
+            this.mapper = mapper;
+            this.failureHandler = failureHandler;
+        }
+
+        @Override
+        public void accept(I i) {
+            final long start = start();
+            try {
+                current = mapper.applyAsDouble(i);
+            } catch(Exception e) {
+                failed(e, start);
+                failureHandler.accept(e, i);
+                return;
+            }
+            succeeded(start);
+        }
+
+        @Override
+        public boolean tryAdvance(DoubleConsumer action) {
+            while(source.tryAdvance(this)) {
+                if(takeFound()) {
+                    action.accept(current);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(DoubleConsumer action) {
+            source.forEachRemaining(i -> {
+                accept(i);
+                if(takeFound())
+                    action.accept(current);
+            });
+        }
+
+        @Override
+        public Spliterator.OfDouble trySplit() {
+            final Spliterator<I> split = source.trySplit();
+            return split == null ? null : new ToDouble<>(split, mapper, failureHandler, metrics);
+        }
+    }
+
+    static class IntUnary extends Filtering<Spliterator.OfInt> implements Spliterator.OfInt, IntConsumer {
+        private final ExceptionThrowingIntUnaryOperator mapper;
+        private final ObjIntConsumer<Exception> failureHandler;
+        private int current;
+
+        IntUnary(Spliterator.OfInt source, ExceptionThrowingIntUnaryOperator mapper, ObjIntConsumer<Exception> failureHandler, StreamExtensionsMetrics metrics) {
+            super(source, mapper, metrics);
+            this.mapper = mapper;
+            this.failureHandler = failureHandler;
+        }
+
+        @Override
+        public void accept(int i) {
+            final long start = start();
+            try {
+                current = mapper.applyAsInt(i);
+            } catch(Exception e) {
+                failed(e, start);
+                failureHandler.accept(e, i);
+                return;
+            }
+            succeeded(start);
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            while(source.tryAdvance((IntConsumer) this)) {
+                if(takeFound()) {
+                    action.accept(current);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            source.forEachRemaining((IntConsumer) i -> {
+                accept(i);
+                if(takeFound())
+                    action.accept(current);
+            });
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            final Spliterator.OfInt split = source.trySplit();
+            return split == null ? null : new IntUnary(split, mapper, failureHandler, metrics);
+        }
+    }
+
+    static class LongUnary extends Filtering<Spliterator.OfLong> implements Spliterator.OfLong, LongConsumer {
+        private final ExceptionThrowingLongUnaryOperator mapper;
+        private final ObjLongConsumer<Exception> failureHandler;
+        private long current;
+
+        LongUnary(Spliterator.OfLong source, ExceptionThrowingLongUnaryOperator mapper, ObjLongConsumer<Exception> failureHandler, StreamExtensionsMetrics metrics) {
+            super(source, mapper, metrics);
+            this.mapper = mapper;
+            this.failureHandler = failureHandler;
+        }
+
+        @Override
+        public void accept(long i) {
+            final long start = start();
+            try {
+                current = mapper.applyAsLong(i);
+            } catch(Exception e) {
+                failed(e, start);
+                failureHandler.accept(e, i);
+                return;
+            }
+            succeeded(start);
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            while(source.tryAdvance((LongConsumer) this)) {
+                if(takeFound()) {
+                    action.accept(current);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            source.forEachRemaining((LongConsumer) i -> {
+                accept(i);
+                if(takeFound())
+                    action.accept(current);
+            });
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            final Spliterator.OfLong split = source.trySplit();
+            return split == null ? null : new LongUnary(split, mapper, failureHandler, metrics);
+        }
+    }
+
+    static class DoubleUnary extends Filtering<Spliterator.OfDouble> implements Spliterator.OfDouble, DoubleConsumer {
+        private final ExceptionThrowingDoubleUnaryOperator mapper;
+        private final ObjDoubleConsumer<Exception> failureHandler;
+        private double current;
+
+        DoubleUnary(Spliterator.OfDouble source, ExceptionThrowingDoubleUnaryOperator mapper, ObjDoubleConsumer<Exception> failureHandler,
+                    StreamExtensionsMetrics metrics) {
+            super(source, mapper, metrics);
+            this.mapper = mapper;
+            this.failureHandler = failureHandler;
+        }
+
+        @Override
+        public void accept(double i) {
+            final long start = start();
+            try {
+                current = mapper.applyAsDouble(i);
+            } catch(Exception e) {
+                failed(e, start);
+                failureHandler.accept(e, i);
+                return;
+            }
+            succeeded(start);
+        }
+
+        @Override
+        public boolean tryAdvance(DoubleConsumer action) {
+            while(source.tryAdvance((DoubleConsumer) this)) {
+                if(takeFound()) {
+                    action.accept(current);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(DoubleConsumer action) {
+            source.forEachRemaining((DoubleConsumer) i -> {
+                accept(i);
+                if(takeFound())
+                    action.accept(current);
+            });
+        }
+
+        @Override
+        public Spliterator.OfDouble trySplit() {
+            final Spliterator.OfDouble split = source.trySplit();
+            return split == null ? null : new DoubleUnary(split, mapper, failureHandler, metrics);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package arash.sepasi.streamextensions;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+/**
+ * An immutable policy deciding whether, and after which delay, a call which threw an Exception is attempted again.<br/>
+ * A policy is created with {@link #fixed(int, Duration)} or {@link #exponential(int, Duration, Duration)}, and refined with
+ * {@link #withJitter(double)}, {@link #retryOn(Predicate)} and {@link #withDeadline(Duration)}.
+ */
+public class RetryPolicy {
+    private final int maxAttempts;
+    private final long initialDelayNanos;
+    private final long maxDelayNanos;
+    private final double multiplier;
+    private final double jitter;
+    private final Predicate<Exception> retryOn;
+    private final long deadlineNanos;
+
+    private RetryPolicy(int maxAttempts, long initialDelayNanos, long maxDelayNanos, double multiplier, double jitter,
+                        Predicate<Exception> retryOn, long deadlineNanos) {
+        if(maxAttempts < 1)
+            throw new IllegalArgumentException("maxAttempts must be positive: " + maxAttempts);
+        if(jitter < 0 || jitter > 1)
+            throw new IllegalArgumentException("jitter must be between 0 and 1: " + jitter);
+        this.maxAttempts = maxAttempts;
+        this.initialDelayNanos = initialDelayNanos;
+        this.maxDelayNanos = maxDelayNanos;
+        this.multiplier = multiplier;
+        this.jitter = jitter;
+        this.retryOn = retryOn;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * @return a policy making at most {@code maxAttempts} attempts in total, waiting {@code delay} between them.
+     */
+    public static RetryPolicy fixed(int maxAttempts, Duration delay) {
+        return new RetryPolicy(maxAttempts, delay.toNanos(), delay.toNanos(), 1, 0, e -> true, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return a policy making at most {@code maxAttempts} attempts in total, waiting {@code initialDelay} after the first
+     * attempt and doubling the delay after every further attempt, up to {@code maxDelay}.
+     */
+    public static RetryPolicy exponential(int maxAttempts, Duration initialDelay, Duration maxDelay) {
+        return new RetryPolicy(maxAttempts, initialDelay.toNanos(), maxDelay.toNanos(), 2, 0, e -> true, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return a copy of this policy which shortens every delay by a random fraction of up to {@code jitter}, between 0 and 1.
+     */
+    public RetryPolicy withJitter(double jitter) {
+        return new RetryPolicy(maxAttempts, initialDelayNanos, maxDelayNanos, multiplier, jitter, retryOn, deadlineNanos);
+    }
+
+    /**
+     * @return a copy of this policy which only retries the Exceptions accepted by {@code retryOn}.
+     */
+    public RetryPolicy retryOn(Predicate<Exception> retryOn) {
+        return new RetryPolicy(maxAttempts, initialDelayNanos, maxDelayNanos, multiplier, jitter, retryOn, deadlineNanos);
+    }
+
+    /**
+     * @return a copy of this policy which gives up when the next attempt would start later than {@code deadline} after the first one.
+     */
+    public RetryPolicy withDeadline(Duration deadline) {
+        return new RetryPolicy(maxAttempts, initialDelayNanos, maxDelayNanos, multiplier, jitter, retryOn, deadline.toNanos());
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @param e              the Exception thrown by the last attempt
+     * @param failedAttempts the number of attempts made so far
+     * @param elapsedNanos   the time elapsed since the first attempt started
+     * @return the delay in nanoseconds before the next attempt, or -1 if no further attempt should be made.
+     */
+    long retryDelayNanos(Exception e, int failedAttempts, long elapsedNanos) {
+        if(failedAttempts >= maxAttempts || !retryOn.test(e))
+            return -1;
+        final double backoff = initialDelayNanos * Math.pow(multiplier, failedAttempts - 1);
+        long delay = backoff >= maxDelayNanos ? maxDelayNanos : (long) backoff;
+        if(jitter > 0)
+            delay -= (long) (delay * jitter * ThreadLocalRandom.current().nextDouble());
+        if(deadlineNanos != Long.MAX_VALUE && elapsedNanos + delay > deadlineNanos)
+            return -1;
+        return delay;
+    }
+}
@@ -0,0 +1,132 @@
+package arash.sepasi.streamextensions;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static arash.sepasi.streamextensions.FunctionExtensions.*;
+
+/**
+ * A {@link Spliterator} like {@link ExceptionFilteringSpliterator}, which retries elements that caused an Exception according
+ * to a {@link RetryPolicy}.<br/>
+ * Instead of sleeping, a failed element is parked until its retry is due while the following elements are mapped; the
+ * Spliterator only waits for due retries once its source is exhausted. Every split keeps its own parked elements.<br/>
+ * Elements which exhausted the policy, or were mapped to {@code null}, are skipped and passed to the failure handler.
+ */
+class RetryingSpliterator<I, O> implements Spliterator<O>, Consumer<I> {
+
+    private final Spliterator<I> source;
+    private final ExceptionThrowingFunction<I, O> mapper;
+    private final RetryPolicy policy;
+    private final DiConsumer<Exception, I> failureHandler;
+
+    private final PriorityQueue<Retry<I>> retries = new PriorityQueue<>(Comparator.comparingLong((Retry<I> r) -> r.dueNanos));
+    private boolean sourceDone;
+    private O current;
+
+    private static class Retry<I> {
+        private final I input;
+        private final long firstAttemptNanos;
+        private final int failedAttempts;
+        private final Exception lastException;
+        private final long dueNanos;
+
+        Retry(I input, long firstAttemptNanos, int failedAttempts, Exception lastException, long dueNanos) {
+            this.input = input;
+            this.firstAttemptNanos = firstAttemptNanos;
+            this.failedAttempts = failedAttempts;
+            this.lastException = lastException;
+            this.dueNanos = dueNanos;
+        }
+    }
+
+    RetryingSpliterator(Spliterator<I> source, ExceptionThrowingFunction<I, O> mapper, RetryPolicy policy, DiConsumer<Exception, I> failureHandler) {
+        this.source = source;
+        this.mapper = mapper;
+        this.policy = policy;
+        this.failureHandler = failureHandler;
+    }
+
+    @Override
+    public void accept(I i) {
+        attempt(i, 0, 0);
+    }
+
+    private void attempt(I i, long firstAttemptNanos, int failedAttempts) {
+        try {
+            current = mapper.apply(i);
+            if(current == null)
+                failureHandler.accept(null, i);
+        } catch(Exception e) {
+            final long now = System.nanoTime();
+            final long first = failedAttempts == 0 ? now : firstAttemptNanos;
+            final long delay = policy.retryDelayNanos(e, failedAttempts + 1, now - first);
+            if(delay < 0)
+                failureHandler.accept(e, i);
+            else
+                retries.add(new Retry<>(i, first, failedAttempts + 1, e, now + delay));
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super O> action) {
+        while(true) {
+            final Retry<I> retry = retries.peek();
+            if(retry != null && (sourceDone || retry.dueNanos - System.nanoTime() <= 0)) {
+                retries.poll();
+                if(!awaitDue(retry))
+                    return false;
+                attempt(retry.input, retry.firstAttemptNanos, retry.failedAttempts);
+            } else if(!sourceDone) {
+                sourceDone = !source.tryAdvance(this);
+            } else {
+                return false;
+            }
+            if(current != null) {
+                final O o = current;
+                current = null;
+                action.accept(o);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Waits until the retry is due; when interrupted, fails all parked elements with their last Exception.
+     */
+    private boolean awaitDue(Retry<I> retry) {
+        final long wait = retry.dueNanos - System.nanoTime();
+        if(wait <= 0)
+            return true;
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+            return true;
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failureHandler.accept(retry.lastException, retry.input);
+            Retry<I> r;
+            while((r = retries.poll()) != null)
+                failureHandler.accept(r.lastException, r.input);
+            return false;
+        }
+    }
+
+    @Override
+    public Spliterator<O> trySplit() {
+        final Spliterator<I> split = source.trySplit();
+        return split == null ? null : new RetryingSpliterator<>(split, mapper, policy, failureHandler);
+    }
+
+    @Override
+    public long estimateSize() {
+        final long size = source.estimateSize();
+        return size == Long.MAX_VALUE ? size : size + retries.size();
+    }
+
+    @Override
+    public int characteristics() {
+        return (source.characteristics() & (IMMUTABLE | CONCURRENT)) | NONNULL;
+    }
+}
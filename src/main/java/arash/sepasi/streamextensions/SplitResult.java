@@ -0,0 +1,60 @@
+package arash.sepasi.streamextensions;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static arash.sepasi.streamextensions.StreamExtensions.Tuple;
+
+/**
+ * The result of {@link StreamExtensions#splitExceptions(FunctionExtensions.ExceptionThrowingFunction)}: the outputs of the
+ * successfully mapped inputs, and the inputs which caused Exceptions paired with their Exception.<br/>
+ * Inputs which were mapped to {@code null} are reported as failures with a {@code null} Exception.
+ */
+public class SplitResult<I, O> {
+    private final List<O> successes = new ArrayList<>();
+    private final List<Tuple<I, Exception>> failures = new ArrayList<>();
+
+    SplitResult() {
+    }
+
+    void addSuccess(O o) {
+        successes.add(o);
+    }
+
+    void addFailure(I i, Exception e) {
+        failures.add(new Tuple<>(i, e));
+    }
+
+    SplitResult<I, O> merge(SplitResult<I, O> other) {
+        successes.addAll(other.successes);
+        failures.addAll(other.failures);
+        return this;
+    }
+
+    public List<O> getSuccesses() {
+        return Collections.unmodifiableList(successes);
+    }
+
+    public List<Tuple<I, Exception>> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    /**
+     * @return a view of the inputs of {@link #getFailures()}.
+     */
+    public List<I> getFailedInputs() {
+        return new AbstractList<I>() {
+            @Override
+            public I get(int index) {
+                return failures.get(index).getFirst();
+            }
+
+            @Override
+            public int size() {
+                return failures.size();
+            }
+        };
+    }
+}
@@ -0,0 +1,117 @@
+package arash.sepasi.streamextensions;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded, lock-free ring buffer for a single producer thread and a single consumer thread.<br/>
+ * Each side publishes its index with an ordered write, and caches the index of the other side so it only reads it again when
+ * the ring looks full, or empty. Entries can be offered and polled in pairs, published together.
+ */
+final class SpscRing {
+
+    private final Object[] entries;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private long cachedHead;
+    private long cachedTail;
+
+    /**
+     * @param capacity rounded up to a power of two.
+     */
+    SpscRing(int capacity) {
+        final int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.entries = new Object[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Called by the producer only.
+     */
+    boolean offer(Object e) {
+        final long t = tail.get();
+        if(t - cachedHead >= entries.length) {
+            cachedHead = head.get();
+            if(t - cachedHead >= entries.length)
+                return false;
+        }
+        entries[(int) t & mask] = e;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Called by the producer only.
+     */
+    boolean offer(Object first, Object second) {
+        final long t = tail.get();
+        if(t + 2 - cachedHead > entries.length) {
+            cachedHead = head.get();
+            if(t + 2 - cachedHead > entries.length)
+                return false;
+        }
+        entries[(int) t & mask] = first;
+        entries[(int) (t + 1) & mask] = second;
+        tail.lazySet(t + 2);
+        return true;
+    }
+
+    /**
+     * Called by the consumer only.
+     * @return the oldest entry, or {@code null} if the ring is empty.
+     */
+    Object poll() {
+        final long h = head.get();
+        if(h >= cachedTail) {
+            cachedTail = tail.get();
+            if(h >= cachedTail)
+                return null;
+        }
+        final int index = (int) h & mask;
+        final Object e = entries[index];
+        entries[index] = null;
+        head.lazySet(h + 1);
+        return e;
+    }
+
+    /**
+     * Called by the consumer only, on a ring filled with pairs.
+     * @return the oldest pair in {@code pair}, or {@code false} if the ring is empty.
+     */
+    boolean poll(Object[] pair) {
+        final long h = head.get();
+        if(h + 2 > cachedTail) {
+            cachedTail = tail.get();
+            if(h + 2 > cachedTail)
+                return false;
+        }
+        final int first = (int) h & mask;
+        final int second = (int) (h + 1) & mask;
+        pair[0] = entries[first];
+        pair[1] = entries[second];
+        entries[first] = null;
+        entries[second] = null;
+        head.lazySet(h + 2);
+        return true;
+    }
+
+    boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    /**
+     * Waits a little longer on each idle round: spinning first, then yielding, then parking for up to a millisecond.
+     * @return the next idle round.
+     */
+    static int idle(int round) {
+        if(round < 64) {
+            // Spin
+        } else if(round < 128) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(Math.min(1_000_000L, 1_000L << Math.min(10, round - 128)));
+        }
+        return round + 1;
+    }
+}
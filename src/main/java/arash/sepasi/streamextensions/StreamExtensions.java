@@ -3,22 +3,62 @@ package arash.sepasi.streamextensions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.Spliterator;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.Collector;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static arash.sepasi.streamextensions.FunctionExtensions.*;
-import static arash.sepasi.streamextensions.StreamExtensions.FunctionExtensions.returnOptional;
 
 /**
  * A collection of utility methods to allow the usage of exception-throwing methods in Streams.<br/>
  * The {@code handleException(...)} methods allow the user to supply a custom consumer of the thrown Exception.<br/>
- * The {@code throwRuntimeException(...)} methods rethrow a thrown Exception as a RuntimeException.<br/>
+ * The {@code throwRuntimeException(...)} methods rethrow a thrown Exception as a {@link WrappedCheckedException}, a RuntimeException keeping it as its cause.<br/>
  * The {@code returnOptional(...)} methods return an {@link Optional} instead, which will be {@link Optional#empty()} in case of an Exception.<br/>
  * The {@link #removeExceptionsFromStream(Stream, ExceptionThrowingFunction)} method will map the provided Stream using the provided mapping Function, removing any inputs which caused Exceptions from the returned output Stream.<br/>
  * The {@link #splitExceptionsFromStream(Stream, ExceptionThrowingFunction)} method is similar, but it also returns a Stream of the inputs which caused Exceptions.<br/>
+ * They can also be sent to a {@link DeadLetterSink}, such as a {@link BoundedDeadLetterSink} which spills them to disk when full.<br/>
+ * The {@code withTimeout(...)} methods bound the execution time of a Supplier or Function, turning a timeout into an ordinary Exception.<br/>
+ * The {@code retry(...)} methods call a Supplier or Function again according to a {@link RetryPolicy} until it succeeds.<br/>
+ * The {@code mapAsync(...)} methods do the same on an Executor with bounded concurrency, for mapping Functions doing blocking I/O.<br/>
+ * The {@code mapBatched(...)} methods do the same with a mapping Function taking whole batches of inputs.<br/>
+ * The {@code removeExceptionsMapToInt/Long/Double(...)} and {@code removeExceptionsFromInt/Long/DoubleStream(...)} methods do the same for primitive Streams, without boxing.<br/>
+ * The {@link #splitExceptions(ExceptionThrowingFunction)} Collector partitions a Stream into outputs and failed inputs in a single terminal pass.<br/>
+ * Chains of exception-throwing stages can be fused into a single pass with {@link TryStream}.<br/>
+ * The {@link #lines(Path, Charset, ExceptionThrowingFunction)} methods do the same for the lines of a memory-mapped file, splitting it evenly for parallel Streams.<br/>
+ * The {@code zip(...)} methods combine the elements at the same position of two or three Streams, and the {@code hashJoin(...)} methods join two Streams by key, removing the pairs which caused Exceptions.<br/>
+ * The {@code aggregateWindows(...)} methods aggregate the values of a Stream incrementally over tumbling or sliding windows, counting the failures of every window.<br/>
+ * The {@code forEachTolerant(...)} methods run an exception-throwing Consumer over a Stream on a dedicated pool with a bounded queue, and summarize the outcome.<br/>
+ * The {@code mapByKey(...)} and {@code forEachByKey(...)} methods process the elements of a key in order, and different keys in parallel, on lanes partitioned by key.<br/>
+ * The {@code mapCheckpointed(...)} methods save the progress of a Stream to a checkpoint file, and resume it from there after a restart.<br/>
+ * {@link TolerantCollectors} offers toMap, groupingBy, partitioningBy and reducing Collectors taking exception-throwing functions.<br/>
+ * For push-based sources, {@link ExceptionTolerantProcessor} does the same as a backpressured Reactive Streams Processor.<br/>
+ * Which failures are logged is decided by the {@link FailureLogPolicy} installed with {@link #setFailureLogPolicy(FailureLogPolicy)}.<br/>
+ * The outcomes of the calls made by the Stream mappers can be counted by installing a {@link StreamExtensionsMetrics} with {@link #setMetrics(StreamExtensionsMetrics)}.<br/>
  * <p>
  * Created by Arash Sepasi on 12/28/2016.
  */
@@ -26,6 +66,27 @@ public class StreamExtensions {
 
     private static final Logger LOG = LoggerFactory.getLogger(StreamExtensions.class);
 
+    private static volatile FailureLogger failureLogger = new FailureLogger(FailureLogPolicy.ALL, LOG);
+    private static volatile StreamExtensionsMetrics metrics = StreamExtensionsMetrics.NOOP;
+
+    /**
+     * Installs the policy deciding which failures are logged, with fresh sampling, deduplication and rate limiting state.
+     */
+    public static void setFailureLogPolicy(FailureLogPolicy policy) {
+        failureLogger = new FailureLogger(policy == null ? FailureLogPolicy.ALL : policy, LOG);
+    }
+
+    /**
+     * Installs the metrics receiving the outcome of every call made by the Stream mappers created from now on.
+     */
+    public static void setMetrics(StreamExtensionsMetrics metrics) {
+        StreamExtensions.metrics = metrics == null ? StreamExtensionsMetrics.NOOP : metrics;
+    }
+
+    public static StreamExtensionsMetrics getMetrics() {
+        return metrics;
+    }
+
     public static class RunnableExtensions {
         public static void handleException(ExceptionThrowingRunnable r, Consumer<Exception> ec) {
             try {
@@ -36,7 +97,7 @@ public class StreamExtensions {
         }
         public static void throwRuntimeException(ExceptionThrowingRunnable r) {
             handleException(r, e -> {
-                throw new RuntimeException(runtimeExceptionText(e, r));
+                throw new WrappedCheckedException(e, r);
             });
         }
     }
@@ -67,23 +128,97 @@ public class StreamExtensions {
                 ec.accept(e, i1, i2, i3);
             }
         }
+        /**
+         * Like {@link #handleException(ExceptionThrowingTriConsumer, Object, Object, Object, PolyConsumer)}, but passes the Exception
+         * and the inputs to {@code ec} as typed arguments, without allocating an array.
+         */
+        public static <I1, I2, I3> void handleException(ExceptionThrowingTriConsumer<I1, I2, I3> c, I1 i1, I2 i2, I3 i3,
+                                                        QuadConsumer<Exception, I1, I2, I3> ec) {
+            try {
+                c.accept(i1, i2, i3);
+            } catch(Exception e) {
+                ec.accept(e, i1, i2, i3);
+            }
+        }
         public static <I> void throwRuntimeException(ExceptionThrowingConsumer<I> c, I i) {
             handleException(c, i, (e, in) -> {
-                throw new RuntimeException(runtimeExceptionText(e, c, i));
+                throw new WrappedCheckedException(e, c, i);
             });
         }
         public static <I1, I2> void throwRuntimeException(ExceptionThrowingBiConsumer<I1, I2> c, I1 i1, I2 i2) {
             handleException(c, i1, i2, (e, in1, in2) -> {
-                throw new RuntimeException(runtimeExceptionText(e, c, i1, i2));
+                throw new WrappedCheckedException(e, c, i1, i2);
             });
         }
         public static <I1, I2> void throwRuntimeException(ExceptionThrowingDiConsumer<I1, I2> c, I1 i1, I2 i2) {
             throwRuntimeException((ExceptionThrowingBiConsumer<I1, I2>)c, i1, i2);
         }
         public static <I1, I2, I3> void throwRuntimeException(ExceptionThrowingTriConsumer<I1, I2, I3> c, I1 i1, I2 i2, I3 i3) {
-            handleException(c, i1, i2, i3, (PolyConsumer<Object>) ((Object[] inputs) -> {
-                throw new RuntimeException(runtimeExceptionText((Exception)inputs[0], c, i1, i2, i3));
-            }));
+            handleException(c, i1, i2, i3, (e, in1, in2, in3) -> {
+                throw new WrappedCheckedException(e, c, i1, i2, i3);
+            });
+        }
+        /**
+         * @return a consumer calling {@code c}, whose metrics and failure logging state are keyed by {@code name} instead of the
+         * consumer itself, so the consumers sharing a name share them; {@code name} also stands for the consumer in log messages.
+         */
+        public static <I> ExceptionThrowingConsumer<I> named(String name, ExceptionThrowingConsumer<I> c) {
+            return new NamedMappers.NamedConsumer<>(name, c);
+        }
+        /**
+         * Runs the consumer over every element of the stream on lanes partitioned by key, logging the elements which caused
+         * Exceptions; see {@link #forEachByKey(Stream, ExceptionThrowingFunction, ExceptionThrowingConsumer, LaneSpec, DiConsumer)}.
+         */
+        public static <I, K> ForEachSummary forEachByKey(Stream<I> stream, ExceptionThrowingFunction<I, K> key, ExceptionThrowingConsumer<I> c,
+                                                         LaneSpec spec) {
+            return forEachByKey(stream, key, c, spec, dropAndLog(c, getMetrics()));
+        }
+        /**
+         * Runs the consumer over every element of the stream on single-threaded lanes, one element of a key at a time in encounter
+         * order, and different keys in parallel; see {@link StreamExtensions#mapByKey(Stream, ExceptionThrowingFunction, ExceptionThrowingFunction, LaneSpec, DiConsumer)}.<br/>
+         * Elements which caused an Exception are passed to {@code failureHandler}, on the calling thread.
+         * @return the numbers of elements consumed and failed, and the time it took.
+         */
+        public static <I, K> ForEachSummary forEachByKey(Stream<I> stream, ExceptionThrowingFunction<I, K> key, ExceptionThrowingConsumer<I> c,
+                                                         LaneSpec spec, DiConsumer<Exception, I> failureHandler) {
+            final long start = System.nanoTime();
+            final LongAdder busyNanos = new LongAdder();
+            final long[] failed = new long[1];
+            final long succeeded;
+            try(Stream<Boolean> consumed = mapByKey(stream, key, i -> {
+                final long consumeStart = System.nanoTime();
+                try {
+                    c.accept(i);
+                    return Boolean.TRUE;
+                } finally {
+                    busyNanos.add(System.nanoTime() - consumeStart);
+                }
+            }, c, spec, (e, i) -> {
+                failed[0]++;
+                failureHandler.accept(e, i);
+            })) {
+                succeeded = consumed.count();
+            }
+            return new ForEachSummary(succeeded, failed[0], 0, 0, System.nanoTime() - start, busyNanos.sum(), true);
+        }
+        /**
+         * Runs the consumer over every element of the stream on a dedicated pool, logging the elements which caused Exceptions; see
+         * {@link #forEachTolerant(Stream, ExceptionThrowingConsumer, ParallelismSpec, DiConsumer)}.
+         */
+        public static <I> ForEachSummary forEachTolerant(Stream<I> stream, ExceptionThrowingConsumer<I> c, ParallelismSpec spec) {
+            return forEachTolerant(stream, c, spec, dropAndLog(c, getMetrics()));
+        }
+        /**
+         * Runs the consumer over every element of the stream on a dedicated pool of {@code spec.getThreads()} threads, and waits for it
+         * to finish.<br/>
+         * The calling thread reads the stream and queues its elements in chunks, which the threads of the pool take as they become
+         * free; once the bounded queue is full, the calling thread consumes the next chunk itself.<br/>
+         * Elements which caused an Exception are passed to {@code failureHandler}, from the threads of the pool.
+         * @return the numbers of elements consumed and failed, and the time it took.
+         */
+        public static <I> ForEachSummary forEachTolerant(Stream<I> stream, ExceptionThrowingConsumer<I> c, ParallelismSpec spec,
+                                                         DiConsumer<Exception, I> failureHandler) {
+            return TolerantForEach.run(stream, c, spec, failureHandler, getMetrics());
         }
     }
 
@@ -97,12 +232,47 @@ public class StreamExtensions {
         }
         public static <O> O throwRuntimeException(ExceptionThrowingSupplier<O> s) {
             return handleException(s, e -> {
-                throw new RuntimeException(runtimeExceptionText(e, s));
+                throw new WrappedCheckedException(e, s);
             });
         }
+        /**
+         * Calls the supplier until it succeeds or the policy gives up, sleeping between attempts.
+         * @throws WrappedCheckedException caused by the last Exception when the policy gives up, or the thread is interrupted while waiting.
+         */
+        public static <O> O retry(ExceptionThrowingSupplier<O> s, RetryPolicy policy) {
+            final long start = System.nanoTime();
+            for(int attempt = 1; ; attempt++) {
+                try {
+                    return s.get();
+                } catch(Exception e) {
+                    final long delay = policy.retryDelayNanos(e, attempt, System.nanoTime() - start);
+                    if(delay < 0 || !sleepBeforeRetry(delay))
+                        throw new WrappedCheckedException(e, s);
+                }
+            }
+        }
+        /**
+         * @return a supplier calling {@code s} on the calling thread, and interrupting it once {@code timeout} elapsed, in which
+         * case it throws a {@link java.util.concurrent.TimeoutException}. Only calls which respond to interrupts can be cut short:
+         * blocking reads of classic {@link java.net.Socket} streams ignore interrupts and keep blocking past the timeout, so
+         * they need {@link java.net.Socket#setSoTimeout(int)} instead. An interrupt the thread had before the call is kept.
+         */
+        public static <O> ExceptionThrowingSupplier<O> withTimeout(ExceptionThrowingSupplier<O> s, Duration timeout) {
+            return new Timeouts.TimeoutSupplier<>(s, timeout);
+        }
+
+        /**
+         * @return a supplier calling {@code s}, whose metrics and failure logging state are keyed by {@code name} instead of the
+         * supplier itself, so the suppliers sharing a name share them; {@code name} also stands for the supplier in log messages.
+         */
+        public static <O> ExceptionThrowingSupplier<O> named(String name, ExceptionThrowingSupplier<O> s) {
+            return new NamedMappers.NamedSupplier<>(name, s);
+        }
+
         public static <O> Optional<O> returnOptional(ExceptionThrowingSupplier<O> s) {
             return Optional.ofNullable(handleException(s, e -> {
-                LOG.warn("{}", runtimeExceptionText(e, s));
+                if(LOG.isWarnEnabled() && failureLogger.shouldLogReturnOptional(s, e))
+                    LOG.warn("{}", runtimeExceptionText(e, s));
                 return null;
             }));
         }
@@ -138,15 +308,28 @@ public class StreamExtensions {
             }
         }
 
+        /**
+         * Like {@link #handleException(ExceptionThrowingTriFunction, Object, Object, Object, PolyFunction)}, but passes the Exception
+         * and the inputs to {@code ef} as typed arguments, without allocating an array.
+         */
+        public static <I1, I2, I3, O> O handleException(ExceptionThrowingTriFunction<I1, I2, I3, O> f, I1 i1, I2 i2, I3 i3,
+                                                        QuadFunction<Exception, I1, I2, I3, O> ef) {
+            try {
+                return f.apply(i1, i2, i3);
+            } catch(Exception e) {
+                return ef.apply(e, i1, i2, i3);
+            }
+        }
+
         public static <I, O> O throwRuntimeException(ExceptionThrowingFunction<I, O> f, I i) {
             return handleException(f, i, (e, in) -> {
-                throw new RuntimeException(runtimeExceptionText(e, f, i));
+                throw new WrappedCheckedException(e, f, i);
             });
         }
 
         public static <I1, I2, O> O throwRuntimeException(ExceptionThrowingBiFunction<I1, I2, O> f, I1 i1, I2 i2) {
             return handleException(f, i1, i2, (e, in1, in2) -> {
-                throw new RuntimeException(runtimeExceptionText(e, f, i1, i2));
+                throw new WrappedCheckedException(e, f, i1, i2);
             });
         }
 
@@ -155,21 +338,66 @@ public class StreamExtensions {
         }
 
         public static <I1, I2, I3, O> O throwRuntimeException(ExceptionThrowingTriFunction<I1, I2, I3, O> f, I1 i1, I2 i2, I3 i3) {
-            return handleException(f, i1, i2, i3, (PolyFunction<Object, O>) ((Object[] inputs) -> {
-                throw new RuntimeException(runtimeExceptionText((Exception)inputs[0], f, i1, i2, i3));
-            }));
+            return handleException(f, i1, i2, i3, (e, in1, in2, in3) -> {
+                throw new WrappedCheckedException(e, f, i1, i2, i3);
+            });
+        }
+
+        /**
+         * Calls the function until it succeeds or the policy gives up, sleeping between attempts.
+         * @throws WrappedCheckedException caused by the last Exception when the policy gives up, or the thread is interrupted while waiting.
+         */
+        public static <I, O> O retry(ExceptionThrowingFunction<I, O> f, I i, RetryPolicy policy) {
+            final long start = System.nanoTime();
+            for(int attempt = 1; ; attempt++) {
+                try {
+                    return f.apply(i);
+                } catch(Exception e) {
+                    final long delay = policy.retryDelayNanos(e, attempt, System.nanoTime() - start);
+                    if(delay < 0 || !sleepBeforeRetry(delay))
+                        throw new WrappedCheckedException(e, f, i);
+                }
+            }
+        }
+
+        /**
+         * @return a {@link CachedFunction} caching the results of the function as specified by {@code spec}.
+         */
+        public static <I, O> CachedFunction<I, O> cached(ExceptionThrowingFunction<I, O> f, CacheSpec spec) {
+            return new CachedFunction<>(f, spec);
+        }
+
+        /**
+         * @return a function calling {@code f} on the calling thread, and interrupting it once {@code timeout} elapsed, in which
+         * case it throws a {@link java.util.concurrent.TimeoutException}. Only calls which respond to interrupts can be cut short:
+         * blocking reads of classic {@link java.net.Socket} streams ignore interrupts and keep blocking past the timeout, so
+         * they need {@link java.net.Socket#setSoTimeout(int)} instead. An interrupt the thread had before the call is kept.
+         */
+        public static <I, O> ExceptionThrowingFunction<I, O> withTimeout(ExceptionThrowingFunction<I, O> f, Duration timeout) {
+            return new Timeouts.TimeoutFunction<>(f, timeout);
+        }
+
+        /**
+         * @return a function calling {@code f}, whose metrics and failure logging state are keyed by {@code name} instead of the
+         * function itself, so the functions sharing a name share them, e.g. the capturing lambdas created anew for every call;
+         * {@code name} also stands for the function in log messages.
+         */
+        public static <I, O> ExceptionThrowingFunction<I, O> named(String name, ExceptionThrowingFunction<I, O> f) {
+            return new NamedMappers.NamedFunction<>(name, f);
         }
 
         public static <I, O> Optional<O> returnOptional(ExceptionThrowingFunction<I, O> f, I i) {
             return Optional.ofNullable(handleException(f, i, (e, in) -> {
-                LOG.warn("{}", runtimeExceptionText(e, f, i));
+                if(LOG.isWarnEnabled() && failureLogger.shouldLogReturnOptional(f, e))
+                    LOG.warn("{}", runtimeExceptionText(e, f, i));
                 return null;
             }));
         }
 
         public static <I1, I2, O> Optional<O> returnOptional(ExceptionThrowingBiFunction<I1, I2, O> f, I1 i1, I2 i2) {
             return Optional.ofNullable(handleException(f, i1, i2, (e, in1, in2) -> {
-                LOG.warn("{}", runtimeExceptionText(e, f, i1, i2));
+                if(LOG.isWarnEnabled() && failureLogger.shouldLogReturnOptional(f, e))
+                    LOG.warn("{}", runtimeExceptionText(e, f, i1, i2));
                 return null;
             }));
         }
@@ -179,45 +407,587 @@ public class StreamExtensions {
         }
 
         public static <I1, I2, I3, O> Optional<O> returnOptional(ExceptionThrowingTriFunction<I1, I2, I3, O> f, I1 i1, I2 i2, I3 i3) {
-            return Optional.ofNullable(handleException(f, i1, i2, i3, (PolyFunction<Object, O>) ((Object[] inputs) -> {
-                LOG.warn("{}", runtimeExceptionText((Exception)inputs[0], f, i1, i2, i3));
+            return Optional.ofNullable(handleException(f, i1, i2, i3, (e, in1, in2, in3) -> {
+                if(LOG.isWarnEnabled() && failureLogger.shouldLogReturnOptional(f, e))
+                    LOG.warn("{}", runtimeExceptionText(e, f, i1, i2, i3));
                 return null;
-            })));
+            }));
         }
     }
 
     // ==== Stream Mappers ===== //
 
     public static <I, O> Stream<O> removeExceptionsFromStream(Stream<I> stream, ExceptionThrowingFunction<I, O> mapper) {
-        return stream
-                .map(i -> {
-                    final Optional<O> o = returnOptional(mapper, i);
-                    if(!o.isPresent())
-                        LOG.warn("Element {} will be removed from the stream as it caused an exception in {}!", i, mapper);
-                    return o;
-                })
-                .filter(o -> o.isPresent())
-                .map(o -> o.get());
+        final StreamExtensionsMetrics metrics = getMetrics();
+        return mapRemovingExceptions(stream, mapper, dropAndLog(mapper, metrics), metrics);
+    }
+
+    /**
+     * Like {@link #removeExceptionsFromStream(Stream, ExceptionThrowingFunction)}, but keys the metrics and failure logging state
+     * of the mapper by {@code name}; see {@link FunctionExtensions#named(String, ExceptionThrowingFunction)}.
+     */
+    public static <I, O> Stream<O> removeExceptionsFromStream(Stream<I> stream, String name, ExceptionThrowingFunction<I, O> mapper) {
+        return removeExceptionsFromStream(stream, FunctionExtensions.named(name, mapper));
+    }
+
+    /**
+     * Like {@link #removeExceptionsFromStream(Stream, ExceptionThrowingFunction)}, but keeps the encounter order of the source Stream
+     * only as requested by {@code ordering}.
+     */
+    public static <I, O> Stream<O> removeExceptionsFromStream(Stream<I> stream, ExceptionThrowingFunction<I, O> mapper, Ordering ordering) {
+        final StreamExtensionsMetrics metrics = getMetrics();
+        return mapRemovingExceptions(stream, mapper, dropAndLog(mapper, metrics), metrics, ordering.keepsOrderOf(stream));
     }
 
+    /**
+     * Like {@link #removeExceptionsFromStream(Stream, ExceptionThrowingFunction)}, but an input whose mapping takes longer than
+     * {@code timeout} is interrupted and removed as well; see {@link FunctionExtensions#withTimeout(ExceptionThrowingFunction, Duration)}.
+     */
+    public static <I, O> Stream<O> removeExceptionsFromStream(Stream<I> stream, ExceptionThrowingFunction<I, O> mapper, Duration timeout) {
+        return removeExceptionsFromStream(stream, FunctionExtensions.withTimeout(mapper, timeout));
+    }
+
+    /**
+     * Like {@link #removeExceptionsFromStream(Stream, ExceptionThrowingFunction)}, but retries the inputs which caused Exceptions
+     * according to the provided policy; see {@link #removeExceptionsFromStream(Stream, ExceptionThrowingFunction, RetryPolicy, DiConsumer)}.
+     */
+    public static <I, O> Stream<O> removeExceptionsFromStream(Stream<I> stream, ExceptionThrowingFunction<I, O> mapper, RetryPolicy policy) {
+        return removeExceptionsFromStream(stream, mapper, policy, dropAndLog(mapper, getMetrics()));
+    }
+
+    /**
+     * Maps the provided Stream using the provided mapping Function, retrying the inputs which caused Exceptions according to the
+     * provided policy.<br/>
+     * A failed input is not retried in place: it waits for its backoff while the following inputs are mapped, and is retried in a
+     * later batch, so the returned Stream is not ordered. Inputs which still fail when the policy gives up, or were mapped to
+     * {@code null}, are removed from the returned Stream and passed to {@code failureHandler}.
+     */
+    public static <I, O> Stream<O> removeExceptionsFromStream(Stream<I> stream, ExceptionThrowingFunction<I, O> mapper, RetryPolicy policy,
+                                                              DiConsumer<Exception, I> failureHandler) {
+        return StreamSupport.stream(new RetryingSpliterator<>(stream.spliterator(), mapper, policy, failureHandler), stream.isParallel())
+                .onClose(stream::close);
+    }
+
+    /**
+     * Note that the returned Stream of bad inputs is only populated as the returned Stream of outputs is consumed,
+     * so the outputs must be consumed first.
+     */
     public static <I, O> Tuple<Stream<O>, Stream<I>> splitExceptionsFromStream(Stream<I> stream, ExceptionThrowingFunction<I, O> mapper) {
+        return splitExceptionsFromStream(stream, mapper, Ordering.ORDERED);
+    }
+
+    /**
+     * Like {@link #splitExceptionsFromStream(Stream, ExceptionThrowingFunction)}, but keeps the encounter order of the source Stream
+     * in the returned Stream of outputs only as requested by {@code ordering}. The bad inputs of a parallel Stream are never ordered.
+     */
+    public static <I, O> Tuple<Stream<O>, Stream<I>> splitExceptionsFromStream(Stream<I> stream, ExceptionThrowingFunction<I, O> mapper,
+                                                                                Ordering ordering) {
         final ConcurrentLinkedQueue<I> badInputs = new ConcurrentLinkedQueue<>();
+        final StreamExtensionsMetrics metrics = getMetrics();
         return new Tuple<Stream<O>, Stream<I>>(
-                stream
-                    .map(i -> {
-                        final Optional<O> o = returnOptional(mapper, i);
-                        if(!o.isPresent()) {
-                            LOG.warn("Element {} will be removed from the stream as it caused an exception in {}!", i, mapper);
-                            badInputs.add(i);
-                        }
-                        return o;
-                    })
-                    .filter(o -> o.isPresent())
-                    .map(o -> o.get()),
+                mapRemovingExceptions(stream, mapper, (e, i) -> {
+                    metrics.recordSplit(mapper);
+                    logRemovedElement(e, i, mapper);
+                    badInputs.add(i);
+                }, metrics, ordering.keepsOrderOf(stream)),
                 badInputs.stream()
         );
     }
 
+    /**
+     * Like {@link #splitExceptionsFromStream(Stream, ExceptionThrowingFunction)}, but the inputs which caused Exceptions are passed
+     * to {@code deadLetterSink} along with their Exception as the outputs are consumed, instead of being buffered without bound.
+     */
+    public static <I, O> Stream<O> splitExceptionsFromStream(Stream<I> stream, ExceptionThrowingFunction<I, O> mapper, DeadLetterSink<I> deadLetterSink) {
+        final StreamExtensionsMetrics metrics = getMetrics();
+        return mapRemovingExceptions(stream, mapper, (e, i) -> {
+            metrics.recordSplit(mapper);
+            logRemovedElement(e, i, mapper);
+            deadLetterSink.accept(e, i);
+        }, metrics);
+    }
+
+    /**
+     * Combines the elements at the same position of the provided Streams, logging the pairs which caused Exceptions; see
+     * {@link #zip(Stream, Stream, ExceptionThrowingBiFunction, TriConsumer)}.
+     */
+    public static <A, B, O> Stream<O> zip(Stream<A> a, Stream<B> b, ExceptionThrowingBiFunction<A, B, O> combiner) {
+        final StreamExtensionsMetrics metrics = getMetrics();
+        return zip(a, b, combiner, (e, i1, i2) -> {
+            metrics.recordDropped(combiner);
+            logRemovedElement(e, new Tuple<>(i1, i2), combiner);
+        });
+    }
+
+    /**
+     * Combines the elements at the same position of the provided Streams using the provided combining Function, until either
+     * Stream ends. Pairs which caused Exceptions or were combined to {@code null} are removed from the returned Stream, and passed
+     * to {@code failureHandler}.<br/>
+     * The returned Stream is parallel if {@code a} is, and then makes {@code b} parallel as well; it splits when both Streams are
+     * {@code SIZED} with the same size, as Streams of arrays, Lists and ranges are, and is processed sequentially otherwise.
+     */
+    @SuppressWarnings("unchecked")
+    public static <A, B, O> Stream<O> zip(Stream<A> a, Stream<B> b, ExceptionThrowingBiFunction<A, B, O> combiner,
+                                          TriConsumer<Exception, A, B> failureHandler) {
+        return StreamSupport.stream(new ZipSpliterator<>(new Spliterator<?>[]{a.spliterator(), sameMode(a, b).spliterator()},
+                values -> combiner.apply((A) values[0], (B) values[1]), combiner,
+                (e, values) -> failureHandler.accept(e, (A) values[0], (B) values[1]), getMetrics()), a.isParallel())
+                .onClose(a::close)
+                .onClose(b::close);
+    }
+
+    /**
+     * Combines the elements at the same position of the provided Streams, logging the triples which caused Exceptions; see
+     * {@link #zip(Stream, Stream, Stream, ExceptionThrowingTriFunction, PolyConsumer)}.
+     */
+    public static <A, B, C, O> Stream<O> zip(Stream<A> a, Stream<B> b, Stream<C> c, ExceptionThrowingTriFunction<A, B, C, O> combiner) {
+        final StreamExtensionsMetrics metrics = getMetrics();
+        return zip(a, b, c, combiner, failure -> {
+            metrics.recordDropped(combiner);
+            logRemovedElement((Exception) failure[0], Arrays.asList(failure).subList(1, failure.length), combiner);
+        });
+    }
+
+    /**
+     * Combines the elements at the same position of the provided Streams like {@link #zip(Stream, Stream, ExceptionThrowingBiFunction, TriConsumer)}.
+     * Triples which caused Exceptions or were combined to {@code null} are passed to {@code failureHandler} as the Exception
+     * (or {@code null}) followed by the three elements.
+     */
+    @SuppressWarnings("unchecked")
+    public static <A, B, C, O> Stream<O> zip(Stream<A> a, Stream<B> b, Stream<C> c, ExceptionThrowingTriFunction<A, B, C, O> combiner,
+                                             PolyConsumer<Object> failureHandler) {
+        return StreamSupport.stream(new ZipSpliterator<>(new Spliterator<?>[]{a.spliterator(), sameMode(a, b).spliterator(),
+                sameMode(a, c).spliterator()},
+                values -> combiner.apply((A) values[0], (B) values[1], (C) values[2]), combiner,
+                (e, values) -> failureHandler.accept(e, values[0], values[1], values[2]), getMetrics()), a.isParallel())
+                .onClose(a::close)
+                .onClose(b::close)
+                .onClose(c::close);
+    }
+
+    /**
+     * Joins the provided Streams by key, logging the pairs which caused Exceptions; see
+     * {@link #hashJoin(Stream, Stream, ExceptionThrowingFunction, ExceptionThrowingFunction, ExceptionThrowingBiFunction, TriConsumer)}.
+     */
+    public static <L, R, K, O> Stream<O> hashJoin(Stream<L> probe, Stream<R> build, ExceptionThrowingFunction<L, K> probeKey,
+                                                  ExceptionThrowingFunction<R, K> buildKey, ExceptionThrowingBiFunction<L, R, O> combiner) {
+        final StreamExtensionsMetrics metrics = getMetrics();
+        return hashJoin(probe, build, probeKey, buildKey, combiner, (e, l, r) -> {
+            metrics.recordDropped(combiner);
+            logRemovedElement(e, new Tuple<>(l, r), combiner);
+        });
+    }
+
+    /**
+     * Inner-joins the elements of the provided Streams having equal keys, combining every matching pair using the provided
+     * combining Function, in the encounter order of {@code probe} then {@code build}.<br/>
+     * Only {@code build} is held in memory, as a hash table read on the first use of the returned Stream, so it should be the
+     * smaller Stream; {@code probe} is streamed through, and the returned Stream splits like it and is parallel if it is.
+     * Elements with a {@code null} key match nothing, and {@code probe} is not read at all if {@code build} is empty.<br/>
+     * Pairs which caused Exceptions or were combined to {@code null} are removed from the returned Stream, and passed to
+     * {@code failureHandler}; an element whose key caused an Exception is passed with {@code null} in place of the other element.
+     */
+    public static <L, R, K, O> Stream<O> hashJoin(Stream<L> probe, Stream<R> build, ExceptionThrowingFunction<L, K> probeKey,
+                                                  ExceptionThrowingFunction<R, K> buildKey, ExceptionThrowingBiFunction<L, R, O> combiner,
+                                                  TriConsumer<Exception, L, R> failureHandler) {
+        return StreamSupport.stream(new HashJoinSpliterator<>(probe.spliterator(), build.spliterator(), probeKey, buildKey, combiner,
+                failureHandler, getMetrics()), probe.isParallel())
+                .onClose(probe::close)
+                .onClose(build::close);
+    }
+
+    /**
+     * Aggregates the values of the elements of the provided Stream over windows of a number of elements; see
+     * {@link #aggregateWindows(Stream, WindowSpec, ExceptionThrowingToLongFunction, ExceptionThrowingToDoubleFunction, DiConsumer)}.
+     */
+    public static <I> Stream<WindowAggregate> aggregateWindows(Stream<I> stream, WindowSpec spec, ExceptionThrowingToDoubleFunction<I> value) {
+        return aggregateWindows(stream, spec, null, value, dropAndLog(value, getMetrics()));
+    }
+
+    /**
+     * Aggregates the values of the elements of the provided Stream over windows of timestamps in milliseconds; see
+     * {@link #aggregateWindows(Stream, WindowSpec, ExceptionThrowingToLongFunction, ExceptionThrowingToDoubleFunction, DiConsumer)}.
+     */
+    public static <I> Stream<WindowAggregate> aggregateWindows(Stream<I> stream, WindowSpec spec, ExceptionThrowingToLongFunction<I> timestamp,
+                                                               ExceptionThrowingToDoubleFunction<I> value) {
+        return aggregateWindows(stream, spec, timestamp, value, dropAndLog(value, getMetrics()));
+    }
+
+    /**
+     * Aggregates the values of the elements of the provided Stream incrementally over tumbling or sliding windows, returning
+     * a Stream of the count, sum, minimum and maximum of every window holding elements, in encounter order.<br/>
+     * Elements whose timestamp or value caused an Exception are counted in the failure count of their window, and passed to
+     * {@code failureHandler}. The returned Stream is processed sequentially, as windows depend on the encounter order.
+     * @param timestamp the timestamp extractor for windows over timestamps, or {@code null} for windows over numbers of elements.
+     * @throws IllegalArgumentException if a timestamp extractor is supplied for windows over numbers of elements, or the other way round.
+     */
+    public static <I> Stream<WindowAggregate> aggregateWindows(Stream<I> stream, WindowSpec spec, ExceptionThrowingToLongFunction<I> timestamp,
+                                                               ExceptionThrowingToDoubleFunction<I> value, DiConsumer<Exception, I> failureHandler) {
+        return StreamSupport.stream(new WindowingSpliterator<>(stream.spliterator(), spec, timestamp, value, failureHandler, getMetrics()), false)
+                .onClose(stream::close);
+    }
+
+    /**
+     * Maps the lines of a file using the provided mapping Function, removing any lines which caused Exceptions; see
+     * {@link #lines(Path, Charset, ExceptionThrowingFunction, DiConsumer)}.
+     */
+    public static <O> Stream<O> lines(Path path, Charset charset, ExceptionThrowingFunction<CharSequence, O> mapper) throws IOException {
+        return lines(path, charset, mapper, dropAndLog(mapper, getMetrics()));
+    }
+
+    /**
+     * Maps the lines of a memory-mapped file using the provided mapping Function, like {@link Files#lines(Path, Charset)} followed by
+     * {@link #removeExceptionsFromStream(Stream, ExceptionThrowingFunction)}.<br/>
+     * The returned Stream is sequential; once made parallel it splits the file into byte ranges of balanced sizes on line boundaries.
+     * The lines are passed to the mapper as a {@link CharSequence} view of the mapped bytes where possible, which is reused for
+     * the next line, so the mapper must copy it (e.g. with {@code toString()}) to keep it.<br/>
+     * Lines which could not be decoded, caused Exceptions or were mapped to {@code null} are removed from the returned Stream, and
+     * passed to {@code failureHandler} as their byte offset in the file paired with their text.<br/>
+     * Lines are terminated by {@code \n} or {@code \r\n}. The returned Stream must be closed to close the file.
+     * @throws IllegalArgumentException if a line feed is not a single {@code \n} byte in the charset, e.g. in UTF-16.
+     */
+    public static <O> Stream<O> lines(Path path, Charset charset, ExceptionThrowingFunction<CharSequence, O> mapper,
+                                      DiConsumer<Exception, Tuple<Long, String>> failureHandler) throws IOException {
+        MappedLinesSpliterator.checkSupported(charset);
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return StreamSupport.stream(new MappedLinesSpliterator<>(channel, 0, channel.size(), charset, mapper, failureHandler, getMetrics()), false)
+                    .onClose(() -> {
+                        try {
+                            channel.close();
+                        } catch(IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+        } catch(IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Maps the provided Stream on lanes partitioned by key, logging the elements which caused Exceptions; see
+     * {@link #mapByKey(Stream, ExceptionThrowingFunction, ExceptionThrowingFunction, LaneSpec, DiConsumer)}.
+     */
+    public static <I, K, O> Stream<O> mapByKey(Stream<I> stream, ExceptionThrowingFunction<I, K> key, ExceptionThrowingFunction<I, O> mapper,
+                                               LaneSpec spec) {
+        return mapByKey(stream, key, mapper, spec, dropAndLog(mapper, getMetrics()));
+    }
+
+    /**
+     * Maps the provided Stream on {@code spec.getLanes()} dedicated single-threaded lanes, hashing every element onto a lane by its key:
+     * the elements of a key are mapped one at a time in encounter order, and their outputs are emitted in that order, while the
+     * elements of different keys are mapped in parallel.<br/>
+     * Elements whose key or mapping caused an Exception, or which were mapped to {@code null}, are removed from the returned Stream and
+     * passed to {@code failureHandler} on the consuming thread; with {@link LaneSpec#pausingKeysOnFailure()}, the later elements of
+     * their key are removed as well.<br/>
+     * The returned Stream is processed sequentially by the consuming thread, which feeds the lanes; it must be consumed or closed
+     * to stop the lanes.
+     */
+    public static <I, K, O> Stream<O> mapByKey(Stream<I> stream, ExceptionThrowingFunction<I, K> key, ExceptionThrowingFunction<I, O> mapper,
+                                               LaneSpec spec, DiConsumer<Exception, I> failureHandler) {
+        return mapByKey(stream, key, mapper, mapper, spec, failureHandler);
+    }
+
+    /**
+     * Like {@link #mapByKey(Stream, ExceptionThrowingFunction, ExceptionThrowingFunction, LaneSpec, DiConsumer)}, but records the
+     * calls under {@code metricsKey} rather than {@code mapper}.
+     */
+    private static <I, K, O> Stream<O> mapByKey(Stream<I> stream, ExceptionThrowingFunction<I, K> key, ExceptionThrowingFunction<I, O> mapper,
+                                                Object metricsKey, LaneSpec spec, DiConsumer<Exception, I> failureHandler) {
+        final KeyPartitionedSpliterator<I, K, O> spliterator = new KeyPartitionedSpliterator<>(stream.spliterator(), key, mapper, metricsKey,
+                spec, failureHandler, getMetrics());
+        return StreamSupport.stream(spliterator, false)
+                .onClose(spliterator::cancel)
+                .onClose(stream::close);
+    }
+
+    /**
+     * Maps a resumable source, logging the elements which caused Exceptions; see
+     * {@link #mapCheckpointed(LongFunction, ExceptionThrowingFunction, CheckpointSpec, DiConsumer)}.
+     */
+    public static <I, O> Stream<O> mapCheckpointed(LongFunction<Stream<I>> source, ExceptionThrowingFunction<I, O> mapper,
+                                                   CheckpointSpec spec) throws IOException {
+        return mapCheckpointed(source, mapper, spec, dropAndLog(mapper, getMetrics()));
+    }
+
+    /**
+     * Maps the Stream returned by {@code source} like {@link #removeExceptionsFromStream(Stream, ExceptionThrowingFunction)}, saving a
+     * {@link Checkpoint} of its progress to {@code spec.getFile()} every {@code spec.getInterval()} elements, so that a job which died
+     * can be resumed from its last checkpoint instead of from the start.<br/>
+     * {@code source} is called with the position to resume from, i.e. the number of elements already processed, which is 0 on the
+     * first run, and must return the elements of the source from that position on, e.g. by skipping lines or seeking in a file.
+     * If the saved checkpoint is complete, the returned Stream is empty. The success and failure counts carry over from run to run.<br/>
+     * Checkpoints are written asynchronously, through a temporary file which is atomically renamed. The last checkpoint is written
+     * when the returned Stream ends or is closed, which throws an {@link UncheckedIOException} if any checkpoint could not be written.
+     * Elements processed after the last checkpoint before a crash are processed again on resume.<br/>
+     * When {@code failureHandler} is a {@link BoundedDeadLetterSink} with a spill file, its dead letters are spilled before every
+     * checkpoint, and its spill file is recorded in the checkpoint.<br/>
+     * The returned Stream is processed sequentially, as positions depend on the encounter order.
+     * @throws IOException if the saved checkpoint could not be read.
+     */
+    public static <I, O> Stream<O> mapCheckpointed(LongFunction<Stream<I>> source, ExceptionThrowingFunction<I, O> mapper,
+                                                   CheckpointSpec spec, DiConsumer<Exception, I> failureHandler) throws IOException {
+        final Checkpoint start = Checkpoint.read(spec.getFile()).orElse(Checkpoint.START);
+        if(start.isComplete())
+            return Stream.empty();
+        final Stream<I> stream = source.apply(start.getPosition());
+        final CheckpointingSpliterator<I, O> spliterator = new CheckpointingSpliterator<>(stream.spliterator(), start, mapper, failureHandler,
+                spec, AsyncExecutors.defaultExecutor(), getMetrics());
+        return StreamSupport.stream(spliterator, false)
+                .onClose(stream::close)
+                .onClose(() -> spliterator.finish(false));
+    }
+
+    /**
+     * Maps the provided Stream asynchronously on a shared Executor, which runs every call on a virtual thread when the runtime
+     * supports it; see {@link #mapAsync(Stream, ExceptionThrowingFunction, int, Executor, boolean, DiConsumer)}.
+     */
+    public static <I, O> Stream<O> mapAsync(Stream<I> stream, ExceptionThrowingFunction<I, O> mapper, int maxConcurrency) {
+        return mapAsync(stream, mapper, maxConcurrency, AsyncExecutors.defaultExecutor());
+    }
+
+    /**
+     * Maps the provided Stream asynchronously in encounter order, removing any inputs which caused Exceptions;
+     * see {@link #mapAsync(Stream, ExceptionThrowingFunction, int, Executor, boolean, DiConsumer)}.
+     */
+    public static <I, O> Stream<O> mapAsync(Stream<I> stream, ExceptionThrowingFunction<I, O> mapper, int maxConcurrency, Executor executor) {
+        return mapAsync(stream, mapper, maxConcurrency, executor, true, dropAndLog(mapper, getMetrics()));
+    }
+
+    /**
+     * Maps the provided Stream using the provided mapping Function on the provided Executor, with at most {@code maxConcurrency}
+     * calls outstanding, which suits mapping Functions doing blocking I/O.<br/>
+     * If {@code ordered}, the outputs keep the encounter order of the inputs, otherwise they are returned as they complete.<br/>
+     * Inputs which caused Exceptions, or were mapped to {@code null}, are removed from the returned Stream and passed to
+     * {@code failureHandler} on the thread consuming the returned Stream. The returned Stream is sequential, and closing it
+     * cancels the outstanding calls.
+     */
+    public static <I, O> Stream<O> mapAsync(Stream<I> stream, ExceptionThrowingFunction<I, O> mapper, int maxConcurrency, Executor executor,
+                                            boolean ordered, DiConsumer<Exception, I> failureHandler) {
+        final AsyncMappingSpliterator<I, O> spliterator = new AsyncMappingSpliterator<>(stream.spliterator(), mapper, maxConcurrency, executor, ordered, failureHandler);
+        return StreamSupport.stream(spliterator, false)
+                .onClose(spliterator::cancel)
+                .onClose(stream::close);
+    }
+
+    /**
+     * Maps the provided Stream in batches, removing any inputs which caused Exceptions;
+     * see {@link #mapBatched(Stream, int, Duration, ExceptionThrowingFunction, DiConsumer)}.
+     */
+    public static <I, O> Stream<O> mapBatched(Stream<I> stream, int batchSize, Duration maxLinger, ExceptionThrowingFunction<List<I>, List<O>> mapper) {
+        return mapBatched(stream, batchSize, maxLinger, mapper, dropAndLog(mapper, getMetrics()));
+    }
+
+    /**
+     * Maps the provided Stream in batches of up to {@code batchSize} inputs, using a mapping Function which returns the outputs
+     * of a List of inputs in the same order, e.g. a bulk insert or a batch RPC.<br/>
+     * A batch is mapped once full, or once {@code maxLinger} elapsed since its first input arrived ({@code null} to wait for a
+     * full batch). The Stream is pull-based, so the deadline is only checked before pulling the next input: while the source
+     * blocks, the batch waits with it, and is mapped together with the input which ends the wait. When a batch fails, it is
+     * bisected until the failing inputs are isolated; those, and the inputs mapped to {@code null}, are removed from the returned
+     * Stream and passed to {@code failureHandler}. In parallel Streams every split of the source is batched on its own.
+     */
+    public static <I, O> Stream<O> mapBatched(Stream<I> stream, int batchSize, Duration maxLinger, ExceptionThrowingFunction<List<I>, List<O>> mapper,
+                                              DiConsumer<Exception, I> failureHandler) {
+        final long maxLingerNanos = maxLinger == null ? Long.MAX_VALUE : maxLinger.toNanos();
+        return StreamSupport.stream(new BatchingSpliterator<>(stream.spliterator(), batchSize, maxLingerNanos, mapper, failureHandler), stream.isParallel())
+                .onClose(stream::close);
+    }
+
+    /**
+     * Maps the provided Stream to an IntStream, logging the elements which caused Exceptions; see
+     * {@link #removeExceptionsMapToInt(Stream, ExceptionThrowingToIntFunction, DiConsumer)}.
+     */
+    public static <I> IntStream removeExceptionsMapToInt(Stream<I> stream, ExceptionThrowingToIntFunction<I> mapper) {
+        return removeExceptionsMapToInt(stream, mapper, dropAndLog(mapper, getMetrics()));
+    }
+
+    /**
+     * Like {@link #removeExceptionsFromStream(Stream, ExceptionThrowingFunction)}, but maps to {@code int} values without boxing them.
+     * Elements which caused Exceptions are removed from the returned IntStream, and passed to {@code failureHandler}.
+     */
+    public static <I> IntStream removeExceptionsMapToInt(Stream<I> stream, ExceptionThrowingToIntFunction<I> mapper, DiConsumer<Exception, I> failureHandler) {
+        return StreamSupport.intStream(new PrimitiveExceptionFilteringSpliterators.ToInt<>(stream.spliterator(), mapper, failureHandler, getMetrics()),
+                stream.isParallel())
+                .onClose(stream::close);
+    }
+
+    /**
+     * Maps the provided Stream to a LongStream, logging the elements which caused Exceptions; see
+     * {@link #removeExceptionsMapToLong(Stream, ExceptionThrowingToLongFunction, DiConsumer)}.
+     */
+    public static <I> LongStream removeExceptionsMapToLong(Stream<I> stream, ExceptionThrowingToLongFunction<I> mapper) {
+        return removeExceptionsMapToLong(stream, mapper, dropAndLog(mapper, getMetrics()));
+    }
+
+    /**
+     * Like {@link #removeExceptionsFromStream(Stream, ExceptionThrowingFunction)}, but maps to {@code long} values without boxing them.
+     * Elements which caused Exceptions are removed from the returned LongStream, and passed to {@code failureHandler}.
+     */
+    public static <I> LongStream removeExceptionsMapToLong(Stream<I> stream, ExceptionThrowingToLongFunction<I> mapper, DiConsumer<Exception, I> failureHandler) {
+        return StreamSupport.longStream(new PrimitiveExceptionFilteringSpliterators.ToLong<>(stream.spliterator(), mapper, failureHandler, getMetrics()),
+                stream.isParallel())
+                .onClose(stream::close);
+    }
+
+    /**
+     * Maps the provided Stream to a DoubleStream, logging the elements which caused Exceptions; see
+     * {@link #removeExceptionsMapToDouble(Stream, ExceptionThrowingToDoubleFunction, DiConsumer)}.
+     */
+    public static <I> DoubleStream removeExceptionsMapToDouble(Stream<I> stream, ExceptionThrowingToDoubleFunction<I> mapper) {
+        return removeExceptionsMapToDouble(stream, mapper, dropAndLog(mapper, getMetrics()));
+    }
+
+    /**
+     * Like {@link #removeExceptionsFromStream(Stream, ExceptionThrowingFunction)}, but maps to {@code double} values without boxing them.
+     * Elements which caused Exceptions are removed from the returned DoubleStream, and passed to {@code failureHandler}.
+     */
+    public static <I> DoubleStream removeExceptionsMapToDouble(Stream<I> stream, ExceptionThrowingToDoubleFunction<I> mapper,
+                                                               DiConsumer<Exception, I> failureHandler) {
+        return StreamSupport.doubleStream(new PrimitiveExceptionFilteringSpliterators.ToDouble<>(stream.spliterator(), mapper, failureHandler, getMetrics()),
+                stream.isParallel())
+                .onClose(stream::close);
+    }
+
+    /**
+     * Maps the provided IntStream, logging the values which caused Exceptions; see
+     * {@link #removeExceptionsFromIntStream(IntStream, ExceptionThrowingIntUnaryOperator, ObjIntConsumer)}.
+     */
+    public static IntStream removeExceptionsFromIntStream(IntStream stream, ExceptionThrowingIntUnaryOperator mapper) {
+        final DiConsumer<Exception, Object> dropAndLog = dropAndLog(mapper, getMetrics());
+        return removeExceptionsFromIntStream(stream, mapper, dropAndLog::accept);
+    }
+
+    /**
+     * Maps the provided IntStream using the provided operator without boxing its values. Values which caused Exceptions are removed
+     * from the returned IntStream, and passed to {@code failureHandler}.
+     */
+    public static IntStream removeExceptionsFromIntStream(IntStream stream, ExceptionThrowingIntUnaryOperator mapper, ObjIntConsumer<Exception> failureHandler) {
+        return StreamSupport.intStream(new PrimitiveExceptionFilteringSpliterators.IntUnary(stream.spliterator(), mapper, failureHandler, getMetrics()),
+                stream.isParallel())
+                .onClose(stream::close);
+    }
+
+    /**
+     * Maps the provided LongStream, logging the values which caused Exceptions; see
+     * {@link #removeExceptionsFromLongStream(LongStream, ExceptionThrowingLongUnaryOperator, ObjLongConsumer)}.
+     */
+    public static LongStream removeExceptionsFromLongStream(LongStream stream, ExceptionThrowingLongUnaryOperator mapper) {
+        final DiConsumer<Exception, Object> dropAndLog = dropAndLog(mapper, getMetrics());
+        return removeExceptionsFromLongStream(stream, mapper, dropAndLog::accept);
+    }
+
+    /**
+     * Maps the provided LongStream using the provided operator without boxing its values. Values which caused Exceptions are removed
+     * from the returned LongStream, and passed to {@code failureHandler}.
+     */
+    public static LongStream removeExceptionsFromLongStream(LongStream stream, ExceptionThrowingLongUnaryOperator mapper,
+                                                            ObjLongConsumer<Exception> failureHandler) {
+        return StreamSupport.longStream(new PrimitiveExceptionFilteringSpliterators.LongUnary(stream.spliterator(), mapper, failureHandler, getMetrics()),
+                stream.isParallel())
+                .onClose(stream::close);
+    }
+
+    /**
+     * Maps the provided DoubleStream, logging the values which caused Exceptions; see
+     * {@link #removeExceptionsFromDoubleStream(DoubleStream, ExceptionThrowingDoubleUnaryOperator, ObjDoubleConsumer)}.
+     */
+    public static DoubleStream removeExceptionsFromDoubleStream(DoubleStream stream, ExceptionThrowingDoubleUnaryOperator mapper) {
+        final DiConsumer<Exception, Object> dropAndLog = dropAndLog(mapper, getMetrics());
+        return removeExceptionsFromDoubleStream(stream, mapper, dropAndLog::accept);
+    }
+
+    /**
+     * Maps the provided DoubleStream using the provided operator without boxing its values. Values which caused Exceptions are
+     * removed from the returned DoubleStream, and passed to {@code failureHandler}.
+     */
+    public static DoubleStream removeExceptionsFromDoubleStream(DoubleStream stream, ExceptionThrowingDoubleUnaryOperator mapper,
+                                                                ObjDoubleConsumer<Exception> failureHandler) {
+        return StreamSupport.doubleStream(new PrimitiveExceptionFilteringSpliterators.DoubleUnary(stream.spliterator(), mapper, failureHandler, getMetrics()),
+                stream.isParallel())
+                .onClose(stream::close);
+    }
+
+    /**
+     * A {@link Collector} which maps its inputs using the provided mapping Function and partitions them in a single pass into the
+     * outputs of the successfully mapped inputs and the inputs which caused Exceptions.<br/>
+     * In parallel Streams every thread accumulates into its own buffers, which are only merged when combining.
+     */
+    public static <I, O> Collector<I, ?, SplitResult<I, O>> splitExceptions(ExceptionThrowingFunction<I, O> mapper) {
+        final StreamExtensionsMetrics metrics = getMetrics();
+        final boolean timed = metrics.isEnabled();
+        return Collector.of(
+                SplitResult::new,
+                (SplitResult<I, O> r, I i) -> {
+                    final long start = timed ? System.nanoTime() : 0;
+                    try {
+                        final O o = mapper.apply(i);
+                        if(o != null) {
+                            if(timed)
+                                metrics.recordSuccess(mapper, System.nanoTime() - start);
+                            r.addSuccess(o);
+                            return;
+                        }
+                        if(timed)
+                            metrics.recordFailure(mapper, null, System.nanoTime() - start);
+                        metrics.recordSplit(mapper);
+                        logRemovedElement(null, i, mapper);
+                        r.addFailure(i, null);
+                    } catch(Exception e) {
+                        if(timed)
+                            metrics.recordFailure(mapper, e, System.nanoTime() - start);
+                        metrics.recordSplit(mapper);
+                        logRemovedElement(e, i, mapper);
+                        r.addFailure(i, e);
+                    }
+                },
+                SplitResult::merge,
+                Collector.Characteristics.IDENTITY_FINISH
+        );
+    }
+
+    private static <I, O> Stream<O> mapRemovingExceptions(Stream<I> stream, ExceptionThrowingFunction<I, O> mapper, DiConsumer<Exception, I> failureHandler,
+                                                          StreamExtensionsMetrics metrics) {
+        return mapRemovingExceptions(stream, mapper, failureHandler, metrics, true);
+    }
+
+    private static <I, O> Stream<O> mapRemovingExceptions(Stream<I> stream, ExceptionThrowingFunction<I, O> mapper, DiConsumer<Exception, I> failureHandler,
+                                                          StreamExtensionsMetrics metrics, boolean ordered) {
+        return StreamSupport.stream(new ExceptionFilteringSpliterator<>(stream.spliterator(), mapper, failureHandler, metrics, ordered), stream.isParallel())
+                .onClose(stream::close);
+    }
+
+    private static <T> Stream<T> sameMode(Stream<?> first, Stream<T> other) {
+        return first.isParallel() ? other.parallel() : other;
+    }
+
+    private static boolean sleepBeforeRetry(long delayNanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(delayNanos);
+            return true;
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static <I> DiConsumer<Exception, I> dropAndLog(Object mapper, StreamExtensionsMetrics metrics) {
+        return (e, i) -> {
+            metrics.recordDropped(mapper);
+            logRemovedElement(e, i, mapper);
+        };
+    }
+
+    static void logRemovedElement(Exception e, Object input, Object mapper) {
+        if(!LOG.isWarnEnabled() || !failureLogger.shouldLog(mapper, e))
+            return;
+        if(e == null)
+            LOG.warn("Element {} will be removed from the stream as it was mapped to null by {}!", input, mapper);
+        else
+            LOG.warn("Element {} will be removed from the stream as it caused an exception in {}: {}", input, mapper, e.getMessage());
+    }
+
     public static class Tuple<First, Second> {
         final private First first;
         final private Second second;
@@ -231,25 +1001,50 @@ public class StreamExtensions {
         public Second getSecond() {
             return second;
         }
+        @Override
+        public String toString() {
+            return "(" + first + ", " + second + ")";
+        }
+    }
+
+    protected static String runtimeExceptionText(Exception e, Object funcInt) {
+        return exceptionText(evaluating(funcInt), e);
+    }
+
+    protected static String runtimeExceptionText(Exception e, Object funcInt, Object input) {
+        return exceptionText(evaluating(funcInt).append(" with inputs (").append(input).append(')'), e);
+    }
+
+    protected static String runtimeExceptionText(Exception e, Object funcInt, Object i1, Object i2) {
+        return exceptionText(evaluating(funcInt).append(" with inputs (").append(i1).append(", ").append(i2).append(')'), e);
+    }
+
+    protected static String runtimeExceptionText(Exception e, Object funcInt, Object i1, Object i2, Object i3) {
+        return exceptionText(evaluating(funcInt).append(" with inputs (").append(i1).append(", ").append(i2).append(", ").append(i3).append(')'), e);
     }
 
     protected static String runtimeExceptionText(Exception e, Object funcInt, Object... inputs) {
-        final StringBuilder sb = new StringBuilder();
-        sb
+        final StringBuilder sb = evaluating(funcInt);
+        if(inputs != null && inputs.length > 0) {
+            sb.append(" with inputs (").append(inputs[0]);
+            for(int i = 1; i < inputs.length; i++)
+                sb.append(", ").append(inputs[i]);
+            sb.append(')');
+        }
+        return exceptionText(sb, e);
+    }
+
+    private static StringBuilder evaluating(Object funcInt) {
+        return new StringBuilder(128)
                 .append("Caught an exception when evaluating ")
                 .append(funcInt);
-        if(inputs != null && inputs.length > 0) {
-            sb.append(" with inputs (");
-            Stream.of(inputs)
-                    .forEachOrdered(i -> sb.append(i).append(", "));
-            sb
-                    .delete(sb.length() - 2, Integer.MAX_VALUE)
-                    .append(")");
-        }
-        sb
+    }
+
+    private static String exceptionText(StringBuilder sb, Exception e) {
+        return sb
                 .append(": ")
-                .append(e.getMessage());
-        return sb.toString();
+                .append(e.getMessage())
+                .toString();
     }
 
 }
@@ -0,0 +1,46 @@
+package arash.sepasi.streamextensions;
+
+/**
+ * A service provider interface receiving the outcome of every call made by the Stream mappers of {@link StreamExtensions}.<br/>
+ * An implementation is installed with {@link StreamExtensions#setMetrics(StreamExtensionsMetrics)}, and every Stream stage
+ * keeps the implementation installed when it was created. Calls are keyed by the mapping Function passed to the stage.<br/>
+ * The default, {@link #NOOP}, is disabled: the stages then neither read the clock nor call it.
+ * {@link LongAdderMetrics} is a low-overhead implementation based on {@link java.util.concurrent.atomic.LongAdder} counters.
+ */
+public interface StreamExtensionsMetrics {
+
+    StreamExtensionsMetrics NOOP = new StreamExtensionsMetrics() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    };
+
+    /**
+     * @return whether the stages should time their calls and report them.
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    default void recordSuccess(Object mapper, long nanos) {
+    }
+
+    /**
+     * @param e the Exception thrown by the mapper, or {@code null} if it returned {@code null}
+     */
+    default void recordFailure(Object mapper, Exception e, long nanos) {
+    }
+
+    /**
+     * Records that a failed element was removed from the Stream.
+     */
+    default void recordDropped(Object mapper) {
+    }
+
+    /**
+     * Records that a failed element was split into the failed inputs.
+     */
+    default void recordSplit(Object mapper) {
+    }
+}
@@ -0,0 +1,123 @@
+package arash.sepasi.streamextensions;
+
+import java.time.Duration;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static arash.sepasi.streamextensions.FunctionExtensions.*;
+
+/**
+ * Bounds the execution time of exception-throwing Suppliers and Functions without handing them to another thread.<br/>
+ * The call runs on the calling thread, while a single shared daemon thread schedules a timer which interrupts the calling
+ * thread once the timeout elapsed. The interrupt is delivered at most once and never leaks past the call: if the timer fires,
+ * the call's interrupt status is cleared before returning, and restored if the thread was already interrupted when the call
+ * started. An interrupt arriving from another thread while the timer fires cannot be told apart from the timer's, and is
+ * cleared with it. A call failing after being interrupted by the timer throws a {@link TimeoutException} caused by its own
+ * Exception.<br/>
+ * Only calls which respond to interrupts can be cut short, e.g. sleeping, waiting on locks, futures or queues, and I/O on
+ * interruptible NIO channels. Blocking reads of classic {@link java.net.Socket} streams ignore interrupts, and need a socket timeout instead.
+ */
+final class Timeouts {
+
+    private static final int RUNNING = 0;
+    private static final int DONE = 1;
+    private static final int TIMING_OUT = 2;
+    private static final int TIMED_OUT = 3;
+
+    private Timeouts() {
+    }
+
+    private static class SchedulerHolder {
+        static final ScheduledThreadPoolExecutor SCHEDULER = createScheduler();
+
+        private static ScheduledThreadPoolExecutor createScheduler() {
+            final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, AsyncExecutors.daemonThreadFactory("stream-extensions-timeout"));
+            scheduler.setRemoveOnCancelPolicy(true);
+            return scheduler;
+        }
+    }
+
+    static <O> O call(ExceptionThrowingSupplier<O> s, long timeoutNanos, Object description) throws Exception {
+        final Thread caller = Thread.currentThread();
+        final boolean interrupted = caller.isInterrupted();
+        final AtomicInteger state = new AtomicInteger(RUNNING);
+        final ScheduledFuture<?> timer = SchedulerHolder.SCHEDULER.schedule(() -> {
+            if(state.compareAndSet(RUNNING, TIMING_OUT)) {
+                caller.interrupt();
+                state.set(TIMED_OUT);
+            }
+        }, timeoutNanos, TimeUnit.NANOSECONDS);
+        final O o;
+        try {
+            o = s.get();
+        } catch(Exception e) {
+            if(finish(state, timer, interrupted))
+                throw e;
+            final TimeoutException timeout = new TimeoutException(description + " timed out after " + Duration.ofNanos(timeoutNanos));
+            timeout.initCause(e);
+            throw timeout;
+        }
+        finish(state, timer, interrupted);
+        return o;
+    }
+
+    /**
+     * @return whether the call finished before the timer fired; otherwise, clears the interrupt delivered by the timer, keeping
+     * the one the thread already had if {@code interrupted}.
+     */
+    private static boolean finish(AtomicInteger state, ScheduledFuture<?> timer, boolean interrupted) {
+        if(state.compareAndSet(RUNNING, DONE)) {
+            timer.cancel(false);
+            return true;
+        }
+        while(state.get() != TIMED_OUT)
+            Thread.yield();
+        Thread.interrupted();
+        if(interrupted)
+            Thread.currentThread().interrupt();
+        return false;
+    }
+
+    static class TimeoutSupplier<O> implements ExceptionThrowingSupplier<O> {
+        private final ExceptionThrowingSupplier<O> s;
+        private final long timeoutNanos;
+
+        TimeoutSupplier(ExceptionThrowingSupplier<O> s, Duration timeout) {
+            this.s = s;
+            this.timeoutNanos = timeout.toNanos();
+        }
+
+        @Override
+        public O get() throws Exception {
+            return call(s, timeoutNanos, s);
+        }
+
+        @Override
+        public String toString() {
+            return "withTimeout(" + s + ", " + Duration.ofNanos(timeoutNanos) + ")";
+        }
+    }
+
+    static class TimeoutFunction<I, O> implements ExceptionThrowingFunction<I, O> {
+        private final ExceptionThrowingFunction<I, O> f;
+        private final long timeoutNanos;
+
+        TimeoutFunction(ExceptionThrowingFunction<I, O> f, Duration timeout) {
+            this.f = f;
+            this.timeoutNanos = timeout.toNanos();
+        }
+
+        @Override
+        public O apply(I i) throws Exception {
+            return call(() -> f.apply(i), timeoutNanos, f);
+        }
+
+        @Override
+        public String toString() {
+            return "withTimeout(" + f + ", " + Duration.ofNanos(timeoutNanos) + ")";
+        }
+    }
+}
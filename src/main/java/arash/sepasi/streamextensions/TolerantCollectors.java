@@ -0,0 +1,277 @@
+package arash.sepasi.streamextensions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+import static arash.sepasi.streamextensions.FunctionExtensions.*;
+import static arash.sepasi.streamextensions.StreamExtensions.Tuple;
+
+/**
+ * Counterparts of the {@link Collectors} taking exception-throwing functions, which collect in a single terminal pass without a
+ * {@link StreamExtensions#removeExceptionsFromStream(java.util.stream.Stream, ExceptionThrowingFunction)} stage before them.<br/>
+ * An input which causes an Exception, or is mapped to {@code null}, is left out of the aggregation and reported in the
+ * {@link TolerantResult} along with its Exception; it is logged and reported to the installed {@link StreamExtensionsMetrics}
+ * like in {@link StreamExtensions#splitExceptions(ExceptionThrowingFunction)}, under the first function of the Collector.<br/>
+ * In parallel Streams every thread accumulates into its own container, which are only merged when combining, so no locking
+ * or concurrent maps are needed.
+ */
+public class TolerantCollectors {
+
+    private TolerantCollectors() {
+    }
+
+    /**
+     * Like {@link Collectors#toMap(Function, Function)}: a key mapped twice throws an {@link IllegalStateException}.
+     */
+    public static <I, K, V> Collector<I, ?, TolerantResult<I, Map<K, V>>> toMap(ExceptionThrowingFunction<? super I, ? extends K> keyMapper,
+                                                                              ExceptionThrowingFunction<? super I, ? extends V> valueMapper) {
+        return toMap(keyMapper, valueMapper, (v1, v2) -> {
+            throw new IllegalStateException("Duplicate key for values " + v1 + " and " + v2);
+        });
+    }
+
+    /**
+     * Like {@link Collectors#toMap(Function, Function, BinaryOperator)}.
+     */
+    public static <I, K, V> Collector<I, ?, TolerantResult<I, Map<K, V>>> toMap(ExceptionThrowingFunction<? super I, ? extends K> keyMapper,
+                                                                              ExceptionThrowingFunction<? super I, ? extends V> valueMapper,
+                                                                              BinaryOperator<V> mergeFunction) {
+        return tolerant(
+                HashMap::new,
+                (Map<K, V> m, I i) -> {
+                    final K k = keyMapper.apply(i);
+                    final V v = valueMapper.apply(i);
+                    if(k == null || v == null)
+                        return false;
+                    try {
+                        m.merge(k, v, mergeFunction);
+                    } catch(RuntimeException e) {
+                        throw new DownstreamException(e);
+                    }
+                    return true;
+                },
+                (m1, m2) -> {
+                    m2.forEach((k, v) -> m1.merge(k, v, mergeFunction));
+                    return m1;
+                },
+                Function.identity(),
+                keyMapper);
+    }
+
+    /**
+     * Like {@link Collectors#groupingBy(Function)}.
+     */
+    public static <I, K> Collector<I, ?, TolerantResult<I, Map<K, List<I>>>> groupingBy(ExceptionThrowingFunction<? super I, ? extends K> classifier) {
+        return groupingBy(classifier, Collectors.toList());
+    }
+
+    /**
+     * Like {@link Collectors#groupingBy(Function, Collector)}; only the classifier may throw Exceptions.
+     */
+    public static <I, K, A, D> Collector<I, ?, TolerantResult<I, Map<K, D>>> groupingBy(ExceptionThrowingFunction<? super I, ? extends K> classifier,
+                                                                                      Collector<? super I, A, D> downstream) {
+        final Supplier<A> downstreamSupplier = downstream.supplier();
+        final BiConsumer<A, ? super I> downstreamAccumulator = downstream.accumulator();
+        final BinaryOperator<A> downstreamCombiner = downstream.combiner();
+        return tolerant(
+                HashMap::new,
+                (Map<K, A> m, I i) -> {
+                    final K k = classifier.apply(i);
+                    if(k == null)
+                        return false;
+                    try {
+                        downstreamAccumulator.accept(m.computeIfAbsent(k, key -> downstreamSupplier.get()), i);
+                    } catch(RuntimeException e) {
+                        throw new DownstreamException(e);
+                    }
+                    return true;
+                },
+                (m1, m2) -> {
+                    m2.forEach((k, a) -> m1.merge(k, a, downstreamCombiner));
+                    return m1;
+                },
+                m -> {
+                    final Map<K, D> result = new HashMap<>(m.size() * 4 / 3 + 1);
+                    m.forEach((k, a) -> result.put(k, downstream.finisher().apply(a)));
+                    return result;
+                },
+                classifier);
+    }
+
+    /**
+     * Like {@link Collectors#partitioningBy(java.util.function.Predicate)}.
+     */
+    public static <I> Collector<I, ?, TolerantResult<I, Map<Boolean, List<I>>>> partitioningBy(ExceptionThrowingPredicate<? super I> predicate) {
+        return partitioningBy(predicate, Collectors.toList());
+    }
+
+    /**
+     * Like {@link Collectors#partitioningBy(java.util.function.Predicate, Collector)}; only the predicate may throw Exceptions.
+     */
+    public static <I, A, D> Collector<I, ?, TolerantResult<I, Map<Boolean, D>>> partitioningBy(ExceptionThrowingPredicate<? super I> predicate,
+                                                                                             Collector<? super I, A, D> downstream) {
+        final BiConsumer<A, ? super I> downstreamAccumulator = downstream.accumulator();
+        final BinaryOperator<A> downstreamCombiner = downstream.combiner();
+        return tolerant(
+                () -> new Tuple<A, A>(downstream.supplier().get(), downstream.supplier().get()),
+                (Tuple<A, A> t, I i) -> {
+                    final A a = predicate.test(i) ? t.getFirst() : t.getSecond();
+                    try {
+                        downstreamAccumulator.accept(a, i);
+                    } catch(RuntimeException e) {
+                        throw new DownstreamException(e);
+                    }
+                    return true;
+                },
+                (t1, t2) -> new Tuple<>(downstreamCombiner.apply(t1.getFirst(), t2.getFirst()), downstreamCombiner.apply(t1.getSecond(), t2.getSecond())),
+                t -> {
+                    final Map<Boolean, D> result = new HashMap<>(4);
+                    result.put(true, downstream.finisher().apply(t.getFirst()));
+                    result.put(false, downstream.finisher().apply(t.getSecond()));
+                    return result;
+                },
+                predicate);
+    }
+
+    /**
+     * Like {@link Collectors#reducing(Object, BinaryOperator)}; an input on which the operator throws is left out of the reduction.
+     * @throws WrappedCheckedException if the operator throws when combining the partial results of a parallel Stream.
+     */
+    public static <I> Collector<I, ?, TolerantResult<I, I>> reducing(I identity, ExceptionThrowingBiFunction<I, I, I> op) {
+        return tolerant(
+                () -> new Object[] { identity },
+                (Object[] box, I i) -> {
+                    @SuppressWarnings("unchecked")
+                    final I reduced = op.apply((I) box[0], i);
+                    if(reduced == null)
+                        return false;
+                    box[0] = reduced;
+                    return true;
+                },
+                (box1, box2) -> {
+                    try {
+                        @SuppressWarnings("unchecked")
+                        final I reduced = op.apply((I) box1[0], (I) box2[0]);
+                        box1[0] = reduced;
+                        return box1;
+                    } catch(Exception e) {
+                        throw new WrappedCheckedException(e, op, box1[0], box2[0]);
+                    }
+                },
+                box -> {
+                    @SuppressWarnings("unchecked")
+                    final I reduced = (I) box[0];
+                    return reduced;
+                },
+                op);
+    }
+
+    /**
+     * Like {@link Collectors#reducing(Object, Function, BinaryOperator)}; only the mapper may throw Exceptions.
+     */
+    public static <I, U> Collector<I, ?, TolerantResult<I, U>> reducing(U identity, ExceptionThrowingFunction<? super I, ? extends U> mapper,
+                                                                      BinaryOperator<U> op) {
+        return tolerant(
+                () -> new Object[] { identity },
+                (Object[] box, I i) -> {
+                    final U u = mapper.apply(i);
+                    if(u == null)
+                        return false;
+                    try {
+                        @SuppressWarnings("unchecked")
+                        final U reduced = op.apply((U) box[0], u);
+                        box[0] = reduced;
+                    } catch(RuntimeException e) {
+                        throw new DownstreamException(e);
+                    }
+                    return true;
+                },
+                (box1, box2) -> {
+                    @SuppressWarnings("unchecked")
+                    final U reduced = op.apply((U) box1[0], (U) box2[0]);
+                    box1[0] = reduced;
+                    return box1;
+                },
+                box -> {
+                    @SuppressWarnings("unchecked")
+                    final U reduced = (U) box[0];
+                    return reduced;
+                },
+                mapper);
+    }
+
+    /**
+     * Accumulates an input into a container, returning {@code false} if the input was mapped to {@code null}.
+     */
+    @FunctionalInterface
+    private interface TolerantAccumulator<A, I> {
+        boolean accumulate(A a, I i) throws Exception;
+    }
+
+    /**
+     * Carries a RuntimeException of a non-throwing function, such as a downstream Collector or a merge function, through the
+     * per-input failure handling, so it propagates like it would from the corresponding {@link Collectors} method.
+     */
+    private static final class DownstreamException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final RuntimeException exception;
+
+        DownstreamException(RuntimeException exception) {
+            super(null, null, false, false);
+            this.exception = exception;
+        }
+    }
+
+    private static final class Container<I, A> {
+        A accumulation;
+        final List<Tuple<I, Exception>> failures = new ArrayList<>();
+
+        Container(A accumulation) {
+            this.accumulation = accumulation;
+        }
+    }
+
+    private static <I, A, R> Collector<I, ?, TolerantResult<I, R>> tolerant(Supplier<A> supplier, TolerantAccumulator<A, I> accumulator,
+                                                                          BinaryOperator<A> combiner, Function<A, R> finisher, Object function) {
+        final StreamExtensionsMetrics metrics = StreamExtensions.getMetrics();
+        final boolean timed = metrics.isEnabled();
+        return Collector.of(
+                () -> new Container<I, A>(supplier.get()),
+                (Container<I, A> c, I i) -> {
+                    final long start = timed ? System.nanoTime() : 0;
+                    Exception failure = null;
+                    try {
+                        if(accumulator.accumulate(c.accumulation, i)) {
+                            if(timed)
+                                metrics.recordSuccess(function, System.nanoTime() - start);
+                            return;
+                        }
+                    } catch(DownstreamException e) {
+                        throw e.exception;
+                    } catch(Exception e) {
+                        failure = e;
+                    }
+                    if(timed)
+                        metrics.recordFailure(function, failure, System.nanoTime() - start);
+                    metrics.recordSplit(function);
+                    StreamExtensions.logRemovedElement(failure, i, function);
+                    c.failures.add(new Tuple<>(i, failure));
+                },
+                (c1, c2) -> {
+                    c1.accumulation = combiner.apply(c1.accumulation, c2.accumulation);
+                    c1.failures.addAll(c2.failures);
+                    return c1;
+                },
+                c -> new TolerantResult<>(finisher.apply(c.accumulation), c.failures)
+        );
+    }
+}
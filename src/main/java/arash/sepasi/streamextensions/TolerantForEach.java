@@ -0,0 +1,134 @@
+package arash.sepasi.streamextensions;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static arash.sepasi.streamextensions.FunctionExtensions.*;
+
+/**
+ * Runs an {@link ExceptionThrowingConsumer} over the elements of a Stream on a dedicated pool, for
+ * {@link StreamExtensions.ConsumerExtensions#forEachTolerant(Stream, ExceptionThrowingConsumer, ParallelismSpec, DiConsumer)}.<br/>
+ * The calling thread reads the Stream and hands its elements to the pool in chunks through a single bounded queue, which every
+ * thread of the pool takes its next chunk from: a thread done with its chunk takes the next pending one, so no thread idles while
+ * another works through a slow part of the Stream. Once the queue is full the calling thread runs the chunk itself, which
+ * throttles the reading of the Stream to the pace of the pool.<br/>
+ * An Exception thrown by the failure handler, or an Error, stops the reading and the pending chunks, and is rethrown to the caller.
+ */
+final class TolerantForEach<I> implements Consumer<I> {
+
+    private final ExceptionThrowingConsumer<I> consumer;
+    private final DiConsumer<Exception, I> failureHandler;
+    private final StreamExtensionsMetrics metrics;
+    private final boolean timed;
+    private final int chunkSize;
+    private final ThreadPoolExecutor pool;
+
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+    private final LongAdder callerRunChunks = new LongAdder();
+    private final AtomicReference<Throwable> abort = new AtomicReference<>();
+
+    private Object[] chunk;
+    private int chunkLength;
+    private long chunks;
+
+    private TolerantForEach(ExceptionThrowingConsumer<I> consumer, ParallelismSpec spec, DiConsumer<Exception, I> failureHandler,
+                            StreamExtensionsMetrics metrics) {
+        this.consumer = consumer;
+        this.failureHandler = failureHandler;
+        this.metrics = metrics;
+        this.timed = metrics.isEnabled();
+        this.chunkSize = spec.getChunkSize();
+        this.chunk = new Object[chunkSize];
+        this.pool = new ThreadPoolExecutor(spec.getThreads(), spec.getThreads(), 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(spec.getQueueCapacity()), AsyncExecutors.daemonThreadFactory("stream-extensions-foreach"),
+                (r, executor) -> {
+                    callerRunChunks.increment();
+                    r.run();
+                });
+    }
+
+    static <I> ForEachSummary run(Stream<I> stream, ExceptionThrowingConsumer<I> consumer, ParallelismSpec spec,
+                                  DiConsumer<Exception, I> failureHandler, StreamExtensionsMetrics metrics) {
+        return new TolerantForEach<>(consumer, spec, failureHandler, metrics).run(stream.spliterator());
+    }
+
+    private ForEachSummary run(Spliterator<I> source) {
+        final long start = System.nanoTime();
+        boolean complete = true;
+        try {
+            while(abort.get() == null && source.tryAdvance(this)) {
+            }
+            if(chunkLength > 0 && abort.get() == null)
+                submit();
+        } finally {
+            pool.shutdown();
+            try {
+                while(!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+                }
+            } catch(InterruptedException e) {
+                pool.shutdownNow();
+                Thread.currentThread().interrupt();
+                complete = false;
+            }
+        }
+        final Throwable t = abort.get();
+        if(t instanceof RuntimeException)
+            throw (RuntimeException) t;
+        if(t instanceof Error)
+            throw (Error) t;
+        return new ForEachSummary(succeeded.sum(), failed.sum(), chunks, callerRunChunks.sum(), System.nanoTime() - start, busyNanos.sum(), complete);
+    }
+
+    @Override
+    public void accept(I i) {
+        chunk[chunkLength++] = i;
+        if(chunkLength == chunkSize)
+            submit();
+    }
+
+    private void submit() {
+        final Object[] elements = chunkLength == chunkSize ? chunk : Arrays.copyOf(chunk, chunkLength);
+        chunk = new Object[chunkSize];
+        chunkLength = 0;
+        chunks++;
+        pool.execute(() -> consume(elements));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void consume(Object[] elements) {
+        final long chunkStart = System.nanoTime();
+        try {
+            for(Object element : elements) {
+                if(abort.get() != null)
+                    return;
+                final I i = (I) element;
+                final long start = timed ? System.nanoTime() : 0;
+                try {
+                    consumer.accept(i);
+                } catch(Exception e) {
+                    if(timed)
+                        metrics.recordFailure(consumer, e, System.nanoTime() - start);
+                    failed.increment();
+                    failureHandler.accept(e, i);
+                    continue;
+                }
+                if(timed)
+                    metrics.recordSuccess(consumer, System.nanoTime() - start);
+                succeeded.increment();
+            }
+        } catch(RuntimeException | Error t) {
+            abort.compareAndSet(null, t);
+        } finally {
+            busyNanos.add(System.nanoTime() - chunkStart);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package arash.sepasi.streamextensions;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static arash.sepasi.streamextensions.StreamExtensions.Tuple;
+
+/**
+ * The result of a {@link TolerantCollectors} Collector: the aggregation of the inputs which were collected successfully, and the
+ * inputs which caused Exceptions paired with their Exception.<br/>
+ * Inputs which were mapped to {@code null} are reported as failures with a {@code null} Exception.
+ */
+public class TolerantResult<I, R> {
+    private final R result;
+    private final List<Tuple<I, Exception>> failures;
+
+    TolerantResult(R result, List<Tuple<I, Exception>> failures) {
+        this.result = result;
+        this.failures = failures;
+    }
+
+    public R getResult() {
+        return result;
+    }
+
+    public List<Tuple<I, Exception>> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    /**
+     * @return a view of the inputs of {@link #getFailures()}.
+     */
+    public List<I> getFailedInputs() {
+        return new AbstractList<I>() {
+            @Override
+            public I get(int index) {
+                return failures.get(index).getFirst();
+            }
+
+            @Override
+            public int size() {
+                return failures.size();
+            }
+        };
+    }
+
+    public int getFailureCount() {
+        return failures.size();
+    }
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+
+    /**
+     * @return the number of failures per Exception class, in the order they were first seen; inputs mapped to {@code null} are
+     * counted under the {@code null} key.
+     */
+    public Map<Class<? extends Exception>, Long> getFailureCountsByType() {
+        final Map<Class<? extends Exception>, Long> counts = new LinkedHashMap<>();
+        for(Tuple<I, Exception> failure : failures)
+            counts.merge(failure.getSecond() == null ? null : failure.getSecond().getClass(), 1L, Long::sum);
+        return counts;
+    }
+
+    @Override
+    public String toString() {
+        return result + " (" + failures.size() + " failures: " + getFailureCountsByType() + ")";
+    }
+}
@@ -0,0 +1,346 @@
+package arash.sepasi.streamextensions;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static arash.sepasi.streamextensions.FunctionExtensions.*;
+
+/**
+ * A fluent chain of exception-throwing stages over a Stream, such as
+ * {@code TryStream.of(stream).map(f).map(g).filter(p).onFailure(handler).stream()}.<br/>
+ * All the stages are fused into a single Spliterator pass: each stage is composed when it is added, and every Spliterator links
+ * its own chain of stage objects, each calling its function and passing the result straight to the next stage, so chaining
+ * stages allocates no intermediate Streams, Optionals or wrappers per element, and dispatches on no stage kind.<br/>
+ * An element which causes an Exception in any stage, or is mapped to {@code null}, is removed from the returned Stream and
+ * reported as a {@link StageFailure} naming the failing stage. By default it is counted as dropped and logged, like
+ * {@link StreamExtensions#removeExceptionsFromStream(Stream, ExceptionThrowingFunction)} does.<br/>
+ * Like a Stream, a TryStream can only be consumed once.
+ */
+public final class TryStream<T> {
+
+    private static final Stages NO_STAGES = (pass, downstream) -> downstream;
+
+    private final Stream<?> source;
+    private final Stages stages;
+    private final int stageCount;
+    private final Consumer<? super StageFailure> failureHandler;
+
+    private TryStream(Stream<?> source, Stages stages, int stageCount, Consumer<? super StageFailure> failureHandler) {
+        this.source = source;
+        this.stages = stages;
+        this.stageCount = stageCount;
+        this.failureHandler = failureHandler;
+    }
+
+    public static <T> TryStream<T> of(Stream<T> stream) {
+        return new TryStream<>(stream, NO_STAGES, 0, null);
+    }
+
+    /**
+     * Maps the elements using an exception-throwing Function; the elements mapped to {@code null} are failures as well.
+     */
+    @SuppressWarnings("unchecked")
+    public <R> TryStream<R> map(ExceptionThrowingFunction<? super T, ? extends R> mapper) {
+        final int stage = stageCount;
+        return then((pass, next) -> new MapStage(stage, (ExceptionThrowingFunction<Object, Object>) mapper, pass, next));
+    }
+
+    /**
+     * Keeps the elements matching an exception-throwing Predicate; elements not matching it are not failures.
+     */
+    @SuppressWarnings("unchecked")
+    public TryStream<T> filter(ExceptionThrowingPredicate<? super T> predicate) {
+        final int stage = stageCount;
+        return then((pass, next) -> new FilterStage(stage, (ExceptionThrowingPredicate<Object>) predicate, pass, next));
+    }
+
+    /**
+     * Passes the elements to an exception-throwing Consumer, removing those which caused an Exception.
+     */
+    @SuppressWarnings("unchecked")
+    public TryStream<T> peek(ExceptionThrowingConsumer<? super T> action) {
+        final int stage = stageCount;
+        return then((pass, next) -> new PeekStage(stage, (ExceptionThrowingConsumer<Object>) action, pass, next));
+    }
+
+    /**
+     * Sets the handler of the failures of every stage, replacing the default which counts the failed elements as dropped and logs them.
+     */
+    public TryStream<T> onFailure(Consumer<? super StageFailure> handler) {
+        return new TryStream<>(source, stages, stageCount, handler);
+    }
+
+    /**
+     * @return a Stream of the elements which went through every stage; closing it closes the source Stream.
+     */
+    public Stream<T> stream() {
+        final StreamExtensionsMetrics metrics = StreamExtensions.getMetrics();
+        final Consumer<? super StageFailure> handler = failureHandler != null ? failureHandler : f -> {
+            metrics.recordDropped(f.getFunction());
+            StreamExtensions.logRemovedElement(f.getCause(), f.getInput(), f.getFunction());
+        };
+        return StreamSupport.stream(new FusedSpliterator<T>(source.spliterator(), stages, handler, metrics), source.isParallel())
+                .onClose(source::close);
+    }
+
+    /**
+     * @return a TryStream whose stages are followed by the one created by {@code stage}.
+     */
+    private <R> TryStream<R> then(Stages stage) {
+        final Stages previous = stages;
+        return new TryStream<>(source, (pass, downstream) -> previous.link(pass, stage.link(pass, downstream)), stageCount + 1, failureHandler);
+    }
+
+    /**
+     * An element removed from a TryStream, with the stage which failed on it.
+     */
+    public static final class StageFailure {
+        private final int stage;
+        private final Object function;
+        private final Object element;
+        private final Object input;
+        private final Exception cause;
+
+        StageFailure(int stage, Object function, Object element, Object input, Exception cause) {
+            this.stage = stage;
+            this.function = function;
+            this.element = element;
+            this.input = input;
+            this.cause = cause;
+        }
+
+        /**
+         * @return the index of the failing stage, counting from 0 in the order the stages were added.
+         */
+        public int getStage() {
+            return stage;
+        }
+
+        public Object getFunction() {
+            return function;
+        }
+
+        /**
+         * @return the element of the source Stream which failed.
+         */
+        public Object getElement() {
+            return element;
+        }
+
+        /**
+         * @return the input of the failing stage, i.e. the element after going through the previous stages.
+         */
+        public Object getInput() {
+            return input;
+        }
+
+        /**
+         * @return the Exception thrown by the failing stage, or {@code null} if it mapped its input to {@code null}.
+         */
+        public Exception getCause() {
+            return cause;
+        }
+
+        @Override
+        public String toString() {
+            return "Stage " + stage + " (" + function + ") failed on " + input + ": " + cause;
+        }
+    }
+
+    /**
+     * Receives the value of a source element after the previous stages.
+     */
+    private interface Sink {
+        void accept(Object element, Object value);
+    }
+
+    /**
+     * Links the chain of stages of a {@link FusedSpliterator}, in front of {@code downstream}.
+     */
+    @FunctionalInterface
+    private interface Stages {
+        Sink link(FusedSpliterator<?> pass, Sink downstream);
+    }
+
+    private abstract static class Stage implements Sink {
+        final int stage;
+        final Object function;
+        final FusedSpliterator<?> pass;
+        final Sink next;
+
+        Stage(int stage, Object function, FusedSpliterator<?> pass, Sink next) {
+            this.stage = stage;
+            this.function = function;
+            this.pass = pass;
+            this.next = next;
+        }
+
+        final long start() {
+            return pass.timed ? System.nanoTime() : 0;
+        }
+
+        final void succeeded(long start) {
+            if(pass.timed)
+                pass.metrics.recordSuccess(function, System.nanoTime() - start);
+        }
+
+        final void failed(Object element, Object value, Exception e, long start) {
+            if(pass.timed)
+                pass.metrics.recordFailure(function, e, System.nanoTime() - start);
+            pass.failureHandler.accept(new StageFailure(stage, function, element, value, e));
+        }
+    }
+
+    private static final class MapStage extends Stage {
+        private final ExceptionThrowingFunction<Object, Object> mapper;
+
+        MapStage(int stage, ExceptionThrowingFunction<Object, Object> mapper, FusedSpliterator<?> pass, Sink next) {
+            super(stage, mapper, pass, next);
+            this.mapper = mapper;
+        }
+
+        @Override
+        public void accept(Object element, Object value) {
+            final long start = start();
+            final Object output;
+            try {
+                output = mapper.apply(value);
+            } catch(Exception e) {
+                failed(element, value, e, start);
+                return;
+            }
+            if(output == null) {
+                failed(element, value, null, start);
+                return;
+            }
+            succeeded(start);
+            next.accept(element, output);
+        }
+    }
+
+    private static final class FilterStage extends Stage {
+        private final ExceptionThrowingPredicate<Object> predicate;
+
+        FilterStage(int stage, ExceptionThrowingPredicate<Object> predicate, FusedSpliterator<?> pass, Sink next) {
+            super(stage, predicate, pass, next);
+            this.predicate = predicate;
+        }
+
+        @Override
+        public void accept(Object element, Object value) {
+            final long start = start();
+            final boolean matches;
+            try {
+                matches = predicate.test(value);
+            } catch(Exception e) {
+                failed(element, value, e, start);
+                return;
+            }
+            succeeded(start);
+            if(matches)
+                next.accept(element, value);
+        }
+    }
+
+    private static final class PeekStage extends Stage {
+        private final ExceptionThrowingConsumer<Object> action;
+
+        PeekStage(int stage, ExceptionThrowingConsumer<Object> action, FusedSpliterator<?> pass, Sink next) {
+            super(stage, action, pass, next);
+            this.action = action;
+        }
+
+        @Override
+        public void accept(Object element, Object value) {
+            final long start = start();
+            try {
+                action.accept(value);
+            } catch(Exception e) {
+                failed(element, value, e, start);
+                return;
+            }
+            succeeded(start);
+            next.accept(element, value);
+        }
+    }
+
+    /**
+     * Runs every stage on each element of the source Spliterator, being its own source {@link Consumer} like
+     * {@link ExceptionFilteringSpliterator}, and the last {@link Sink} of its chain of stages.
+     */
+    private static final class FusedSpliterator<T> implements Spliterator<T>, Consumer<Object>, Sink {
+
+        private final Spliterator<?> source;
+        private final Stages stages;
+        private final Consumer<? super StageFailure> failureHandler;
+        private final StreamExtensionsMetrics metrics;
+        private final boolean timed;
+        private final Sink head;
+
+        private Object current;
+
+        FusedSpliterator(Spliterator<?> source, Stages stages, Consumer<? super StageFailure> failureHandler, StreamExtensionsMetrics metrics) {
+            this.source = source;
+            this.stages = stages;
+            this.failureHandler = failureHandler;
+            this.metrics = metrics;
+            this.timed = metrics.isEnabled();
+            this.head = stages.link(this, this);
+        }
+
+        @Override
+        public void accept(Object element) {
+            head.accept(element, element);
+        }
+
+        @Override
+        public void accept(Object element, Object value) {
+            current = value;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super T> action) {
+            while(source.tryAdvance(this)) {
+                if(current != null) {
+                    final T t = (T) current;
+                    current = null;
+                    action.accept(t);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super T> action) {
+            source.forEachRemaining(i -> {
+                accept(i);
+                if(current != null) {
+                    final T t = (T) current;
+                    current = null;
+                    action.accept(t);
+                }
+            });
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            final Spliterator<?> split = source.trySplit();
+            return split == null ? null : new FusedSpliterator<>(split, stages, failureHandler, metrics);
+        }
+
+        @Override
+        public long estimateSize() {
+            return source.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return (source.characteristics() & (ORDERED | IMMUTABLE | CONCURRENT)) | NONNULL;
+        }
+    }
+}
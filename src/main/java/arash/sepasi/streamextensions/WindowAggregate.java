@@ -0,0 +1,77 @@
+package arash.sepasi.streamextensions;
+
+/**
+ * The aggregate of the values of the elements of a window: their count, sum, minimum and maximum, and the number of elements of
+ * the window which caused Exceptions, or were mapped to {@code null}.<br/>
+ * The bounds of a window are element indices for windows over numbers of elements, and timestamps in milliseconds otherwise;
+ * the start is inclusive and the end exclusive.
+ */
+public class WindowAggregate {
+    private final long start;
+    private final long end;
+    private final long count;
+    private final double sum;
+    private final double min;
+    private final double max;
+    private final long failureCount;
+
+    WindowAggregate(long start, long end, long count, double sum, double min, double max, long failureCount) {
+        this.start = start;
+        this.end = end;
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+        this.failureCount = failureCount;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * @return the number of elements whose value was aggregated, excluding failures.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * @return the minimum value, or {@code NaN} if no element was aggregated.
+     */
+    public double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    /**
+     * @return the maximum value, or {@code NaN} if no element was aggregated.
+     */
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * @return the mean value, or {@code NaN} if no element was aggregated.
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    public long getFailureCount() {
+        return failureCount;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + start + ", " + end + "): count=" + count + ", sum=" + sum + ", min=" + getMin() + ", max=" + getMax()
+                + ", failures=" + failureCount;
+    }
+}
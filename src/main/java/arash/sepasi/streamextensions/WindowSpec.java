@@ -0,0 +1,84 @@
+package arash.sepasi.streamextensions;
+
+import java.time.Duration;
+
+/**
+ * An immutable specification of the windows aggregated by
+ * {@link StreamExtensions#aggregateWindows(java.util.stream.Stream, WindowSpec, FunctionExtensions.ExceptionThrowingToDoubleFunction)}:
+ * tumbling or sliding, over a number of elements or over a span of timestamps in milliseconds.<br/>
+ * Sliding windows of {@code size} every {@code slide} are aggregated from panes of their greatest common divisor, so every element
+ * is only added to one pane, and the memory used is constant.
+ */
+public class WindowSpec {
+    private final boolean timed;
+    private final long size;
+    private final long slide;
+
+    private WindowSpec(boolean timed, long size, long slide) {
+        if(size < 1 || slide < 1)
+            throw new IllegalArgumentException("Window size and slide must be positive: " + size + ", " + slide);
+        if(slide > size)
+            throw new IllegalArgumentException("Window slide must not exceed its size: " + slide + " > " + size);
+        if(size / gcd(size, slide) > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Window size must be a small multiple of the greatest common divisor of size and slide");
+        this.timed = timed;
+        this.size = size;
+        this.slide = slide;
+    }
+
+    /**
+     * @return windows of {@code size} consecutive elements, one after the other.
+     */
+    public static WindowSpec tumbling(int size) {
+        return new WindowSpec(false, size, size);
+    }
+
+    /**
+     * @return windows of {@code size} consecutive elements, starting every {@code slide} elements.
+     */
+    public static WindowSpec sliding(int size, int slide) {
+        return new WindowSpec(false, size, slide);
+    }
+
+    /**
+     * @return windows spanning {@code size} of timestamps, one after the other, aligned on multiples of {@code size} since the epoch.
+     */
+    public static WindowSpec tumbling(Duration size) {
+        return new WindowSpec(true, size.toMillis(), size.toMillis());
+    }
+
+    /**
+     * @return windows spanning {@code size} of timestamps, starting every {@code slide}, aligned on multiples of {@code slide} since the epoch.
+     */
+    public static WindowSpec sliding(Duration size, Duration slide) {
+        return new WindowSpec(true, size.toMillis(), slide.toMillis());
+    }
+
+    /**
+     * @return whether the windows span timestamps rather than numbers of elements.
+     */
+    public boolean isTimed() {
+        return timed;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getSlide() {
+        return slide;
+    }
+
+    long getPaneSize() {
+        return gcd(size, slide);
+    }
+
+    private static long gcd(long a, long b) {
+        while(b != 0) {
+            final long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
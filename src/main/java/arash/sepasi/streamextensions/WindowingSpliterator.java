@@ -0,0 +1,211 @@
+package arash.sepasi.streamextensions;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import static arash.sepasi.streamextensions.FunctionExtensions.*;
+
+/**
+ * A sequential {@link Spliterator} which aggregates the values of the elements of a source Spliterator over the windows of a
+ * {@link WindowSpec}, emitting a {@link WindowAggregate} for every window holding at least one element once it is closed.<br/>
+ * Elements are added to panes of the greatest common divisor of the window size and slide, kept in a ring of primitive arrays
+ * holding one window; a window is aggregated from its panes when its last pane is closed. Windows over timestamps are closed
+ * when an element of a later pane arrives, so elements are expected in timestamp order: an element older than the current pane
+ * is added to the current pane. The windows still open are closed at the end of the source.<br/>
+ * Elements whose timestamp or value caused an Exception are counted as failures of their pane (the current pane for timestamps),
+ * and passed to the failure handler.
+ */
+class WindowingSpliterator<I> implements Spliterator<WindowAggregate>, Consumer<I> {
+
+    private final Spliterator<I> source;
+    private final ExceptionThrowingToLongFunction<I> timestamp;
+    private final ExceptionThrowingToDoubleFunction<I> value;
+    private final DiConsumer<Exception, I> failureHandler;
+    private final StreamExtensionsMetrics metrics;
+    private final boolean timed;
+
+    private final long paneSize;
+    private final int panesPerWindow;
+    private final long panesPerSlide;
+    private final long[] counts;
+    private final long[] failures;
+    private final double[] sums;
+    private final double[] mins;
+    private final double[] maxs;
+
+    private final ArrayDeque<WindowAggregate> closed = new ArrayDeque<>();
+    private long index;
+    private long currentPane;
+    private boolean started;
+    private long failuresBeforeStart;
+    private boolean flushed;
+
+    /**
+     * @param timestamp the timestamp extractor of windows over timestamps, or {@code null} for windows over numbers of elements.
+     */
+    WindowingSpliterator(Spliterator<I> source, WindowSpec spec, ExceptionThrowingToLongFunction<I> timestamp,
+                         ExceptionThrowingToDoubleFunction<I> value, DiConsumer<Exception, I> failureHandler, StreamExtensionsMetrics metrics) {
+        if(spec.isTimed() != (timestamp != null))
+            throw new IllegalArgumentException(spec.isTimed() ? "Windows over timestamps need a timestamp extractor"
+                    : "Windows over numbers of elements take no timestamp extractor");
+        this.source = source;
+        this.timestamp = timestamp;
+        this.value = value;
+        this.failureHandler = failureHandler;
+        this.metrics = metrics;
+        this.timed = metrics.isEnabled();
+        this.paneSize = spec.getPaneSize();
+        this.panesPerWindow = (int) (spec.getSize() / paneSize);
+        this.panesPerSlide = spec.getSlide() / paneSize;
+        this.counts = new long[panesPerWindow];
+        this.failures = new long[panesPerWindow];
+        this.sums = new double[panesPerWindow];
+        this.mins = new double[panesPerWindow];
+        this.maxs = new double[panesPerWindow];
+        Arrays.fill(mins, Double.POSITIVE_INFINITY);
+        Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+    }
+
+    @Override
+    public void accept(I i) {
+        long pane;
+        if(timestamp == null) {
+            pane = index / paneSize;
+        } else {
+            try {
+                pane = Math.floorDiv(timestamp.applyAsLong(i), paneSize);
+            } catch(Exception e) {
+                if(started)
+                    failures[slot(currentPane)]++;
+                else
+                    failuresBeforeStart++;
+                failureHandler.accept(e, i);
+                return;
+            }
+            if(started && pane < currentPane)
+                pane = currentPane;
+        }
+        index++;
+        advanceTo(pane);
+        final int slot = slot(pane);
+        final long start = timed ? System.nanoTime() : 0;
+        final double v;
+        try {
+            v = value.applyAsDouble(i);
+        } catch(Exception e) {
+            if(timed)
+                metrics.recordFailure(value, e, System.nanoTime() - start);
+            failures[slot]++;
+            failureHandler.accept(e, i);
+            return;
+        }
+        if(timed)
+            metrics.recordSuccess(value, System.nanoTime() - start);
+        counts[slot]++;
+        sums[slot] += v;
+        if(v < mins[slot])
+            mins[slot] = v;
+        if(v > maxs[slot])
+            maxs[slot] = v;
+    }
+
+    private void advanceTo(long pane) {
+        if(!started) {
+            started = true;
+            currentPane = pane;
+            failures[slot(pane)] += failuresBeforeStart;
+            return;
+        }
+        if(pane == currentPane)
+            return;
+        final long last = Math.min(pane, currentPane + panesPerWindow);
+        for(long p = currentPane; p < last; p++) {
+            close(p);
+            reset(slot(p + 1));
+        }
+        if(last < pane)
+            for(int slot = 0; slot < panesPerWindow; slot++)
+                reset(slot);
+        currentPane = pane;
+    }
+
+    /**
+     * Emits the window ending with pane {@code p}, if there is one and it holds any element.
+     */
+    private void close(long p) {
+        final long firstPane = p - panesPerWindow + 1;
+        if(Math.floorMod(firstPane, panesPerSlide) != 0)
+            return;
+        long count = 0, failureCount = 0;
+        double sum = 0, min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        for(int slot = 0; slot < panesPerWindow; slot++) {
+            count += counts[slot];
+            failureCount += failures[slot];
+            sum += sums[slot];
+            min = Math.min(min, mins[slot]);
+            max = Math.max(max, maxs[slot]);
+        }
+        if(count == 0 && failureCount == 0)
+            return;
+        long start = firstPane * paneSize;
+        long end = (p + 1) * paneSize;
+        if(timestamp == null) {
+            start = Math.max(0, start);
+            end = Math.min(index, end);
+        }
+        closed.add(new WindowAggregate(start, end, count, sum, min, max, failureCount));
+    }
+
+    private void reset(int slot) {
+        counts[slot] = 0;
+        failures[slot] = 0;
+        sums[slot] = 0;
+        mins[slot] = Double.POSITIVE_INFINITY;
+        maxs[slot] = Double.NEGATIVE_INFINITY;
+    }
+
+    private int slot(long pane) {
+        return (int) Math.floorMod(pane, (long) panesPerWindow);
+    }
+
+    private void flush() {
+        flushed = true;
+        if(!started)
+            return;
+        for(long p = currentPane; p < currentPane + panesPerWindow; p++) {
+            close(p);
+            reset(slot(p + 1));
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super WindowAggregate> action) {
+        while(closed.isEmpty()) {
+            if(!source.tryAdvance(this)) {
+                if(!flushed)
+                    flush();
+                if(closed.isEmpty())
+                    return false;
+            }
+        }
+        action.accept(closed.poll());
+        return true;
+    }
+
+    @Override
+    public Spliterator<WindowAggregate> trySplit() {
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return source.estimateSize();
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+}
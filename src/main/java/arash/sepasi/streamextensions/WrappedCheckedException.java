@@ -0,0 +1,59 @@
+package arash.sepasi.streamextensions;
+
+/**
+ * The RuntimeException thrown by the {@code throwRuntimeException(...)} and {@code retry(...)} methods of {@link StreamExtensions}.<br/>
+ * It keeps the original Exception as its cause, along with the function and the inputs it failed on, and only formats its
+ * message when {@link #getMessage()} is first called.<br/>
+ * Capturing stack traces can be turned off with {@link #setCaptureStackTrace(boolean)} when the Exceptions are used for control
+ * flow, or per Exception with {@link #withoutStackTrace(Exception, Object, Object...)}; the cause keeps its own stack trace.
+ */
+public class WrappedCheckedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private static volatile boolean captureStackTrace = true;
+
+    private final transient Object function;
+    private final transient Object[] inputs;
+    private volatile String message;
+
+    public WrappedCheckedException(Exception cause, Object function, Object... inputs) {
+        this(cause, function, captureStackTrace, inputs);
+    }
+
+    private WrappedCheckedException(Exception cause, Object function, boolean writableStackTrace, Object[] inputs) {
+        super(null, cause, true, writableStackTrace);
+        this.function = function;
+        this.inputs = inputs;
+    }
+
+    /**
+     * @return an Exception like {@link #WrappedCheckedException(Exception, Object, Object...)}, which does not capture a stack trace.
+     */
+    public static WrappedCheckedException withoutStackTrace(Exception cause, Object function, Object... inputs) {
+        return new WrappedCheckedException(cause, function, false, inputs);
+    }
+
+    /**
+     * Sets whether the WrappedCheckedExceptions created from now on capture their stack trace, which they do by default.
+     */
+    public static void setCaptureStackTrace(boolean captureStackTrace) {
+        WrappedCheckedException.captureStackTrace = captureStackTrace;
+    }
+
+    @Override
+    public String getMessage() {
+        String m = message;
+        if(m == null)
+            message = m = StreamExtensions.runtimeExceptionText((Exception) getCause(), function, inputs);
+        return m;
+    }
+
+    public Object getFunction() {
+        return function;
+    }
+
+    public Object[] getInputs() {
+        return inputs == null ? null : inputs.clone();
+    }
+}
@@ -0,0 +1,173 @@
+package arash.sepasi.streamextensions;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Spliterator} which combines the elements at the same position of several source Spliterators, stopping at the end of the
+ * shortest one, and skipping in place any combination which caused an Exception (or was combined to {@code null}).<br/>
+ * When all the sources are {@code SIZED} and {@code SUBSIZED} with the same size, it splits them all and keeps the split if the
+ * prefixes have the same size, which is the case for arrays, Lists and ranges; otherwise it stops splitting, and goes on
+ * sequentially over each prefix followed by its rest.<br/>
+ * The values of a combination are held in an array reused for every combination, so the combiner must not keep it.
+ */
+class ZipSpliterator<O> implements Spliterator<O> {
+
+    /**
+     * Combines the values of a combination.
+     */
+    @FunctionalInterface
+    interface Combiner<O> {
+        O combine(Object[] values) throws Exception;
+    }
+
+    /**
+     * Receives the combinations which caused an Exception, or were combined to {@code null} with a {@code null} Exception.
+     */
+    @FunctionalInterface
+    interface FailureHandler {
+        void accept(Exception e, Object[] values);
+    }
+
+    private final Spliterator<?>[] sources;
+    private final Combiner<O> combiner;
+    private final Object mapper;
+    private final FailureHandler failureHandler;
+    private final StreamExtensionsMetrics metrics;
+    private final boolean timed;
+    private final Object[] values;
+    private final Consumer<Object>[] setters;
+    private boolean splittable = true;
+
+    @SuppressWarnings("unchecked")
+    ZipSpliterator(Spliterator<?>[] sources, Combiner<O> combiner, Object mapper, FailureHandler failureHandler, StreamExtensionsMetrics metrics) {
+        this.sources = sources;
+        this.combiner = combiner;
+        this.mapper = mapper;
+        this.failureHandler = failureHandler;
+        this.metrics = metrics;
+        this.timed = metrics.isEnabled();
+        this.values = new Object[sources.length];
+        this.setters = (Consumer<Object>[]) new Consumer<?>[sources.length];
+        for(int s = 0; s < sources.length; s++) {
+            final int index = s;
+            setters[s] = v -> values[index] = v;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean tryAdvance(Consumer<? super O> action) {
+        while(advanceAll()) {
+            final long start = timed ? System.nanoTime() : 0;
+            final O o;
+            try {
+                o = combiner.combine(values);
+            } catch(Exception e) {
+                if(timed)
+                    metrics.recordFailure(mapper, e, System.nanoTime() - start);
+                failureHandler.accept(e, values);
+                continue;
+            }
+            if(o != null) {
+                if(timed)
+                    metrics.recordSuccess(mapper, System.nanoTime() - start);
+                action.accept(o);
+                return true;
+            }
+            if(timed)
+                metrics.recordFailure(mapper, null, System.nanoTime() - start);
+            failureHandler.accept(null, values);
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean advanceAll() {
+        for(int s = 0; s < sources.length; s++)
+            if(!((Spliterator<Object>) sources[s]).tryAdvance(setters[s]))
+                return false;
+        return true;
+    }
+
+    @Override
+    public Spliterator<O> trySplit() {
+        if(!splittable)
+            return null;
+        final long size = sources[0].getExactSizeIfKnown();
+        for(Spliterator<?> source : sources)
+            if(!source.hasCharacteristics(SIZED | SUBSIZED) || source.getExactSizeIfKnown() != size)
+                return null;
+        final Spliterator<?>[] prefixes = new Spliterator<?>[sources.length];
+        boolean aligned = true;
+        for(int s = 0; s < sources.length; s++) {
+            prefixes[s] = sources[s].trySplit();
+            aligned &= prefixes[s] != null && prefixes[s].getExactSizeIfKnown() == prefixes[0].getExactSizeIfKnown();
+        }
+        if(aligned)
+            return new ZipSpliterator<>(prefixes, combiner, mapper, failureHandler, metrics);
+        // The sources split at different positions: put the prefixes back in front, and stop splitting
+        for(int s = 0; s < sources.length; s++)
+            if(prefixes[s] != null)
+                sources[s] = new ConcatSpliterator<>(prefixes[s], sources[s]);
+        splittable = false;
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        long size = Long.MAX_VALUE;
+        for(Spliterator<?> source : sources)
+            size = Math.min(size, source.estimateSize());
+        return size;
+    }
+
+    @Override
+    public int characteristics() {
+        int characteristics = ORDERED | IMMUTABLE | CONCURRENT;
+        for(Spliterator<?> source : sources)
+            characteristics &= source.characteristics();
+        return characteristics | NONNULL;
+    }
+
+    /**
+     * A prefix followed by the rest of a source which was split, traversed sequentially.
+     */
+    private static final class ConcatSpliterator<T> implements Spliterator<T> {
+        private final Spliterator<T> prefix;
+        private final Spliterator<T> rest;
+        private boolean inPrefix = true;
+
+        @SuppressWarnings("unchecked")
+        ConcatSpliterator(Spliterator<?> prefix, Spliterator<?> rest) {
+            this.prefix = (Spliterator<T>) prefix;
+            this.rest = (Spliterator<T>) rest;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if(inPrefix) {
+                if(prefix.tryAdvance(action))
+                    return true;
+                inPrefix = false;
+            }
+            return rest.tryAdvance(action);
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            final long size = (inPrefix ? prefix.estimateSize() : 0) + rest.estimateSize();
+            return size < 0 ? Long.MAX_VALUE : size;
+        }
+
+        @Override
+        public int characteristics() {
+            return prefix.characteristics() & rest.characteristics() & (ORDERED | IMMUTABLE | NONNULL);
+        }
+    }
+}
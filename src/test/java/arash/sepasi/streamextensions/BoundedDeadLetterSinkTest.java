@@ -0,0 +1,165 @@
+package arash.sepasi.streamextensions;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class BoundedDeadLetterSinkTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void splitExceptionsFromStream_FailingInputs_ExpectInputsInSink() {
+        final BoundedDeadLetterSink<Integer> sink = new BoundedDeadLetterSink<>(100, BoundedDeadLetterSink.OverflowPolicy.DROP);
+        List<Integer> actualResults = StreamExtensions.splitExceptionsFromStream(IntStream.range(0, 10).boxed(), i -> {
+            if(i % 2 == 0)
+                throw new Exception("even " + i);
+            return i;
+        }, sink).collect(Collectors.toList());
+        Assert.assertEquals(5, actualResults.size());
+        Assert.assertEquals(5, sink.size());
+        final DeadLetterSink.DeadLetter<Integer> first = sink.poll();
+        Assert.assertEquals(Integer.valueOf(0), first.getInput());
+        Assert.assertEquals(Exception.class.getName(), first.getExceptionClass());
+        Assert.assertEquals("even 0", first.getMessage());
+    }
+
+    @Test
+    public void accept_FullRingWithDropPolicy_ExpectDroppedCounted() {
+        final BoundedDeadLetterSink<Integer> sink = new BoundedDeadLetterSink<>(3, BoundedDeadLetterSink.OverflowPolicy.DROP);
+        for(int i = 0; i < 10; i++)
+            sink.accept(new Exception(), i);
+        Assert.assertEquals(3, sink.size());
+        Assert.assertEquals(7, sink.getDroppedCount());
+        Assert.assertEquals(3, sink.drainTo(d -> {}));
+        Assert.assertEquals(0, sink.size());
+    }
+
+    @Test
+    public void accept_FullRingWithBlockPolicy_ExpectBlockedUntilDrained() throws Exception {
+        final BoundedDeadLetterSink<Integer> sink = new BoundedDeadLetterSink<>(1, BoundedDeadLetterSink.OverflowPolicy.BLOCK);
+        sink.accept(new Exception(), 0);
+        final CountDownLatch accepted = new CountDownLatch(1);
+        final Thread producer = new Thread(() -> {
+            sink.accept(new Exception(), 1);
+            accepted.countDown();
+        });
+        producer.start();
+        Assert.assertFalse(accepted.await(50, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(Integer.valueOf(0), sink.poll().getInput());
+        Assert.assertTrue(accepted.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(Integer.valueOf(1), sink.poll().getInput());
+        Assert.assertEquals(0, sink.getDroppedCount());
+    }
+
+    @Test
+    public void accept_FullRingWithSpillPolicy_ExpectAllReplayedInOrder() throws Exception {
+        final Path spillFile = folder.getRoot().toPath().resolve("dead-letters.bin");
+        try(BoundedDeadLetterSink<String> sink = new BoundedDeadLetterSink<>(16, spillFile, DeadLetterSink.Codec.utf8())) {
+            for(int i = 0; i < 1000; i++)
+                sink.accept(i % 3 == 0 ? null : new IllegalStateException("bad " + i), "input-" + i);
+            Assert.assertTrue(sink.getSpilledCount() > 0);
+            try(Stream<String> replayed = sink.replayInputs()) {
+                Assert.assertEquals(IntStream.range(0, 1000).mapToObj(i -> "input-" + i).collect(Collectors.toList()),
+                        replayed.collect(Collectors.toList()));
+            }
+        }
+        try(Stream<DeadLetterSink.DeadLetter<String>> read = BoundedDeadLetterSink.read(spillFile, DeadLetterSink.Codec.utf8())) {
+            final List<DeadLetterSink.DeadLetter<String>> deadLetters = read.collect(Collectors.toList());
+            Assert.assertFalse(deadLetters.isEmpty());
+            Assert.assertNull(deadLetters.get(0).getExceptionClass());
+            Assert.assertEquals(IllegalStateException.class.getName(), deadLetters.get(1).getExceptionClass());
+            Assert.assertEquals("bad 1", deadLetters.get(1).getMessage());
+        }
+    }
+
+    @Test
+    public void spillAll_DeadLettersInMemory_ExpectAllInSpillFile() throws Exception {
+        final Path spillFile = folder.getRoot().toPath().resolve("dead-letters");
+        final BoundedDeadLetterSink<String> sink = new BoundedDeadLetterSink<>(10, spillFile, DeadLetterSink.Codec.utf8());
+        sink.accept(new Exception("first"), "a");
+        sink.accept(null, "b");
+        sink.spillAll();
+        Assert.assertEquals(0, sink.size());
+        Assert.assertEquals(2, sink.getSpilledCount());
+        try(Stream<DeadLetterSink.DeadLetter<String>> spilled = BoundedDeadLetterSink.read(spillFile, DeadLetterSink.Codec.utf8())) {
+            Assert.assertEquals("a,b", spilled.map(DeadLetterSink.DeadLetter::getInput).collect(Collectors.joining(",")));
+        }
+        sink.close();
+    }
+
+    @Test
+    public void read_SpillFileCutShortByCrash_ExpectCompleteRecordsAndTailTruncatedOnAppend() throws Exception {
+        final Path spillFile = folder.getRoot().toPath().resolve("dead-letters");
+        try(BoundedDeadLetterSink<String> sink = new BoundedDeadLetterSink<>(10, spillFile, DeadLetterSink.Codec.utf8())) {
+            sink.accept(new Exception("first"), "a");
+            sink.accept(null, "b");
+            sink.accept(new Exception("third"), "c");
+            sink.spillAll();
+        }
+        try(FileChannel channel = FileChannel.open(spillFile, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+        try(Stream<DeadLetterSink.DeadLetter<String>> read = BoundedDeadLetterSink.read(spillFile, DeadLetterSink.Codec.utf8())) {
+            Assert.assertEquals("a,b", read.map(DeadLetterSink.DeadLetter::getInput).collect(Collectors.joining(",")));
+        }
+        try(BoundedDeadLetterSink<String> sink = new BoundedDeadLetterSink<>(10, spillFile, DeadLetterSink.Codec.utf8())) {
+            sink.accept(null, "d");
+            sink.spillAll();
+        }
+        try(Stream<DeadLetterSink.DeadLetter<String>> read = BoundedDeadLetterSink.read(spillFile, DeadLetterSink.Codec.utf8())) {
+            Assert.assertEquals("a,b,d", read.map(DeadLetterSink.DeadLetter::getInput).collect(Collectors.joining(",")));
+        }
+    }
+
+    @Test
+    public void accept_CodecFailsWhileSpilling_ExpectDeadLettersKeptInMemory() throws Exception {
+        final Path spillFile = folder.getRoot().toPath().resolve("dead-letters");
+        final DeadLetterSink.Codec<String> codec = new DeadLetterSink.Codec<String>() {
+            @Override
+            public byte[] encode(String input) throws IOException {
+                if(input.equals("bad"))
+                    throw new IOException("Cannot encode " + input);
+                return DeadLetterSink.Codec.utf8().encode(input);
+            }
+
+            @Override
+            public String decode(byte[] bytes) throws IOException {
+                return DeadLetterSink.Codec.utf8().decode(bytes);
+            }
+        };
+        try(BoundedDeadLetterSink<String> sink = new BoundedDeadLetterSink<>(2, spillFile, codec)) {
+            sink.accept(null, "a");
+            sink.accept(null, "bad");
+            try {
+                sink.accept(null, "c");
+                Assert.fail();
+            } catch(UncheckedIOException e) {
+                Assert.assertEquals("Cannot encode bad", e.getCause().getMessage());
+            }
+            Assert.assertEquals(0, sink.getSpilledCount());
+            Assert.assertEquals(1, sink.getDroppedCount());
+            Assert.assertEquals("a", sink.poll().getInput());
+            Assert.assertEquals("bad", sink.poll().getInput());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_SpillPolicyWithoutFile_ExpectIllegalArgumentException() {
+        new BoundedDeadLetterSink<Integer>(10, BoundedDeadLetterSink.OverflowPolicy.SPILL);
+    }
+}
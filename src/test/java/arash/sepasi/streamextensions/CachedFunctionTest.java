@@ -0,0 +1,117 @@
+package arash.sepasi.streamextensions;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class CachedFunctionTest {
+
+    @Test
+    public void cached_RepeatingKeysInStream_ExpectOneCallPerKey() {
+        final AtomicInteger calls = new AtomicInteger();
+        final CachedFunction<Integer, String> cached = StreamExtensions.FunctionExtensions.cached(i -> {
+            calls.incrementAndGet();
+            return i.toString();
+        }, CacheSpec.maximumSize(100));
+        List<String> actualResults = StreamExtensions.removeExceptionsFromStream(IntStream.range(0, 1000).map(i -> i%10).boxed().parallel(), cached)
+                .collect(Collectors.toList());
+        Assert.assertEquals(1000, actualResults.size());
+        Assert.assertEquals(10, calls.get());
+        Assert.assertEquals(10, cached.getMissCount());
+        Assert.assertEquals(990, cached.getHitCount());
+    }
+
+    @Test
+    public void cached_MoreKeysThanMaximumSize_ExpectEvictions() throws Exception {
+        final CachedFunction<Integer, Integer> cached = StreamExtensions.FunctionExtensions.cached(i -> i, CacheSpec.maximumSize(10));
+        for(int i = 0; i < 100; i++)
+            cached.apply(i);
+        Assert.assertEquals(10, cached.size());
+        Assert.assertEquals(90, cached.getEvictionCount());
+    }
+
+    @Test
+    public void cached_FailingKey_ExpectFailureCachedUntilExpiry() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        final CachedFunction<Integer, Integer> cached = StreamExtensions.FunctionExtensions.cached(i -> {
+            calls.incrementAndGet();
+            throw new Exception("Bad key " + i);
+        }, CacheSpec.maximumSize(10).cacheFailuresFor(Duration.ofMillis(50)));
+        Assert.assertFalse(StreamExtensions.FunctionExtensions.returnOptional(cached, 1).isPresent());
+        Assert.assertFalse(StreamExtensions.FunctionExtensions.returnOptional(cached, 1).isPresent());
+        Assert.assertEquals(1, calls.get());
+        Thread.sleep(60);
+        Assert.assertFalse(StreamExtensions.FunctionExtensions.returnOptional(cached, 1).isPresent());
+        Assert.assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void cached_ConcurrentCallsForSameKey_ExpectSingleCall() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final CachedFunction<Integer, Integer> cached = StreamExtensions.FunctionExtensions.cached(i -> {
+            calls.incrementAndGet();
+            release.await();
+            return i;
+        }, CacheSpec.maximumSize(10));
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Integer>> results = IntStream.range(0, 4)
+                    .mapToObj(n -> executor.submit(() -> cached.apply(7)))
+                    .collect(Collectors.toList());
+            Thread.sleep(20);
+            release.countDown();
+            for(Future<Integer> result : results)
+                Assert.assertEquals(Integer.valueOf(7), result.get());
+            Assert.assertEquals(1, calls.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void cached_ErrorThrowingKey_ExpectWaitersReleasedAndKeyLoadedAgain() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final CachedFunction<Integer, Integer> cached = StreamExtensions.FunctionExtensions.cached(i -> {
+            if(calls.incrementAndGet() == 1) {
+                release.await();
+                throw new AssertionError("Error on " + i);
+            }
+            return i;
+        }, CacheSpec.maximumSize(10));
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<Integer> loading = executor.submit(() -> cached.apply(7));
+            while(calls.get() == 0)
+                Thread.sleep(1);
+            final Future<Integer> waiting = executor.submit(() -> cached.apply(7));
+            Thread.sleep(20);
+            release.countDown();
+            for(Future<Integer> result : Arrays.asList(loading, waiting)) {
+                try {
+                    result.get(10, TimeUnit.SECONDS);
+                    Assert.fail();
+                } catch(ExecutionException e) {
+                    Assert.assertTrue(e.getCause() instanceof AssertionError);
+                }
+            }
+            Assert.assertEquals(Integer.valueOf(7), cached.apply(7));
+            Assert.assertEquals(2, calls.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
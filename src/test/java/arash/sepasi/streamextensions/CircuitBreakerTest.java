@@ -0,0 +1,86 @@
+package arash.sepasi.streamextensions;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void wrap_DeadDependency_ExpectBreakerOpensAndStopsCalling() {
+        final AtomicInteger calls = new AtomicInteger();
+        final CircuitBreaker breaker = new CircuitBreaker(0.5, 10, Duration.ofMinutes(1));
+        final FunctionExtensions.ExceptionThrowingFunction<Integer, String> mapper = breaker.wrap(i -> {
+            calls.incrementAndGet();
+            throw new Exception("Dependency is down");
+        });
+        List<String> actualResults = StreamExtensions.removeExceptionsFromStream(IntStream.range(0, 1000).boxed(), mapper).collect(Collectors.toList());
+        Assert.assertTrue(actualResults.isEmpty());
+        Assert.assertEquals(10, calls.get());
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void wrap_WithFallback_ExpectFallbackWhileOpen() {
+        final CircuitBreaker breaker = new CircuitBreaker(1, 2, Duration.ofMinutes(1));
+        final FunctionExtensions.ExceptionThrowingFunction<Integer, String> mapper = breaker.wrap(i -> {
+            throw new Exception("Dependency is down");
+        }, i -> "fallback" + i);
+        Assert.assertFalse(StreamExtensions.FunctionExtensions.returnOptional(mapper, 0).isPresent());
+        Assert.assertFalse(StreamExtensions.FunctionExtensions.returnOptional(mapper, 1).isPresent());
+        Assert.assertEquals("fallback2", StreamExtensions.FunctionExtensions.returnOptional(mapper, 2).get());
+    }
+
+    @Test
+    public void wrap_DependencyRecovers_ExpectHalfOpenTrialClosesBreaker() throws Exception {
+        final AtomicBoolean down = new AtomicBoolean(true);
+        final CircuitBreaker breaker = new CircuitBreaker(0.5, 4, 2, Duration.ofMillis(20), 1);
+        final FunctionExtensions.ExceptionThrowingSupplier<String> supplier = breaker.wrap(() -> {
+            if(down.get())
+                throw new Exception("Dependency is down");
+            return MethodsForTesting.RESULT;
+        });
+        StreamExtensions.SupplierExtensions.returnOptional(supplier);
+        StreamExtensions.SupplierExtensions.returnOptional(supplier);
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        down.set(false);
+        Assert.assertFalse(StreamExtensions.SupplierExtensions.returnOptional(supplier).isPresent());
+        Thread.sleep(30);
+        Assert.assertEquals(MethodsForTesting.RESULT, supplier.get());
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void wrap_HalfOpenTrialThrowsError_ExpectBreakerReopensAndRecovers() throws Exception {
+        final AtomicBoolean broken = new AtomicBoolean(true);
+        final CircuitBreaker breaker = new CircuitBreaker(0.5, 2, 1, Duration.ofMillis(20), 1);
+        final FunctionExtensions.ExceptionThrowingSupplier<String> supplier = breaker.wrap(() -> {
+            if(broken.get())
+                throw new AssertionError("Dependency is broken");
+            return MethodsForTesting.RESULT;
+        });
+        try {
+            supplier.get();
+            Assert.fail();
+        } catch(AssertionError e) {
+            Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        }
+        Thread.sleep(30);
+        try {
+            supplier.get();
+            Assert.fail();
+        } catch(AssertionError e) {
+            Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        }
+        broken.set(false);
+        Thread.sleep(30);
+        Assert.assertEquals(MethodsForTesting.RESULT, supplier.get());
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+}
@@ -0,0 +1,256 @@
+package arash.sepasi.streamextensions;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class ExceptionTolerantProcessorTest {
+
+    private static final FunctionExtensions.ExceptionThrowingFunction<Integer, Integer> FAIL_ON_EVENS = i -> {
+        if(i % 2 == 0)
+            throw new Exception("Mapper caught even number " + i);
+        return i;
+    };
+
+    private static class RecordingSubscriber<T> implements Subscriber<T> {
+        final List<T> received = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch terminated = new CountDownLatch(1);
+        final long initialRequest;
+        volatile Subscription subscription;
+        volatile Throwable error;
+        volatile boolean completed;
+
+        RecordingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            subscription = s;
+            if(initialRequest > 0)
+                s.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(T t) {
+            received.add(t);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+            terminated.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+            terminated.countDown();
+        }
+    }
+
+    /**
+     * A source recording the total demand it received.
+     */
+    private static class DemandRecordingPublisher<T> implements Publisher<T> {
+        final Publisher<T> delegate;
+        final AtomicLong requested = new AtomicLong();
+
+        DemandRecordingPublisher(Publisher<T> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super T> subscriber) {
+            delegate.subscribe(new Subscriber<T>() {
+                @Override
+                public void onSubscribe(Subscription s) {
+                    subscriber.onSubscribe(new Subscription() {
+                        @Override
+                        public void request(long n) {
+                            requested.addAndGet(n);
+                            s.request(n);
+                        }
+
+                        @Override
+                        public void cancel() {
+                            s.cancel();
+                        }
+                    });
+                }
+
+                @Override
+                public void onNext(T t) {
+                    subscriber.onNext(t);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    subscriber.onError(t);
+                }
+
+                @Override
+                public void onComplete() {
+                    subscriber.onComplete();
+                }
+            });
+        }
+    }
+
+    @Test
+    public void processor_FailingElements_ExpectOnlySuccessesAndFailuresInHandler() throws Exception {
+        final List<Integer> failed = new ArrayList<>();
+        final ExceptionTolerantProcessor<Integer, Integer> processor = new ExceptionTolerantProcessor<>(FAIL_ON_EVENS, 1, 16, null,
+                (e, i) -> failed.add(i));
+        final RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<>(Long.MAX_VALUE);
+        processor.subscribe(subscriber);
+        new IterablePublisher<>(IntStream.range(0, 100).boxed().collect(Collectors.toList())).subscribe(processor);
+        Assert.assertTrue(subscriber.terminated.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(subscriber.completed);
+        Assert.assertEquals(IntStream.range(0, 100).filter(i -> i % 2 != 0).boxed().collect(Collectors.toList()), subscriber.received);
+        Assert.assertEquals(IntStream.range(0, 100).filter(i -> i % 2 == 0).boxed().collect(Collectors.toList()), failed);
+    }
+
+    @Test
+    public void processor_SlowSubscriber_ExpectDemandBoundedByPrefetch() {
+        final DemandRecordingPublisher<Integer> source = new DemandRecordingPublisher<>(
+                new IterablePublisher<>(IntStream.range(0, 1000).boxed().collect(Collectors.toList())));
+        final ExceptionTolerantProcessor<Integer, Integer> processor = new ExceptionTolerantProcessor<>(i -> i, 1, 8);
+        final RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<>(0);
+        processor.subscribe(subscriber);
+        source.subscribe(processor);
+        Assert.assertTrue(subscriber.received.isEmpty());
+        Assert.assertEquals(8, source.requested.get());
+        subscriber.subscription.request(3);
+        Assert.assertEquals(Arrays.asList(0, 1, 2), subscriber.received);
+        Assert.assertTrue(source.requested.get() - subscriber.received.size() <= 8 + 1);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        Assert.assertEquals(1000, subscriber.received.size());
+        Assert.assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void processor_ParallelMapping_ExpectOutputsInOrder() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final ExceptionTolerantProcessor<Integer, Integer> processor = new ExceptionTolerantProcessor<>(i -> {
+                Thread.sleep(i % 3);
+                return FAIL_ON_EVENS.apply(i);
+            }, 4, 32, executor, (e, i) -> { });
+            final RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<>(Long.MAX_VALUE);
+            processor.subscribe(subscriber);
+            new IterablePublisher<>(IntStream.range(0, 200).boxed().collect(Collectors.toList())).subscribe(processor);
+            Assert.assertTrue(subscriber.terminated.await(10, TimeUnit.SECONDS));
+            Assert.assertEquals(IntStream.range(0, 200).filter(i -> i % 2 != 0).boxed().collect(Collectors.toList()), subscriber.received);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void processor_SourceError_ExpectErrorAfterReceivedElements() {
+        final ExceptionTolerantProcessor<Integer, Integer> processor = new ExceptionTolerantProcessor<>(i -> i);
+        final RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<>(Long.MAX_VALUE);
+        processor.subscribe(subscriber);
+        processor.onSubscribe(new Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        processor.onNext(1);
+        processor.onNext(2);
+        processor.onError(new IllegalStateException("Source failed"));
+        Assert.assertEquals(Arrays.asList(1, 2), subscriber.received);
+        Assert.assertTrue(subscriber.error instanceof IllegalStateException);
+    }
+
+    @Test
+    public void processor_SecondSubscriber_ExpectIllegalStateException() {
+        final ExceptionTolerantProcessor<Integer, Integer> processor = new ExceptionTolerantProcessor<>(i -> i);
+        processor.subscribe(new RecordingSubscriber<>(1));
+        final RecordingSubscriber<Integer> second = new RecordingSubscriber<>(1);
+        processor.subscribe(second);
+        Assert.assertTrue(second.error instanceof IllegalStateException);
+    }
+
+    @Test
+    public void processor_NonPositiveRequest_ExpectIllegalArgumentException() {
+        final ExceptionTolerantProcessor<Integer, Integer> processor = new ExceptionTolerantProcessor<>(i -> i);
+        final RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<>(0);
+        processor.subscribe(subscriber);
+        subscriber.subscription.request(0);
+        Assert.assertTrue(subscriber.error instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void processor_MapperThrowsErrorOnExecutor_ExpectErrorDownstreamAndUpstreamCancelled() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final CancelRecordingSubscription upstream = new CancelRecordingSubscription();
+            final ExceptionTolerantProcessor<Integer, Integer> processor = new ExceptionTolerantProcessor<>(i -> {
+                if(i == 3)
+                    throw new AssertionError("Error on " + i);
+                return i;
+            }, 2, 16, executor, (e, i) -> { });
+            final RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<>(Long.MAX_VALUE);
+            processor.subscribe(subscriber);
+            processor.onSubscribe(upstream);
+            for(int i = 0; i < 6; i++)
+                processor.onNext(i);
+            Assert.assertTrue(subscriber.terminated.await(5, TimeUnit.SECONDS));
+            Assert.assertTrue(subscriber.error instanceof AssertionError);
+            Assert.assertEquals(Arrays.asList(0, 1, 2), subscriber.received);
+            Assert.assertTrue(upstream.cancelled);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void processor_ThrowingFailureHandler_ExpectErrorDownstreamAndNoStall() {
+        final CancelRecordingSubscription upstream = new CancelRecordingSubscription();
+        final ExceptionTolerantProcessor<Integer, Integer> processor = new ExceptionTolerantProcessor<>(FAIL_ON_EVENS, 1, 16, null, (e, i) -> {
+            throw new IllegalStateException("Handler failed on " + i);
+        });
+        final RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<>(Long.MAX_VALUE);
+        processor.subscribe(subscriber);
+        processor.onSubscribe(upstream);
+        processor.onNext(1);
+        processor.onNext(2);
+        processor.onNext(3);
+        Assert.assertEquals(Arrays.asList(1), subscriber.received);
+        Assert.assertTrue(subscriber.error instanceof IllegalStateException);
+        Assert.assertTrue(upstream.cancelled);
+    }
+
+    private static class CancelRecordingSubscription implements Subscription {
+        volatile boolean cancelled;
+
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package arash.sepasi.streamextensions;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.stream.IntStream;
+
+public class FailureLoggerTest {
+
+    private static final Object MAPPER = (FunctionExtensions.ExceptionThrowingFunction<Integer, Integer>) i -> i;
+
+    private static long logged(FailureLogPolicy policy, Exception e, int failures) {
+        final FailureLogger logger = new FailureLogger(policy, LoggerFactory.getLogger(FailureLoggerTest.class));
+        return IntStream.range(0, failures).filter(i -> logger.shouldLog(MAPPER, e)).count();
+    }
+
+    @Test
+    public void shouldLog_All_ExpectEveryFailureLogged() {
+        Assert.assertEquals(100, logged(FailureLogPolicy.ALL, new Exception(), 100));
+    }
+
+    @Test
+    public void shouldLog_Off_ExpectNothingLogged() {
+        Assert.assertEquals(0, logged(FailureLogPolicy.OFF, new Exception(), 100));
+    }
+
+    @Test
+    public void shouldLog_Sampled_ExpectOneInN() {
+        Assert.assertEquals(10, logged(FailureLogPolicy.ALL.sampled(10), new Exception(), 100));
+    }
+
+    @Test
+    public void shouldLog_RateLimited_ExpectBurstOnly() {
+        Assert.assertEquals(5, logged(FailureLogPolicy.ALL.rateLimited(0.1, 5), new Exception(), 100));
+    }
+
+    @Test
+    public void shouldLog_Deduplicated_ExpectOncePerExceptionClass() {
+        final FailureLogger logger = new FailureLogger(FailureLogPolicy.ALL.deduplicated(Duration.ofMinutes(1)), LoggerFactory.getLogger(FailureLoggerTest.class));
+        Assert.assertTrue(logger.shouldLog(MAPPER, new Exception()));
+        Assert.assertFalse(logger.shouldLog(MAPPER, new Exception()));
+        Assert.assertTrue(logger.shouldLog(MAPPER, new IOException()));
+        Assert.assertTrue(logger.shouldLog((FunctionExtensions.ExceptionThrowingFunction<Integer, Integer>) i -> -i, new Exception()));
+    }
+
+    @Test
+    public void shouldLogReturnOptional_WithoutReturnOptionalLogging_ExpectNothingLogged() {
+        final FailureLogger logger = new FailureLogger(FailureLogPolicy.ALL.withoutReturnOptionalLogging(), LoggerFactory.getLogger(FailureLoggerTest.class));
+        Assert.assertFalse(logger.shouldLogReturnOptional(MAPPER, new Exception()));
+        Assert.assertTrue(logger.shouldLog(MAPPER, new Exception()));
+    }
+
+    @Test
+    public void shouldLog_NamedLambdaCreatedPerCall_ExpectStateSharedByName() {
+        final FailureLogger logger = new FailureLogger(FailureLogPolicy.ALL.deduplicated(Duration.ofMinutes(1)), LoggerFactory.getLogger(FailureLoggerTest.class));
+        final long logged = IntStream.range(0, 100)
+                .mapToObj(n -> StreamExtensions.FunctionExtensions.<Integer, Integer>named("addOffset", i -> i + n))
+                .filter(mapper -> logger.shouldLog(mapper, new Exception()))
+                .count();
+        Assert.assertEquals(1, logged);
+    }
+
+    @Test
+    public void shouldLog_UnnamedMappersOfSameClass_ExpectSeparateStates() {
+        final FailureLogger logger = new FailureLogger(FailureLogPolicy.ALL.deduplicated(Duration.ofMinutes(1)), LoggerFactory.getLogger(FailureLoggerTest.class));
+        final long logged = IntStream.range(0, 3)
+                .mapToObj(n -> StreamExtensions.FunctionExtensions.withTimeout((Integer i) -> i + n, Duration.ofSeconds(1)))
+                .filter(mapper -> logger.shouldLog(mapper, new Exception()) && !logger.shouldLog(mapper, new Exception()))
+                .count();
+        Assert.assertEquals(3, logged);
+    }
+}
@@ -1,16 +1,41 @@
 package arash.sepasi.streamextensions;
 
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.DoubleStream;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -21,6 +46,9 @@ public class StreamExtensionsTest {
     private final static Logger LOG = LoggerFactory.getLogger(StreamExtensionsTest.class);
 
     private final static String INPUT = "INPUT";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
     private final static MethodsForTesting.ExceptionThrowingClass claxx = new MethodsForTesting.ExceptionThrowingClass();
 
     // ===== throwRuntimeException Tests ===== //
@@ -105,6 +133,51 @@ public class StreamExtensionsTest {
         StreamExtensions.FunctionExtensions.throwRuntimeException(claxx::exceptionThrowingTriFunction, INPUT, INPUT, INPUT);
     }
 
+    @Test
+    public void throwRuntimeException_DiFunction_ExpectWrappedCheckedExceptionWithCauseAndInputs() {
+        try {
+            StreamExtensions.FunctionExtensions.throwRuntimeException(MethodsForTesting::exceptionThrowingDiFunction, INPUT, "OTHER");
+            Assert.fail();
+        } catch(WrappedCheckedException e) {
+            Assert.assertEquals("StaticDiFunction", e.getCause().getMessage());
+            Assert.assertArrayEquals(new Object[]{INPUT, "OTHER"}, e.getInputs());
+            Assert.assertTrue(e.getMessage().endsWith(" with inputs (INPUT, OTHER): StaticDiFunction"));
+            Assert.assertTrue(e.getStackTrace().length > 0);
+        }
+    }
+
+    @Test
+    public void withoutStackTrace_ExpectNoStackTrace() {
+        final WrappedCheckedException e = WrappedCheckedException.withoutStackTrace(new Exception("Cause"), "function", INPUT);
+        Assert.assertEquals(0, e.getStackTrace().length);
+        Assert.assertEquals("Caught an exception when evaluating function with inputs (INPUT): Cause", e.getMessage());
+    }
+
+    @Test
+    public void handleException_TriFunctionWithQuadHandler_ExpectTypedExceptionAndInputs() {
+        final String res = StreamExtensions.FunctionExtensions.handleException(MethodsForTesting::<String, Integer, Boolean, String>exceptionThrowingTriFunction,
+                INPUT, 3, true, (e, i1, i2, i3) -> e.getMessage() + " " + i1.toLowerCase() + " " + (i2 + 1) + " " + !i3);
+        Assert.assertEquals("StaticTriFunction input 4 false", res);
+    }
+
+    @Test
+    public void handleException_TriConsumerWithQuadHandler_ExpectTypedExceptionAndInputs() {
+        final List<Object> handled = new ArrayList<>();
+        StreamExtensions.ConsumerExtensions.handleException(MethodsForTesting::<String, Integer, Boolean>exceptionThrowingTriConsumer, INPUT, 3, true,
+                (e, i1, i2, i3) -> handled.addAll(Arrays.asList(e.getMessage(), i1, i2, i3)));
+        Assert.assertEquals(Arrays.asList("StaticTriConsumer", INPUT, 3, true), handled);
+    }
+
+    @Test
+    public void runtimeExceptionText_FixedArity_ExpectSameTextAsVarargs() {
+        final Exception e = new Exception("Cause");
+        Assert.assertEquals(StreamExtensions.runtimeExceptionText(e, "f", new Object[0]), StreamExtensions.runtimeExceptionText(e, "f"));
+        Assert.assertEquals(StreamExtensions.runtimeExceptionText(e, "f", new Object[]{null}), StreamExtensions.runtimeExceptionText(e, "f", (Object) null));
+        Assert.assertEquals(StreamExtensions.runtimeExceptionText(e, "f", new Object[]{1, 2}), StreamExtensions.runtimeExceptionText(e, "f", 1, 2));
+        Assert.assertEquals("Caught an exception when evaluating f with inputs (1, null, 3): Cause", StreamExtensions.runtimeExceptionText(e, "f", 1, null, 3));
+        Assert.assertEquals(StreamExtensions.runtimeExceptionText(e, "f", new Object[]{1, null, 3}), StreamExtensions.runtimeExceptionText(e, "f", 1, null, 3));
+    }
+
     // ===== returnOptional Tests ===== //
 
     @Test
@@ -236,6 +309,29 @@ public class StreamExtensionsTest {
         Assert.assertEquals(expectedResults, actualResults);
     }
 
+    @Test
+    public void removeExceptionsFromStream_ParallelIntegerStream_ThrowExceptionOnEvens_ExpectOnlyOddsInOrder() {
+        final FunctionExtensions.ExceptionThrowingFunction<Integer, String> mapper = i -> {
+            if(i%2 ==0)
+                throw new Exception("Mapper caught even number " + i);
+            else
+                return i.toString();
+        };
+        List<String> expectedResults = IntStream.range(0, 1000)
+                .filter(i -> i%2!=0)
+                .mapToObj(i -> String.valueOf(i))
+                .collect(Collectors.toList());
+        List<String> actualResults = StreamExtensions.removeExceptionsFromStream(IntStream.range(0,1000).boxed().parallel(), mapper).collect(Collectors.toList());
+        Assert.assertEquals(expectedResults, actualResults);
+    }
+
+    @Test
+    public void removeExceptionsFromStream_IntegerStream_MapEvensToNull_ExpectOnlyOdds() {
+        final FunctionExtensions.ExceptionThrowingFunction<Integer, String> mapper = i -> i%2==0 ? null : i.toString();
+        List<String> actualResults = StreamExtensions.removeExceptionsFromStream(IntStream.range(0,4).boxed(), mapper).collect(Collectors.toList());
+        Assert.assertEquals(Arrays.asList("1", "3"), actualResults);
+    }
+
     @Test
     public void splitExceptionsFromStream_IntegerStream_AlwaysThrowException_ExpectEmptyGoodStreamAndAllInBadStream() {
         final FunctionExtensions.ExceptionThrowingFunction<Integer, String> mapper = i -> {
@@ -272,4 +368,797 @@ public class StreamExtensionsTest {
         Assert.assertEquals(expectedGoodResults, actualGoodResults);
         Assert.assertEquals(expectedBadResults, actualBadResults);
     }
+
+    @Test
+    public void removeExceptionsFromStream_UnorderedParallelStream_ExpectUnorderedSpliterator() {
+        final Stream<Integer> result = StreamExtensions.removeExceptionsFromStream(IntStream.range(0, 1000).boxed().parallel(), i -> i, Ordering.UNORDERED);
+        Assert.assertFalse(result.spliterator().hasCharacteristics(Spliterator.ORDERED));
+    }
+
+    @Test
+    public void removeExceptionsFromStream_BestEffortOrdering_ExpectOrderOnlyForSequentialStreams() {
+        final Stream<Integer> sequential = StreamExtensions.removeExceptionsFromStream(IntStream.range(0, 1000).boxed(), i -> i, Ordering.BEST_EFFORT);
+        final Stream<Integer> parallel = StreamExtensions.removeExceptionsFromStream(IntStream.range(0, 1000).boxed().parallel(), i -> i, Ordering.BEST_EFFORT);
+        Assert.assertTrue(sequential.spliterator().hasCharacteristics(Spliterator.ORDERED));
+        Assert.assertFalse(parallel.spliterator().hasCharacteristics(Spliterator.ORDERED));
+    }
+
+    @Test
+    public void splitExceptionsFromStream_UnorderedParallelStream_ExpectAllOutputsAndBadInputs() {
+        StreamExtensions.Tuple<Stream<Integer>, Stream<Integer>> results = StreamExtensions.splitExceptionsFromStream(
+                IntStream.range(0, 10000).boxed().parallel(), i -> {
+                    if(i%2 == 0)
+                        throw new Exception("Mapper caught even number " + i);
+                    return i;
+                }, Ordering.UNORDERED);
+        Set<Integer> actualGoodResults = results.getFirst().collect(Collectors.toSet());
+        Set<Integer> actualBadResults = results.getSecond().collect(Collectors.toSet());
+        Assert.assertEquals(IntStream.range(0, 10000).filter(i -> i%2 != 0).boxed().collect(Collectors.toSet()), actualGoodResults);
+        Assert.assertEquals(IntStream.range(0, 10000).filter(i -> i%2 == 0).boxed().collect(Collectors.toSet()), actualBadResults);
+    }
+
+    @Test
+    public void splitExceptions_ParallelIntegerStream_ThrowExceptionOnEvens_ExpectOddsAsSuccessesAndEvensAsFailures() {
+        final FunctionExtensions.ExceptionThrowingFunction<Integer, String> mapper = i -> {
+            if(i%2 ==0)
+                throw new Exception("Mapper caught even number " + i);
+            else
+                return i.toString();
+        };
+        List<String> expectedSuccesses = IntStream.range(0, 1000)
+                .filter(i -> i%2!=0)
+                .mapToObj(i -> String.valueOf(i))
+                .collect(Collectors.toList());
+        List<Integer> expectedFailures = IntStream.range(0, 1000)
+                .filter(i -> i%2==0)
+                .boxed()
+                .collect(Collectors.toList());
+        SplitResult<Integer, String> result = IntStream.range(0, 1000).boxed().parallel().collect(StreamExtensions.splitExceptions(mapper));
+        Assert.assertEquals(expectedSuccesses, result.getSuccesses());
+        Assert.assertEquals(expectedFailures, result.getFailedInputs());
+        Assert.assertEquals("Mapper caught even number 0", result.getFailures().get(0).getSecond().getMessage());
+    }
+
+    @Test
+    public void removeExceptionsMapToLong_StringStream_SomeUnparseable_ExpectOnlyParsedValues() {
+        long[] actualResults = StreamExtensions.removeExceptionsMapToLong(Stream.of("1", "x", "3", "", "5"), Long::parseLong).toArray();
+        Assert.assertArrayEquals(new long[]{1, 3, 5}, actualResults);
+    }
+
+    @Test
+    public void removeExceptionsMapToLong_WithFailureHandler_ExpectUnparseableInputsInHandler() {
+        final List<String> failed = new ArrayList<>();
+        long[] actualResults = StreamExtensions.removeExceptionsMapToLong(Stream.of("1", "x", "3", ""), Long::parseLong, (e, s) -> failed.add(s)).toArray();
+        Assert.assertArrayEquals(new long[]{1, 3}, actualResults);
+        Assert.assertEquals(Arrays.asList("x", ""), failed);
+    }
+
+    @Test
+    public void removeExceptionsFromDoubleStream_WithFailureHandler_ExpectFailedValuesInHandler() {
+        final List<Double> failed = new ArrayList<>();
+        double[] actualResults = StreamExtensions.removeExceptionsFromDoubleStream(DoubleStream.of(1, -4, 9), d -> {
+            if(d < 0)
+                throw new Exception("Negative " + d);
+            return Math.sqrt(d);
+        }, (e, d) -> failed.add(d)).toArray();
+        Assert.assertArrayEquals(new double[]{1, 3}, actualResults, 0);
+        Assert.assertEquals(Arrays.asList(-4.0), failed);
+    }
+
+    @Test
+    public void removeExceptionsFromIntStream_ParallelIntStream_ThrowExceptionOnEvens_ExpectOnlyOddsInOrder() {
+        final FunctionExtensions.ExceptionThrowingIntUnaryOperator mapper = i -> {
+            if(i%2 ==0)
+                throw new Exception("Mapper caught even number " + i);
+            else
+                return i * 10;
+        };
+        int[] expectedResults = IntStream.range(0, 1000).filter(i -> i%2!=0).map(i -> i * 10).toArray();
+        int[] actualResults = StreamExtensions.removeExceptionsFromIntStream(IntStream.range(0, 1000).parallel(), mapper).toArray();
+        Assert.assertArrayEquals(expectedResults, actualResults);
+    }
+
+    @Test
+    public void mapAsync_IntegerStream_ThrowExceptionOnEvens_ExpectOnlyOddsInOrderAndEvensInFailures() {
+        final FunctionExtensions.ExceptionThrowingFunction<Integer, String> mapper = i -> {
+            Thread.sleep(i%3);
+            if(i%2 ==0)
+                throw new Exception("Mapper caught even number " + i);
+            else
+                return i.toString();
+        };
+        List<String> expectedResults = IntStream.range(0, 100)
+                .filter(i -> i%2!=0)
+                .mapToObj(i -> String.valueOf(i))
+                .collect(Collectors.toList());
+        List<Integer> failures = new ArrayList<>();
+        List<String> actualResults = StreamExtensions.mapAsync(IntStream.range(0, 100).boxed(), mapper, 8, ForkJoinPool.commonPool(), true, (e, i) -> failures.add(i))
+                .collect(Collectors.toList());
+        Assert.assertEquals(expectedResults, actualResults);
+        Assert.assertEquals(50, failures.size());
+    }
+
+    @Test
+    public void mapAsync_Unordered_ExpectAllResultsWithBoundedConcurrency() {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final FunctionExtensions.ExceptionThrowingFunction<Integer, Integer> mapper = i -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(1);
+            running.decrementAndGet();
+            return i;
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            Set<Integer> actualResults = StreamExtensions.mapAsync(IntStream.range(0, 200).boxed(), mapper, 4, executor, false, (e, i) -> {})
+                    .collect(Collectors.toSet());
+            Assert.assertEquals(IntStream.range(0, 200).boxed().collect(Collectors.toSet()), actualResults);
+            Assert.assertTrue(maxRunning.get() <= 4);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void mapAsync_InfiniteSourceWithOutstandingMappings_ExpectUnknownSize() {
+        final Spliterator<Integer> spliterator = StreamExtensions.mapAsync(Stream.iterate(0, i -> i + 1), i -> i, 4).spliterator();
+        Assert.assertTrue(spliterator.tryAdvance(i -> {}));
+        Assert.assertEquals(Long.MAX_VALUE, spliterator.estimateSize());
+    }
+
+    // ===== retry Tests ===== //
+
+    @Test
+    public void retry_SupplierFailingTwice_ExpectResultOnThirdAttempt() {
+        final AtomicInteger attempts = new AtomicInteger();
+        final String res = StreamExtensions.SupplierExtensions.retry(() -> {
+            if(attempts.incrementAndGet() < 3)
+                throw new Exception("Attempt " + attempts.get());
+            return MethodsForTesting.RESULT;
+        }, RetryPolicy.fixed(3, Duration.ofMillis(1)));
+        Assert.assertEquals(MethodsForTesting.RESULT, res);
+        Assert.assertEquals(3, attempts.get());
+    }
+
+    @Test
+    public void retry_ExceptionThrowingFunction_ExpectRuntimeExceptionCausedByLastException() {
+        try {
+            StreamExtensions.FunctionExtensions.retry(MethodsForTesting::exceptionThrowingFunction, INPUT, RetryPolicy.exponential(3, Duration.ofMillis(1), Duration.ofMillis(2)).withJitter(0.5));
+            Assert.fail();
+        } catch(RuntimeException e) {
+            Assert.assertEquals("StaticFunction", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void retry_NonRetryableException_ExpectSingleAttempt() {
+        final AtomicInteger attempts = new AtomicInteger();
+        try {
+            StreamExtensions.SupplierExtensions.retry(() -> {
+                attempts.incrementAndGet();
+                throw new IllegalArgumentException("Not retryable");
+            }, RetryPolicy.fixed(5, Duration.ofMillis(1)).retryOn(e -> !(e instanceof IllegalArgumentException)));
+            Assert.fail();
+        } catch(RuntimeException e) {
+            Assert.assertEquals(1, attempts.get());
+        }
+    }
+
+    @Test
+    public void removeExceptionsFromStream_WithRetryPolicy_ExpectTransientFailuresRetriedAndPermanentFailuresRemoved() {
+        final Map<Integer, AtomicInteger> attempts = new ConcurrentHashMap<>();
+        final FunctionExtensions.ExceptionThrowingFunction<Integer, Integer> mapper = i -> {
+            final int attempt = attempts.computeIfAbsent(i, k -> new AtomicInteger()).incrementAndGet();
+            if(i%5 == 0)
+                throw new Exception("Permanent failure for " + i);
+            if(i%2 == 0 && attempt < 3)
+                throw new Exception("Transient failure for " + i);
+            return i;
+        };
+        final List<Integer> failures = new ArrayList<>();
+        final Set<Integer> actualResults = StreamExtensions.removeExceptionsFromStream(IntStream.range(0, 20).boxed(), mapper,
+                RetryPolicy.fixed(3, Duration.ofMillis(5)), (e, i) -> failures.add(i))
+                .collect(Collectors.toSet());
+        Assert.assertEquals(IntStream.range(0, 20).filter(i -> i%5 != 0).boxed().collect(Collectors.toSet()), actualResults);
+        Assert.assertEquals(Arrays.asList(0, 5, 10, 15), failures.stream().sorted().collect(Collectors.toList()));
+        Assert.assertEquals(3, attempts.get(5).get());
+    }
+
+    @Test
+    public void removeExceptionsFromStream_WithRetryPolicyOnInfiniteSource_ExpectUnknownSize() {
+        final Spliterator<Integer> spliterator = StreamExtensions.removeExceptionsFromStream(Stream.iterate(0, i -> i + 1), i -> {
+            if(i == 0)
+                throw new Exception("Transient failure for " + i);
+            return i;
+        }, RetryPolicy.fixed(3, Duration.ofMinutes(1))).spliterator();
+        Assert.assertTrue(spliterator.tryAdvance(i -> {}));
+        Assert.assertEquals(Long.MAX_VALUE, spliterator.estimateSize());
+    }
+
+    // ===== Metrics Tests ===== //
+
+    @Test
+    public void setMetrics_LongAdderMetrics_ExpectCountsPerMapper() {
+        final FunctionExtensions.ExceptionThrowingFunction<Integer, String> mapper = i -> {
+            if(i%2 ==0)
+                throw new IllegalArgumentException("Mapper caught even number " + i);
+            else
+                return i.toString();
+        };
+        final LongAdderMetrics metrics = new LongAdderMetrics();
+        StreamExtensions.setMetrics(metrics);
+        try {
+            StreamExtensions.removeExceptionsFromStream(IntStream.range(0, 10).boxed().parallel(), mapper).count();
+            IntStream.range(0, 4).boxed().collect(StreamExtensions.splitExceptions(mapper));
+        } finally {
+            StreamExtensions.setMetrics(null);
+        }
+        final LongAdderMetrics.Snapshot snapshot = metrics.snapshot().get(mapper.toString());
+        Assert.assertEquals(14, snapshot.getInvocations());
+        Assert.assertEquals(7, snapshot.getSuccesses());
+        Assert.assertEquals(5, snapshot.getDropped());
+        Assert.assertEquals(2, snapshot.getSplit());
+        Assert.assertEquals(Long.valueOf(7), snapshot.getFailuresByType().get(IllegalArgumentException.class.getName()));
+        Assert.assertTrue(snapshot.getLatencyPercentileNanos(99) >= snapshot.getLatencyPercentileNanos(50));
+    }
+
+    @Test
+    public void setMetrics_NamedLambdaCreatedPerCall_ExpectOneEntryPerName() {
+        final LongAdderMetrics metrics = new LongAdderMetrics();
+        StreamExtensions.setMetrics(metrics);
+        try {
+            for(int n = 0; n < 100; n++) {
+                final int offset = n;
+                StreamExtensions.removeExceptionsFromStream(Stream.of(1), "addOffset", i -> i + offset).count();
+            }
+        } finally {
+            StreamExtensions.setMetrics(null);
+        }
+        Assert.assertEquals(Collections.singleton("addOffset"), metrics.snapshot().keySet());
+        Assert.assertEquals(100, metrics.snapshot().get("addOffset").getSuccesses());
+    }
+
+    @Test
+    public void setMetrics_WrappersOfSameClass_ExpectSeparateEntries() {
+        final FunctionExtensions.ExceptionThrowingFunction<Integer, Integer> fast = StreamExtensions.FunctionExtensions.withTimeout(
+                StreamExtensions.FunctionExtensions.named("fast", i -> i), Duration.ofSeconds(10));
+        final FunctionExtensions.ExceptionThrowingFunction<Integer, Integer> failing = StreamExtensions.FunctionExtensions.withTimeout(
+                StreamExtensions.FunctionExtensions.named("failing", i -> {
+                    throw new Exception("Failed on " + i);
+                }), Duration.ofSeconds(10));
+        final LongAdderMetrics metrics = new LongAdderMetrics();
+        StreamExtensions.setMetrics(metrics);
+        try {
+            StreamExtensions.removeExceptionsFromStream(Stream.of(1, 2, 3), fast).count();
+            StreamExtensions.removeExceptionsFromStream(Stream.of(1, 2), failing).count();
+        } finally {
+            StreamExtensions.setMetrics(null);
+        }
+        Assert.assertEquals(2, metrics.snapshot().size());
+        Assert.assertEquals(3, metrics.snapshot().get(fast.toString()).getSuccesses());
+        Assert.assertEquals(0, metrics.snapshot().get(fast.toString()).getFailures());
+        Assert.assertEquals(2, metrics.snapshot().get(failing.toString()).getFailures());
+    }
+
+    // ===== mapBatched Tests ===== //
+
+    @Test
+    public void mapBatched_IntegerStream_BatchFailsOnMultiplesOfSeven_ExpectOnlyMultiplesOfSevenRemoved() {
+        final FunctionExtensions.ExceptionThrowingFunction<List<Integer>, List<String>> mapper = batch -> {
+            if(batch.stream().anyMatch(i -> i%7 == 0))
+                throw new Exception("Batch contains a multiple of seven: " + batch);
+            return batch.stream().map(String::valueOf).collect(Collectors.toList());
+        };
+        List<String> expectedResults = IntStream.range(1, 100)
+                .filter(i -> i%7 != 0)
+                .mapToObj(i -> String.valueOf(i))
+                .collect(Collectors.toList());
+        List<Integer> failures = new ArrayList<>();
+        List<String> actualResults = StreamExtensions.mapBatched(IntStream.range(1, 100).boxed(), 32, null, mapper, (e, i) -> failures.add(i))
+                .collect(Collectors.toList());
+        Assert.assertEquals(expectedResults, actualResults);
+        Assert.assertEquals(IntStream.range(1, 100).filter(i -> i%7 == 0).boxed().collect(Collectors.toList()), failures);
+    }
+
+    @Test
+    public void mapBatched_ParallelIntegerStream_ExpectAllResultsInOrderInFullBatches() {
+        final AtomicInteger calls = new AtomicInteger();
+        final FunctionExtensions.ExceptionThrowingFunction<List<Integer>, List<Integer>> mapper = batch -> {
+            calls.incrementAndGet();
+            return batch.stream().map(i -> i * 2).collect(Collectors.toList());
+        };
+        List<Integer> actualResults = StreamExtensions.mapBatched(IntStream.range(0, 10000).boxed().parallel(), 100, Duration.ofSeconds(1), mapper)
+                .collect(Collectors.toList());
+        Assert.assertEquals(IntStream.range(0, 10000).map(i -> i * 2).boxed().collect(Collectors.toList()), actualResults);
+        calls.set(0);
+        StreamExtensions.mapBatched(IntStream.range(0, 10000).boxed(), 100, Duration.ofSeconds(1), mapper).count();
+        Assert.assertEquals(100, calls.get());
+    }
+
+    @Test
+    public void mapBatched_SourceBlocksPastMaxLinger_ExpectBatchClosedWithTheLateInput() {
+        final List<List<Integer>> batches = new ArrayList<>();
+        final FunctionExtensions.ExceptionThrowingFunction<List<Integer>, List<Integer>> mapper = batch -> {
+            batches.add(new ArrayList<>(batch));
+            return batch;
+        };
+        final Stream<Integer> source = IntStream.range(0, 6).boxed().peek(i -> {
+            if(i == 2)
+                StreamExtensions.RunnableExtensions.throwRuntimeException(() -> Thread.sleep(100));
+        });
+        List<Integer> actualResults = StreamExtensions.mapBatched(source, 100, Duration.ofMillis(20), mapper)
+                .collect(Collectors.toList());
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), actualResults);
+        Assert.assertEquals(Arrays.asList(Arrays.asList(0, 1, 2), Arrays.asList(3, 4, 5)), batches);
+    }
+
+    // ===== withTimeout Tests ===== //
+
+    @Test
+    public void withTimeout_HangingSupplier_ExpectTimeoutExceptionAndClearedInterrupt() throws Exception {
+        final FunctionExtensions.ExceptionThrowingSupplier<String> hanging = StreamExtensions.SupplierExtensions.withTimeout(() -> {
+            Thread.sleep(10_000);
+            return MethodsForTesting.RESULT;
+        }, Duration.ofMillis(20));
+        try {
+            hanging.get();
+            Assert.fail();
+        } catch(TimeoutException e) {
+            Assert.assertTrue(e.getCause() instanceof InterruptedException);
+        }
+        Assert.assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    public void withTimeout_InterruptedBeforeCall_ExpectInterruptKeptAfterTimeout() throws Exception {
+        final FunctionExtensions.ExceptionThrowingSupplier<String> hanging = StreamExtensions.SupplierExtensions.withTimeout(() -> {
+            Thread.interrupted();
+            Thread.sleep(10_000);
+            return MethodsForTesting.RESULT;
+        }, Duration.ofMillis(20));
+        Thread.currentThread().interrupt();
+        try {
+            hanging.get();
+            Assert.fail();
+        } catch(TimeoutException e) {
+            Assert.assertTrue(e.getCause() instanceof InterruptedException);
+        } finally {
+            Assert.assertTrue(Thread.interrupted());
+        }
+    }
+
+    @Test
+    public void withTimeout_FastFunction_ExpectResult() throws Exception {
+        Assert.assertEquals(MethodsForTesting.RESULT+INPUT,
+                StreamExtensions.FunctionExtensions.withTimeout(MethodsForTesting::successfulFunction, Duration.ofSeconds(10)).apply(INPUT));
+        Thread.sleep(5);
+        Assert.assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    public void removeExceptionsFromStream_WithTimeout_ExpectHangingElementsRemoved() {
+        final FunctionExtensions.ExceptionThrowingFunction<Integer, Integer> mapper = i -> {
+            if(i%3 == 0)
+                Thread.sleep(10_000);
+            return i;
+        };
+        List<Integer> actualResults = StreamExtensions.removeExceptionsFromStream(IntStream.range(0, 6).boxed(), mapper, Duration.ofMillis(20))
+                .collect(Collectors.toList());
+        Assert.assertEquals(Arrays.asList(1, 2, 4, 5), actualResults);
+    }
+
+    // ===== lines Tests ===== //
+    @Test
+    public void lines_MalformedLines_ExpectParsedLinesAndFailuresWithOffsets() throws Exception {
+        final Path file = folder.newFile().toPath();
+        Files.write(file, "1\r\ntwo\n3\n\n5".getBytes(StandardCharsets.UTF_8));
+        final List<StreamExtensions.Tuple<Long, String>> failures = new ArrayList<>();
+        try(Stream<Integer> lines = StreamExtensions.lines(file, StandardCharsets.UTF_8, l -> Integer.parseInt(l.toString()),
+                (e, l) -> failures.add(l))) {
+            Assert.assertEquals(Arrays.asList(1, 3, 5), lines.collect(Collectors.toList()));
+        }
+        Assert.assertEquals(2, failures.size());
+        Assert.assertEquals(Long.valueOf(3), failures.get(0).getFirst());
+        Assert.assertEquals("two", failures.get(0).getSecond());
+        Assert.assertEquals(Long.valueOf(9), failures.get(1).getFirst());
+        Assert.assertEquals("", failures.get(1).getSecond());
+    }
+
+    @Test
+    public void lines_NonAsciiAndMalformedUtf8_ExpectDecodedLinesAndDecodingFailure() throws Exception {
+        final Path file = folder.newFile().toPath();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write("caf\u00e9\n".getBytes(StandardCharsets.UTF_8));
+        bytes.write(new byte[] { 'a', (byte) 0xC3, '\n' });
+        bytes.write("plain\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(file, bytes.toByteArray());
+        final List<StreamExtensions.Tuple<Long, String>> failures = new ArrayList<>();
+        try(Stream<String> lines = StreamExtensions.lines(file, StandardCharsets.UTF_8, CharSequence::toString, (e, l) -> failures.add(l))) {
+            Assert.assertEquals(Arrays.asList("caf\u00e9", "plain"), lines.collect(Collectors.toList()));
+        }
+        Assert.assertEquals(1, failures.size());
+        Assert.assertEquals(Long.valueOf(6), failures.get(0).getFirst());
+    }
+
+    @Test
+    public void lines_ParallelLargeFile_ExpectSameLinesAsSequential() throws Exception {
+        final Path file = folder.newFile().toPath();
+        Files.write(file, IntStream.range(0, 200000).mapToObj(i -> i % 100 == 0 ? "bad" + i : String.valueOf(i)).collect(Collectors.toList()),
+                StandardCharsets.ISO_8859_1);
+        final AtomicInteger failures = new AtomicInteger();
+        try(Stream<Integer> lines = StreamExtensions.lines(file, StandardCharsets.ISO_8859_1, l -> Integer.parseInt(l.toString()),
+                (e, l) -> failures.incrementAndGet())) {
+            Assert.assertEquals(IntStream.range(0, 200000).filter(i -> i % 100 != 0).boxed().collect(Collectors.toList()),
+                    lines.parallel().collect(Collectors.toList()));
+        }
+        Assert.assertEquals(2000, failures.get());
+    }
+
+    @Test
+    public void lines_LinesCrossingSmallWindows_ExpectWholeLines() throws Exception {
+        final Path file = folder.newFile().toPath();
+        final String longLine = IntStream.range(0, 100).mapToObj(String::valueOf).collect(Collectors.joining());
+        Files.write(file, Arrays.asList("short", longLine, "x", longLine + "y"), StandardCharsets.US_ASCII);
+        try(FileChannel channel = FileChannel.open(file)) {
+            final List<String> actualResults = new ArrayList<>();
+            new MappedLinesSpliterator<>(channel, 0, channel.size(), StandardCharsets.US_ASCII, CharSequence::toString,
+                    (e, l) -> Assert.fail(), StreamExtensionsMetrics.NOOP, 16).forEachRemaining(actualResults::add);
+            Assert.assertEquals(Arrays.asList("short", longLine, "x", longLine + "y"), actualResults);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void lines_Utf16_ExpectIllegalArgumentException() throws Exception {
+        StreamExtensions.lines(folder.newFile().toPath(), StandardCharsets.UTF_16, CharSequence::toString);
+    }
+
+    // ===== aggregateWindows Tests ===== //
+    @Test
+    public void aggregateWindows_TumblingCountWindowsWithFailures_ExpectFailuresCountedPerWindow() {
+        List<WindowAggregate> windows = StreamExtensions.aggregateWindows(IntStream.range(0, 25).boxed(), WindowSpec.tumbling(10), i -> {
+            if(i % 7 == 0)
+                throw new Exception("Multiple of seven " + i);
+            return i;
+        }).collect(Collectors.toList());
+        Assert.assertEquals(3, windows.size());
+        Assert.assertEquals(0, windows.get(0).getStart());
+        Assert.assertEquals(10, windows.get(0).getEnd());
+        Assert.assertEquals(8, windows.get(0).getCount());
+        Assert.assertEquals(2, windows.get(0).getFailureCount());
+        Assert.assertEquals(45 - 7, windows.get(0).getSum(), 0);
+        Assert.assertEquals(1, windows.get(0).getMin(), 0);
+        Assert.assertEquals(9, windows.get(0).getMax(), 0);
+        Assert.assertEquals(1, windows.get(1).getFailureCount());
+        Assert.assertEquals(20, windows.get(2).getStart());
+        Assert.assertEquals(25, windows.get(2).getEnd());
+        Assert.assertEquals(1, windows.get(2).getFailureCount());
+    }
+
+    @Test
+    public void aggregateWindows_SlidingCountWindows_ExpectOverlappingSums() {
+        List<Double> sums = StreamExtensions.aggregateWindows(IntStream.range(0, 8).boxed(), WindowSpec.sliding(4, 2), i -> i)
+                .map(WindowAggregate::getSum)
+                .collect(Collectors.toList());
+        Assert.assertEquals(Arrays.asList(1.0, 6.0, 14.0, 22.0, 13.0), sums);
+    }
+
+    @Test
+    public void aggregateWindows_TumblingTimeWindowsWithGapAndFailingTimestamp_ExpectNonEmptyWindows() {
+        final long[][] events = { { 100, 1 }, { 900, 2 }, { 1500, 3 }, { -1, 0 }, { 5200, 4 } };
+        List<WindowAggregate> windows = StreamExtensions.aggregateWindows(Arrays.stream(events), WindowSpec.tumbling(Duration.ofSeconds(1)),
+                e -> {
+                    if(e[0] < 0)
+                        throw new Exception("No timestamp");
+                    return e[0];
+                }, e -> e[1]).collect(Collectors.toList());
+        Assert.assertEquals(3, windows.size());
+        Assert.assertEquals(2, windows.get(0).getCount());
+        Assert.assertEquals(3, windows.get(0).getSum(), 0);
+        Assert.assertEquals(1000, windows.get(1).getStart());
+        Assert.assertEquals(1, windows.get(1).getFailureCount());
+        Assert.assertEquals(5000, windows.get(2).getStart());
+        Assert.assertEquals(6000, windows.get(2).getEnd());
+        Assert.assertEquals(4, windows.get(2).getMax(), 0);
+    }
+
+    @Test
+    public void aggregateWindows_SlidingTimeWindows_ExpectEveryWindowHoldingAnElement() {
+        List<WindowAggregate> windows = StreamExtensions.aggregateWindows(Stream.of(0L, 6000L), WindowSpec.sliding(Duration.ofSeconds(10), Duration.ofSeconds(5)),
+                t -> t, t -> 1).collect(Collectors.toList());
+        Assert.assertEquals(Arrays.asList(-5000L, 0L, 5000L), windows.stream().map(WindowAggregate::getStart).collect(Collectors.toList()));
+        Assert.assertEquals(Arrays.asList(1L, 2L, 1L), windows.stream().map(WindowAggregate::getCount).collect(Collectors.toList()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void aggregateWindows_TimeWindowsWithoutTimestamp_ExpectIllegalArgumentException() {
+        StreamExtensions.aggregateWindows(Stream.of(1), WindowSpec.tumbling(Duration.ofSeconds(1)), i -> i);
+    }
+
+    // ===== forEachTolerant Tests ===== //
+    @Test
+    public void forEachTolerant_FailingElements_ExpectSummaryCountsAndFailuresInHandler() {
+        final Set<Integer> consumed = ConcurrentHashMap.newKeySet();
+        final Set<Integer> failed = ConcurrentHashMap.newKeySet();
+        ForEachSummary summary = StreamExtensions.ConsumerExtensions.forEachTolerant(IntStream.range(0, 1000).boxed(), i -> {
+            if(i % 3 == 0)
+                throw new Exception("Multiple of three " + i);
+            consumed.add(i);
+        }, ParallelismSpec.threads(4), (e, i) -> failed.add(i));
+        Assert.assertEquals(666, summary.getSucceeded());
+        Assert.assertEquals(334, summary.getFailed());
+        Assert.assertTrue(summary.isComplete());
+        Assert.assertEquals(666, consumed.size());
+        Assert.assertEquals(IntStream.range(0, 1000).filter(i -> i % 3 == 0).boxed().collect(Collectors.toSet()), failed);
+    }
+
+    @Test
+    public void forEachTolerant_SlowElement_ExpectOtherThreadsToTakeTheRemainingWork() {
+        final CountDownLatch othersDone = new CountDownLatch(99);
+        final AtomicInteger waitedForOthers = new AtomicInteger();
+        ForEachSummary summary = StreamExtensions.ConsumerExtensions.forEachTolerant(IntStream.range(0, 100).boxed(), i -> {
+            if(i == 0) {
+                if(othersDone.await(5, TimeUnit.SECONDS))
+                    waitedForOthers.incrementAndGet();
+            } else {
+                othersDone.countDown();
+            }
+        }, ParallelismSpec.threads(2).withChunkSize(1));
+        Assert.assertEquals(1, waitedForOthers.get());
+        Assert.assertEquals(100, summary.getSucceeded());
+    }
+
+    @Test
+    public void forEachTolerant_FullQueue_ExpectCallerToRunChunks() {
+        final Thread caller = Thread.currentThread();
+        final CountDownLatch consumedByCaller = new CountDownLatch(1);
+        ForEachSummary summary = StreamExtensions.ConsumerExtensions.forEachTolerant(IntStream.range(0, 10).boxed(), i -> {
+            if(Thread.currentThread() == caller)
+                consumedByCaller.countDown();
+            else if(i == 0)
+                consumedByCaller.await(5, TimeUnit.SECONDS);
+        }, ParallelismSpec.threads(1).withQueueCapacity(1).withChunkSize(1));
+        Assert.assertEquals(0, consumedByCaller.getCount());
+        Assert.assertTrue(summary.getCallerRunChunks() > 0);
+        Assert.assertEquals(10, summary.getSucceeded());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void forEachTolerant_ThrowingFailureHandler_ExpectExceptionRethrown() {
+        StreamExtensions.ConsumerExtensions.forEachTolerant(IntStream.range(0, 100).boxed(), MethodsForTesting::exceptionThrowingConsumer,
+                ParallelismSpec.threads(2), (e, i) -> {
+                    throw new IllegalStateException("Abort on " + i);
+                });
+    }
+
+    // ===== mapByKey Tests ===== //
+    @Test
+    public void mapByKey_ManyKeys_ExpectPerKeyOrderAndSeveralLanes() {
+        final Set<String> laneThreads = ConcurrentHashMap.newKeySet();
+        final Map<Integer, List<Integer>> outputsByKey = new HashMap<>();
+        StreamExtensions.mapByKey(IntStream.range(0, 20000).boxed(), i -> i % 50, i -> {
+            laneThreads.add(Thread.currentThread().getName());
+            return i;
+        }, LaneSpec.lanes(4).withRingCapacity(16)).forEach(i -> outputsByKey.computeIfAbsent(i % 50, k -> new ArrayList<>()).add(i));
+        Assert.assertEquals(50, outputsByKey.size());
+        for(Map.Entry<Integer, List<Integer>> entry : outputsByKey.entrySet())
+            Assert.assertEquals(IntStream.range(0, 400).map(i -> i * 50 + entry.getKey()).boxed().collect(Collectors.toList()), entry.getValue());
+        Assert.assertTrue(laneThreads.size() > 1);
+    }
+
+    @Test
+    public void mapByKey_FailureWithoutPausing_ExpectOnlyFailingElementRemoved() {
+        final List<Integer> failed = new ArrayList<>();
+        List<Integer> actualResults = StreamExtensions.mapByKey(IntStream.range(0, 10).boxed(), i -> i % 2, i -> {
+            if(i == 4)
+                throw new Exception("Failed on " + i);
+            return i;
+        }, LaneSpec.lanes(2), (e, i) -> failed.add(i)).sorted().collect(Collectors.toList());
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 5, 6, 7, 8, 9), actualResults);
+        Assert.assertEquals(Arrays.asList(4), failed);
+    }
+
+    @Test
+    public void mapByKey_FailureWithPausing_ExpectLaterElementsOfKeyPaused() {
+        final Map<Integer, Exception> failed = new ConcurrentHashMap<>();
+        List<Integer> actualResults = StreamExtensions.mapByKey(IntStream.range(0, 10).boxed(), i -> i % 2, i -> {
+            if(i == 4)
+                throw new Exception("Failed on " + i);
+            return i;
+        }, LaneSpec.lanes(1).pausingKeysOnFailure(), (e, i) -> failed.put(i, e)).collect(Collectors.toList());
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 5, 7, 9), actualResults);
+        Assert.assertEquals(new HashSet<>(Arrays.asList(4, 6, 8)), failed.keySet());
+        Assert.assertTrue(failed.get(6) instanceof LaneSpec.KeyPausedException);
+    }
+
+    @Test(timeout = 10_000)
+    public void mapByKey_MapperThrowsError_ExpectErrorRethrownAndLanesCancelled() throws InterruptedException {
+        final AtomicInteger mapped = new AtomicInteger();
+        try {
+            StreamExtensions.mapByKey(IntStream.range(0, 100000).boxed(), i -> i % 4, i -> {
+                if(i == 5)
+                    throw new AssertionError("Failed on " + i);
+                mapped.incrementAndGet();
+                return i;
+            }, LaneSpec.lanes(2).withRingCapacity(16)).count();
+            Assert.fail();
+        } catch(AssertionError e) {
+            Assert.assertEquals("Failed on 5", e.getMessage());
+        }
+        Thread.sleep(50);
+        final int mappedAfterError = mapped.get();
+        Thread.sleep(50);
+        Assert.assertEquals(mappedAfterError, mapped.get());
+        Assert.assertTrue(mappedAfterError < 100000);
+    }
+
+    @Test
+    public void forEachByKey_FailingKeyExtractorAndConsumer_ExpectSummaryCounts() {
+        ForEachSummary summary = StreamExtensions.ConsumerExtensions.forEachByKey(IntStream.range(0, 1000).boxed(), i -> {
+            if(i % 10 == 0)
+                throw new Exception("No key for " + i);
+            return i % 7;
+        }, i -> {
+            if(i % 10 == 5)
+                throw new Exception("Failed on " + i);
+        }, LaneSpec.lanes(3));
+        Assert.assertEquals(800, summary.getSucceeded());
+        Assert.assertEquals(200, summary.getFailed());
+    }
+
+    @Test
+    public void forEachByKey_WithMetrics_ExpectCallsAndDropsRecordedUnderConsumer() {
+        final FunctionExtensions.ExceptionThrowingConsumer<Integer> consumer = StreamExtensions.ConsumerExtensions.named("consume", i -> {
+            if(i % 10 == 5)
+                throw new Exception("Failed on " + i);
+        });
+        final LongAdderMetrics metrics = new LongAdderMetrics();
+        StreamExtensions.setMetrics(metrics);
+        try {
+            StreamExtensions.ConsumerExtensions.forEachByKey(IntStream.range(0, 100).boxed(), i -> i % 3, consumer, LaneSpec.lanes(2));
+        } finally {
+            StreamExtensions.setMetrics(null);
+        }
+        Assert.assertEquals(Collections.singleton("consume"), metrics.snapshot().keySet());
+        final LongAdderMetrics.Snapshot snapshot = metrics.snapshot().get("consume");
+        Assert.assertEquals(90, snapshot.getSuccesses());
+        Assert.assertEquals(10, snapshot.getFailures());
+        Assert.assertEquals(10, snapshot.getDropped());
+    }
+
+    // ===== zip Tests ===== //
+    @Test
+    public void zip_DifferentLengthsWithFailure_ExpectShortestLengthWithoutFailedPair() {
+        final List<String> failed = new ArrayList<>();
+        List<String> actualResults = StreamExtensions.zip(Stream.of(1, 2, 3, 4), Stream.of("a", "b", "c"), (i, s) -> {
+            if(i == 2)
+                throw new Exception("Failed on " + i);
+            return s + i;
+        }, (e, i, s) -> failed.add(s + i)).collect(Collectors.toList());
+        Assert.assertEquals(Arrays.asList("a1", "c3"), actualResults);
+        Assert.assertEquals(Arrays.asList("b2"), failed);
+    }
+
+    @Test
+    public void zip_ParallelSizedSources_ExpectSplitAndOrderKept() {
+        final List<Integer> left = IntStream.range(0, 100000).boxed().collect(Collectors.toList());
+        final int[] right = IntStream.range(0, 100000).map(i -> 2 * i).toArray();
+        List<Integer> actualResults = StreamExtensions.zip(left.parallelStream(), Arrays.stream(right).boxed(), (i, j) -> j - i).collect(Collectors.toList());
+        Assert.assertEquals(left, actualResults);
+        Assert.assertTrue(StreamExtensions.zip(left.parallelStream(), Arrays.stream(right).boxed(), (i, j) -> i).spliterator().trySplit() != null);
+    }
+
+    @Test
+    public void zip_UnsizedSource_ExpectNoSplit() {
+        final Spliterator<Integer> spliterator = StreamExtensions.zip(IntStream.range(0, 1000).boxed(),
+                Stream.iterate(0, i -> i + 1), (i, j) -> i + j).spliterator();
+        Assert.assertNull(spliterator.trySplit());
+    }
+
+    @Test
+    public void zip_ThreeStreamsWithNullOutput_ExpectFailureWithAllElements() {
+        final List<List<Object>> failed = new ArrayList<>();
+        List<String> actualResults = StreamExtensions.zip(Stream.of(1, 2), Stream.of("a", "b"), Stream.of(true, false),
+                (i, s, b) -> b ? s + i : null, failure -> failed.add(Arrays.asList(failure))).collect(Collectors.toList());
+        Assert.assertEquals(Arrays.asList("a1"), actualResults);
+        Assert.assertEquals(Arrays.asList(Arrays.asList(null, 2, "b", false)), failed);
+    }
+
+    @Test
+    public void hashJoin_DuplicateAndFailingKeys_ExpectMatchingPairsInProbeOrder() {
+        final List<String> failed = new ArrayList<>();
+        List<String> actualResults = StreamExtensions.hashJoin(Stream.of(1, 2, 3, 4), Stream.of("x1", "y1", "bad", "x3", "x4"),
+                i -> i, s -> {
+                    if(s.equals("bad"))
+                        throw new Exception("No key for " + s);
+                    return Integer.parseInt(s.substring(1));
+                }, (i, s) -> {
+                    if(i == 4)
+                        throw new Exception("Failed on " + i);
+                    return s;
+                }, (e, i, s) -> failed.add(i + "/" + s)).collect(Collectors.toList());
+        Assert.assertEquals(Arrays.asList("x1", "y1", "x3"), actualResults);
+        Assert.assertEquals(Arrays.asList("null/bad", "4/x4"), failed);
+    }
+
+    @Test
+    public void hashJoin_ParallelProbe_ExpectAllMatches() {
+        long actualCount = StreamExtensions.hashJoin(IntStream.range(0, 100000).boxed().parallel(), IntStream.range(0, 1000).boxed(),
+                i -> i % 1000, i -> i, (i, j) -> i).count();
+        Assert.assertEquals(100000, actualCount);
+    }
+
+    // ===== mapCheckpointed Tests ===== //
+    @Test
+    public void mapCheckpointed_ClosedThenResumed_ExpectRemainingElementsAndCarriedOverCounts() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("job.checkpoint");
+        final FunctionExtensions.ExceptionThrowingFunction<Integer, Integer> mapper = i -> {
+            if(i % 10 == 0)
+                throw new Exception("Failed on " + i);
+            return i;
+        };
+        final List<Integer> outputs = new ArrayList<>();
+        try(Stream<Integer> firstRun = StreamExtensions.mapCheckpointed(position -> IntStream.range((int) position, 1000).boxed(), mapper,
+                CheckpointSpec.to(file).every(100), (e, i) -> {})) {
+            firstRun.limit(450).forEach(outputs::add);
+        }
+        final Checkpoint stopped = Checkpoint.read(file).get();
+        Assert.assertEquals(500, stopped.getPosition());
+        Assert.assertEquals(450, stopped.getSucceeded());
+        Assert.assertEquals(50, stopped.getFailed());
+        Assert.assertFalse(stopped.isComplete());
+
+        final List<Long> resumedFrom = new ArrayList<>();
+        try(Stream<Integer> secondRun = StreamExtensions.mapCheckpointed(position -> {
+            resumedFrom.add(position);
+            return IntStream.range((int) position, 1000).boxed();
+        }, mapper, CheckpointSpec.to(file).every(100), (e, i) -> {})) {
+            secondRun.forEach(outputs::add);
+        }
+        Assert.assertEquals(Arrays.asList(500L), resumedFrom);
+        Assert.assertEquals(IntStream.range(0, 1000).filter(i -> i % 10 != 0).boxed().collect(Collectors.toList()), outputs);
+        final Checkpoint done = Checkpoint.read(file).get();
+        Assert.assertEquals(1000, done.getPosition());
+        Assert.assertEquals(900, done.getSucceeded());
+        Assert.assertEquals(100, done.getFailed());
+        Assert.assertTrue(done.isComplete());
+        Assert.assertEquals(0, StreamExtensions.mapCheckpointed(position -> Stream.of(1), i -> i, CheckpointSpec.to(file)).count());
+    }
+
+    @Test
+    public void mapCheckpointed_AbandonedWithoutClose_ExpectAsynchronousCheckpoint() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("job.checkpoint");
+        final Iterator<Integer> abandoned = StreamExtensions.mapCheckpointed(position -> IntStream.range((int) position, 1000).boxed(),
+                i -> i, CheckpointSpec.to(file).every(100)).iterator();
+        for(int i = 0; i < 250; i++)
+            abandoned.next();
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while(!Checkpoint.read(file).isPresent() || Checkpoint.read(file).get().getPosition() < 200) {
+            Assert.assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(200, Checkpoint.read(file).get().getPosition());
+        Assert.assertEquals(Integer.valueOf(200), StreamExtensions.mapCheckpointed(position -> IntStream.range((int) position, 1000).boxed(),
+                i -> i, CheckpointSpec.to(file)).findFirst().get());
+    }
+
+    @Test
+    public void mapCheckpointed_SpillingDeadLetterSink_ExpectSpillFileInCheckpointAndDeadLettersSpilled() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("job.checkpoint");
+        final Path spillFile = folder.getRoot().toPath().resolve("dead-letters");
+        final BoundedDeadLetterSink<String> sink = new BoundedDeadLetterSink<>(1000, spillFile, DeadLetterSink.Codec.utf8());
+        try(Stream<Integer> run = StreamExtensions.mapCheckpointed(position -> Stream.of("1", "two", "3", "four").skip(position),
+                Integer::parseInt, CheckpointSpec.to(file), sink)) {
+            Assert.assertEquals(Arrays.asList(1, 3), run.collect(Collectors.toList()));
+        }
+        sink.close();
+        Assert.assertEquals(spillFile, Checkpoint.read(file).get().getDeadLetterFile());
+        try(Stream<DeadLetterSink.DeadLetter<String>> deadLetters = BoundedDeadLetterSink.read(spillFile, DeadLetterSink.Codec.utf8())) {
+            Assert.assertEquals(Arrays.asList("two", "four"), deadLetters.map(DeadLetterSink.DeadLetter::getInput).collect(Collectors.toList()));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void checkpointSpec_NonPositiveInterval_ExpectIllegalArgumentException() {
+        CheckpointSpec.to(folder.getRoot().toPath().resolve("job.checkpoint")).every(0);
+    }
 }
@@ -0,0 +1,78 @@
+package arash.sepasi.streamextensions;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class TolerantCollectorsTest {
+
+    @Test
+    public void toMap_ThrowingKeyMapper_ExpectFailuresAndMapOfTheRest() {
+        TolerantResult<String, Map<Integer, String>> result = Stream.of("1", "two", "3", null)
+                .collect(TolerantCollectors.toMap(Integer::parseInt, s -> s));
+        Assert.assertEquals(2, result.getResult().size());
+        Assert.assertEquals("3", result.getResult().get(3));
+        Assert.assertEquals(Arrays.asList("two", null), result.getFailedInputs());
+        Assert.assertEquals(Long.valueOf(2), result.getFailureCountsByType().get(NumberFormatException.class));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void toMap_DuplicateKeys_ExpectIllegalStateException() {
+        Stream.of(1, 2, 1).collect(TolerantCollectors.toMap(i -> i, i -> i));
+    }
+
+    @Test
+    public void groupingBy_ParallelStreamWithThrowingClassifier_ExpectSameGroupsAsSequential() {
+        final FunctionExtensions.ExceptionThrowingFunction<Integer, Integer> classifier = i -> {
+            if(i % 7 == 0)
+                throw new Exception("Multiple of seven " + i);
+            return i % 3;
+        };
+        TolerantResult<Integer, Map<Integer, Long>> result = IntStream.range(0, 10000).boxed().parallel()
+                .collect(TolerantCollectors.groupingBy(classifier, Collectors.counting()));
+        Map<Integer, Long> expected = IntStream.range(0, 10000).boxed()
+                .filter(i -> i % 7 != 0)
+                .collect(Collectors.groupingBy(i -> i % 3, Collectors.counting()));
+        Assert.assertEquals(expected, result.getResult());
+        Assert.assertEquals(IntStream.range(0, 10000).filter(i -> i % 7 == 0).count(), result.getFailureCount());
+    }
+
+    @Test
+    public void partitioningBy_ThrowingPredicate_ExpectBothPartitionsAndFailures() {
+        TolerantResult<Integer, Map<Boolean, List<Integer>>> result = IntStream.range(0, 10).boxed()
+                .collect(TolerantCollectors.partitioningBy(i -> {
+                    if(i == 5)
+                        throw new Exception("five");
+                    return i % 2 == 0;
+                }));
+        Assert.assertEquals(Arrays.asList(0, 2, 4, 6, 8), result.getResult().get(true));
+        Assert.assertEquals(Arrays.asList(1, 3, 7, 9), result.getResult().get(false));
+        Assert.assertEquals(Arrays.asList(5), result.getFailedInputs());
+    }
+
+    @Test
+    public void reducing_ThrowingMapper_ExpectSumOfTheRest() {
+        TolerantResult<String, Integer> result = Stream.of("1", "2", "x", "4").parallel()
+                .collect(TolerantCollectors.reducing(0, Integer::parseInt, Integer::sum));
+        Assert.assertEquals(Integer.valueOf(7), result.getResult());
+        Assert.assertEquals(1, result.getFailureCount());
+    }
+
+    @Test
+    public void reducing_ThrowingOperator_ExpectFailingInputLeftOut() {
+        TolerantResult<Integer, Integer> result = Stream.of(1, 2, 3, 4)
+                .collect(TolerantCollectors.reducing(0, (a, b) -> {
+                    if(b == 3)
+                        throw new Exception("three");
+                    return a + b;
+                }));
+        Assert.assertEquals(Integer.valueOf(7), result.getResult());
+        Assert.assertEquals(Arrays.asList(3), result.getFailedInputs());
+    }
+}
@@ -0,0 +1,73 @@
+package arash.sepasi.streamextensions;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class TryStreamTest {
+
+    @Test
+    public void stream_ChainedStages_ExpectFailuresRemovedWithTheirStage() {
+        final List<TryStream.StageFailure> failures = new ArrayList<>();
+        List<Integer> actualResults = TryStream.of(Stream.of("1", "x", "3", "4", "5"))
+                .map(Integer::parseInt)
+                .map(i -> {
+                    if(i == 3)
+                        throw new IllegalStateException("three");
+                    return i * 10;
+                })
+                .filter(i -> i > 10)
+                .onFailure(failures::add)
+                .stream()
+                .collect(Collectors.toList());
+        Assert.assertEquals(Arrays.asList(40, 50), actualResults);
+        Assert.assertEquals(2, failures.size());
+        Assert.assertEquals(0, failures.get(0).getStage());
+        Assert.assertEquals("x", failures.get(0).getInput());
+        Assert.assertTrue(failures.get(0).getCause() instanceof NumberFormatException);
+        Assert.assertEquals(1, failures.get(1).getStage());
+        Assert.assertEquals("3", failures.get(1).getElement());
+        Assert.assertEquals(3, failures.get(1).getInput());
+    }
+
+    @Test
+    public void stream_MappedToNullAndThrowingPeek_ExpectFailures() {
+        final List<TryStream.StageFailure> failures = Collections.synchronizedList(new ArrayList<>());
+        long count = TryStream.of(IntStream.range(0, 100).boxed())
+                .map(i -> i % 10 == 0 ? null : i)
+                .peek(i -> {
+                    if(i % 10 == 1)
+                        throw new Exception();
+                })
+                .onFailure(failures::add)
+                .stream()
+                .count();
+        Assert.assertEquals(80, count);
+        Assert.assertEquals(10, failures.stream().filter(f -> f.getStage() == 0 && f.getCause() == null).count());
+        Assert.assertEquals(10, failures.stream().filter(f -> f.getStage() == 1 && f.getCause() != null).count());
+    }
+
+    @Test
+    public void stream_ParallelStream_ExpectAllSuccessfulElements() {
+        final AtomicInteger failures = new AtomicInteger();
+        List<Integer> actualResults = TryStream.of(IntStream.range(0, 10000).boxed().parallel())
+                .map(i -> {
+                    if(i % 2 == 1)
+                        throw new Exception();
+                    return i;
+                })
+                .onFailure(f -> failures.incrementAndGet())
+                .stream()
+                .collect(Collectors.toList());
+        Assert.assertEquals(IntStream.range(0, 10000).filter(i -> i % 2 == 0).boxed().collect(Collectors.toList()), actualResults);
+        Assert.assertEquals(5000, failures.get());
+    }
+}